@@ -8,6 +8,8 @@ import io.opentracing.Tracer;
 import org.ccci.obiee.client.init.AnswersServiceFactory;
 import org.ccci.obiee.client.rowmap.impl.AnalyticsManagerFactoryImpl;
 import org.ccci.obiee.client.rowmap.impl.RowmapConfiguration;
+import org.ccci.obiee.client.rowmap.impl.RowsetParser;
+import org.ccci.obiee.client.rowmap.impl.SortStrategy;
 
 public class AnalyticsManagerConfigurer {
 
@@ -47,6 +49,21 @@ public class AnalyticsManagerConfigurer {
         config.setPassword(password);
         config.setEndpointBaseUrl(endpointBaseUrl);
         config.setReadTimeout(asInteger(obieeProperties.getProperty("obiee.readTimeout")));
+        config.setRowsetParser(asRowsetParser(obieeProperties.getProperty("obiee.rowsetParser")));
+        config.setPageSize(asInteger(obieeProperties.getProperty("obiee.pageSize")));
+        config.setStreamResponses(asBoolean(obieeProperties.getProperty("obiee.streamResponses")));
+        config.setPipelineThreads(asInteger(obieeProperties.getProperty("obiee.pipelineThreads")));
+        config.setParallelMappingThreshold(asInteger(obieeProperties.getProperty("obiee.parallelMappingThreshold")));
+        config.setStringDictionaryLimit(asInteger(obieeProperties.getProperty("obiee.stringDictionaryLimit")));
+        config.setOffHeapResultTables(asBoolean(obieeProperties.getProperty("obiee.offHeapResultTables")));
+        config.setResultSpillThreshold(asInteger(obieeProperties.getProperty("obiee.resultSpillThreshold")));
+        config.setCompactResultRowThreshold(asInteger(obieeProperties.getProperty("obiee.compactResultRowThreshold")));
+        config.setCompactResultSizeThreshold(asInteger(obieeProperties.getProperty("obiee.compactResultSizeThreshold")));
+        config.setMetadataCacheTtl(asInteger(obieeProperties.getProperty("obiee.metadataCacheTtl")));
+        config.setCacheReportTemplates(asBoolean(obieeProperties.getProperty("obiee.cacheReportTemplates")));
+        config.setConcurrentSortedQueries(asBoolean(obieeProperties.getProperty("obiee.concurrentSortedQueries")));
+        config.setSortStrategy(asSortStrategy(obieeProperties.getProperty("obiee.sortStrategy")));
+        config.setClientSortRowThreshold(asInteger(obieeProperties.getProperty("obiee.clientSortRowThreshold")));
         return config;
     }
     
@@ -59,6 +76,30 @@ public class AnalyticsManagerConfigurer {
             return Integer.valueOf(property);
     }
 
+    private Boolean asBoolean(String property)
+    {
+        if (property == null)
+            return null;
+        else
+            return Boolean.valueOf(property.trim());
+    }
+
+    private RowsetParser asRowsetParser(String property)
+    {
+        if (property == null)
+            return null;
+        else
+            return RowsetParser.valueOf(property.trim().toUpperCase());
+    }
+
+    private SortStrategy asSortStrategy(String property)
+    {
+        if (property == null)
+            return null;
+        else
+            return SortStrategy.valueOf(property.trim().toUpperCase());
+    }
+
     private String getRequiredProperty(Properties obieeProperties, String property)
     {
         String value = obieeProperties.getProperty(property);
@@ -20,4 +20,30 @@ public interface AnalyticsManagerFactory
      */
     AnalyticsManager createAnalyticsManager();
 
+    /**
+     * Discards the cached metadata schema and xml of the given report, so that the next sorted query of the
+     * report fetches them again.  This should be called when a report is changed in Answers.  The default
+     * implementation does nothing, for factories that cache no report metadata.
+     */
+    default void invalidateReportMetadata(String reportPath)
+    {
+    }
+
+    /**
+     * Discards the cached metadata schemas and xml of all reports.  The default implementation does nothing.
+     */
+    default void invalidateAllReportMetadata()
+    {
+    }
+
+    /**
+     * Stops the threads that this factory's managers share for background work.  This should be called when the
+     * application stops, after the managers created by this factory have been closed; otherwise, in a container
+     * that redeploys the application, the threads, and the classloader they hold, are leaked.  The default
+     * implementation does nothing, for factories that hold no threads.
+     */
+    default void shutdown()
+    {
+    }
+
 }
@@ -0,0 +1,22 @@
+package org.ccci.obiee.client.rowmap;
+
+import java.lang.reflect.Field;
+
+/**
+ * A {@link Converter} for {@code boolean} fields, which produces an unboxed {@code boolean}.  If one is registered, it
+ * is used for {@code boolean} fields in place of a {@code Converter<Boolean>}.
+ */
+public interface BooleanConverter
+{
+
+    /**
+     * Converts an xml attribute to a {@code boolean}.  The characters are read as described by
+     * {@link CharSequenceConverter#convert(CharSequence, Field)}.
+     * 
+     * @param xmlValue the value returned by the OBI server, or {@code null} if the value is empty
+     * @param field the eventual destination of the converted value
+     * @return an appropriate java translation of the OBI value
+     * @throws RuntimeException if the value cannot be represented as a {@code boolean}; for example, if it is empty
+     */
+    public boolean convert(CharSequence xmlValue, Field field);
+}
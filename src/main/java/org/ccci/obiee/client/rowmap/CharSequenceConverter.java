@@ -0,0 +1,30 @@
+package org.ccci.obiee.client.rowmap;
+
+import java.lang.reflect.Field;
+
+/**
+ * A {@link Converter} that reads a value's characters in place, so that no {@code String} need be created for
+ * the value.  When rowsets are read with the streaming parser, converters of this kind are handed a view of the
+ * parser's character data.
+ */
+public interface CharSequenceConverter<T> extends Converter<T>
+{
+
+    /**
+     * Converts an xml attribute to a {@code T}.  See {@link Converter#convert(String, Field)}.
+     * <p>
+     * The given characters may be a view of a buffer that is reused once this method returns, so
+     * implementations must not hold on to it; {@code xmlValue.toString()} gives a copy that may be kept.
+     * 
+     * @param xmlValue the value returned by the OBI server, or {@code null} if the value is empty
+     * @param field the eventual destination of the converted value
+     * @return an appropriate java translation of the OBI value
+     */
+    public T convert(CharSequence xmlValue, Field field);
+
+    @Override
+    public default T convert(String xmlValue, Field field)
+    {
+        return convert((CharSequence) xmlValue, field);
+    }
+}
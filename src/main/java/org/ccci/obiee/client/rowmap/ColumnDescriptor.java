@@ -0,0 +1,106 @@
+package org.ccci.obiee.client.rowmap;
+
+import java.lang.reflect.Field;
+
+import org.ccci.obiee.client.rowmap.annotation.Column;
+
+/**
+ * Describes one {@link Column}-annotated field of a row type; see {@link RowDescriptor}.
+ */
+public final class ColumnDescriptor
+{
+
+    private final String name;
+    private final Class<?> declaringClass;
+    private final Class<?> type;
+    private final String tableHeading;
+    private final String columnHeading;
+
+    private volatile Field field;
+
+    /**
+     * @param columnHeading as given by {@link Column#columnHeading()}; empty if it is to be derived from the
+     * field name
+     */
+    public ColumnDescriptor(
+        String name,
+        Class<?> declaringClass,
+        Class<?> type,
+        String tableHeading,
+        String columnHeading)
+    {
+        this.name = name;
+        this.declaringClass = declaringClass;
+        this.type = type;
+        this.tableHeading = tableHeading;
+        this.columnHeading = columnHeading;
+    }
+
+    /**
+     * The name of the field
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    public Class<?> getDeclaringClass()
+    {
+        return declaringClass;
+    }
+
+    /**
+     * The type of the field
+     */
+    public Class<?> getType()
+    {
+        return type;
+    }
+
+    public String getTableHeading()
+    {
+        return tableHeading;
+    }
+
+    /**
+     * @return the column heading, as given by {@link Column#columnHeading()}; empty if it is to be derived
+     * from the field name
+     */
+    public String getColumnHeading()
+    {
+        return columnHeading;
+    }
+
+    /**
+     * The field itself, which {@link Converter}s are given so that they can read its annotations.  It is looked
+     * up by name the first time it is needed.  Rows are read and written through their {@link RowDescriptor},
+     * never through this field, so it is not made accessible.
+     */
+    public Field getField()
+    {
+        Field field = this.field;
+        if (field == null)
+        {
+            try
+            {
+                field = declaringClass.getDeclaredField(name);
+            }
+            catch (NoSuchFieldException e)
+            {
+                throw new RowmapConfigurationException(String.format(
+                    "%s has no field named %s; its row descriptor is out of date",
+                    declaringClass,
+                    name
+                ), e);
+            }
+            this.field = field;
+        }
+        return field;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnDescriptor[" + declaringClass.getName() + "." + name + "]";
+    }
+}
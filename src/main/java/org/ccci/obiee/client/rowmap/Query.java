@@ -1,6 +1,7 @@
 package org.ccci.obiee.client.rowmap;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.ccci.obiee.client.rowmap.annotation.ReportParamVariable;
 
@@ -52,6 +53,12 @@ public interface Query<T>
     
     /**
      * Executes the query and returns a {@link List} of the returned row objects.
+     * <p>
+     * If the manager is configured to hold large results compactly (which it isn't by default), and the result is
+     * large, the returned list is unmodifiable, and holds its later rows as text.  Each call to
+     * {@link List#get(int)} for such a row maps the row to a new row object, so changes made to a row object
+     * returned by the list are not seen by later calls, and the list may return different, though equal, objects
+     * for the same row.
      * 
      * @return a List of row objects mapped from the returned rowset
      * @throws DataRetrievalException if there is an error communicating with the Answers system.
@@ -59,4 +66,63 @@ public interface Query<T>
      */
     public List<T> getResultList();
 
+    /**
+     * Executes the query and returns a {@link List} of the returned rows as {@link RowView}s, which hold each
+     * row's cell text and convert a column only when it is first read.  This suits wide reports of which only a
+     * few columns are read.
+     * 
+     * @return a List of views of the rows of the returned rowset
+     * @throws DataRetrievalException if there is an error communicating with the Answers system.
+     * @throws RowmapConfigurationException if the given rowType is configured incorrectly
+     */
+    public List<RowView<T>> getLazyResultList();
+
+    /**
+     * Executes the query and returns the returned rows as a {@link ResultTable}, which holds them column by
+     * column.  No row objects are created, so this suits reports that are only aggregated or exported.
+     * 
+     * @return a table of the values of the returned rowset
+     * @throws DataRetrievalException if there is an error communicating with the Answers system.
+     * @throws RowmapConfigurationException if the given rowType is configured incorrectly
+     */
+    public ResultTable<T> getResultTable();
+
+    /**
+     * Executes the query and returns a lazily-populated {@link Stream} of the returned row objects.  Rows are
+     * parsed and mapped one at a time, as the stream is consumed, so the full result is never held as a {@code List}.
+     * <p>
+     * The stream should be closed when the caller is done with it (for example, with a try-with-resources block).
+     * Closing the stream before it is exhausted releases the rowset and cancels the query in Answers.
+     * The stream must be consumed before the {@link AnalyticsManager} that created it is closed.
+     *
+     * @return a sequential, ordered Stream of row objects mapped from the returned rowset
+     * @throws DataRetrievalException if there is an error communicating with the Answers system.
+     * @throws RowmapConfigurationException if the given rowType is configured incorrectly
+     */
+    public Stream<T> stream();
+
+    /**
+     * Executes the query and passes each returned row object to the given handler, in rowset order.  Rows are
+     * parsed and mapped one at a time, and are not retained after the handler returns.
+     *
+     * @param handler receives each row object
+     * @throws DataRetrievalException if there is an error communicating with the Answers system.
+     * @throws RowmapConfigurationException if the given rowType is configured incorrectly
+     */
+    public void forEach(RowHandler<? super T> handler);
+
+    /**
+     * Like {@link #forEach(RowHandler)}, except that a single row object is created and then repopulated for
+     * each row, so that handling a row allocates almost nothing.  All {@code @Column} fields are overwritten
+     * for every row.
+     * <p>
+     * Since the row object is reused, the handler must not keep a reference to it (or pass it along to
+     * anything that does) beyond the call to {@link RowHandler#handleRow(Object)}.
+     *
+     * @param handler receives the reused row object, once per row
+     * @throws DataRetrievalException if there is an error communicating with the Answers system.
+     * @throws RowmapConfigurationException if the given rowType is configured incorrectly
+     */
+    public void forEachReusingRow(RowHandler<? super T> handler);
+
 }
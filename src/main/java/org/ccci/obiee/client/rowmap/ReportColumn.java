@@ -17,21 +17,39 @@ public class ReportColumn<T>
     private final Field field;
     private final Class<T> rowType;
 
+    /** {@code null} if values are read by reflection */
+    private final RowDescriptor<T> descriptor;
+    private final int descriptorColumn;
+
+    private final String name;
+
     ReportColumn(Field field, Class<T> rowType)
     {
         field.setAccessible(true);
         this.field = field;
         this.rowType = rowType;
+        this.descriptor = null;
+        this.descriptorColumn = -1;
+        this.name = field.getName();
+    }
+
+    ReportColumn(ColumnDescriptor column, RowDescriptor<T> descriptor, int descriptorColumn)
+    {
+        this.field = null;
+        this.rowType = descriptor.getRowType();
+        this.descriptor = descriptor;
+        this.descriptorColumn = descriptorColumn;
+        this.name = column.getName();
     }
 
     public Field getField()
     {
-        return field;
+        return field != null ? field : descriptor.getColumns().get(descriptorColumn).getField();
     }
 
     public String getName()
     {
-        return field.getName();
+        return name;
     }
 
     public Object getValue(T row)
@@ -45,6 +63,8 @@ public class ReportColumn<T>
                 row.getClass(),
                 rowType
             ));
+        if (descriptor != null)
+            return descriptor.getValue(row, descriptorColumn);
         try
         {
             return field.get(row);
@@ -55,6 +75,17 @@ public class ReportColumn<T>
         }
     }
     
+    /**
+     * Returns this column's value of a row read by {@link Query#getLazyResultList()}, converting it if it has not
+     * been read before.
+     */
+    public Object getValue(RowView<T> row)
+    {
+        if (row == null)
+            throw new NullPointerException("row is null");
+        return row.getValue(this);
+    }
+
     @Override
     public String toString()
     {
@@ -3,6 +3,7 @@ package org.ccci.obiee.client.rowmap;
 import java.lang.reflect.Field;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -10,9 +11,13 @@ import org.ccci.obiee.client.rowmap.annotation.Column;
 import org.ccci.obiee.client.rowmap.annotation.ReportPath;
 import org.ccci.obiee.client.rowmap.impl.ConverterStore;
 import org.ccci.obiee.client.rowmap.impl.EnumConverter;
+import org.ccci.obiee.client.rowmap.impl.RowDescriptors;
 
 /**
  * Encapsulates a row type with validation logic and methods to retrieve {@link ReportColumn}s.
+ * <p>
+ * If the row type has a generated {@link RowDescriptor}, its columns are taken from the descriptor; otherwise,
+ * they are found by reflection.
  * 
  * @param <T> the row type
  * 
@@ -26,18 +31,44 @@ public class ReportDefinition<T>
     private final Map<String, ReportColumn<T>> columns;
     
     private final ConverterStore converters;
+
+    /** {@link #converters} merged into the converters last given to {@link #getConverterStore(ConverterStore)} */
+    private volatile MergedConverters mergedConverters;
     
     public ReportDefinition(Class<T> rowType)
     {
-        validate(rowType);
-        columns = buildColumns(rowType);
+        RowDescriptor<T> descriptor = RowDescriptors.forRowType(rowType);
+        if (descriptor == null)
+        {
+            validate(rowType);
+            columns = buildColumns(rowType);
+            this.converters = buildConverters(rowType);
+        }
+        else
+        {
+            // descriptors are only generated for @ReportPath types
+            columns = buildColumns(descriptor);
+            this.converters = buildConverters(descriptor);
+        }
         this.rowType = rowType;
-        this.converters = buildConverters(rowType);
+    }
+
+    private ConverterStore buildConverters(RowDescriptor<T> descriptor)
+    {
+        ConverterStore.Builder store = ConverterStore.builder();
+        for (ColumnDescriptor column : descriptor.getColumns())
+        {
+            if (Enum.class.isAssignableFrom(column.getType()))
+            {
+                addConverterForEnumType(column.getType(), store);
+            }
+        }
+        return store.build();
     }
 
     private ConverterStore buildConverters(Class<T> rowType)
     {
-        ConverterStore store = new ConverterStore();
+        ConverterStore.Builder store = ConverterStore.builder();
         Class<?> clazz = rowType;
         while(!clazz.equals(Object.class))
         {
@@ -52,13 +83,13 @@ public class ReportDefinition<T>
             }
             clazz = clazz.getSuperclass();
         }
-        return store;
+        return store.build();
     }
 
     /* I've been fiddling with the java type system for a while and I haven't come up with a clean way
      * to do this (i.e., a way without a couple different @SupressWarnings annotations)
      */
-    private void addConverterForEnumType(Class<?> type, ConverterStore store)
+    private void addConverterForEnumType(Class<?> type, ConverterStore.Builder store)
     {
         @SuppressWarnings("rawtypes") //"Enum" is raw, but I don't think there's a way around this.  
         Class<? extends Enum> asEnumType = type.asSubclass(Enum.class);
@@ -69,12 +100,12 @@ public class ReportDefinition<T>
     @SuppressWarnings("unchecked") //we are calling a method expecting <U extends Enum<U>>, and we know 
       // that any subclass U of Enum is a Enum<U>, but compiler doesn't know this.  Also, we have to suppress
       // this warning at the method level, since we cannot annotate method invocations.
-    private void addEnumConverterRaw(ConverterStore store, @SuppressWarnings("rawtypes") Class<? extends Enum> asEnumType)
+    private void addEnumConverterRaw(ConverterStore.Builder store, @SuppressWarnings("rawtypes") Class<? extends Enum> asEnumType)
     {
         addEnumConverter(asEnumType, store);
     }
     
-    private <U extends Enum<U>> void addEnumConverter(Class<U> asEnumType, ConverterStore store)
+    private <U extends Enum<U>> void addEnumConverter(Class<U> asEnumType, ConverterStore.Builder store)
     {
         store.addConverter(asEnumType, new EnumConverter<>(asEnumType));
     }
@@ -108,6 +139,18 @@ public class ReportDefinition<T>
         return columns;
     }
 
+    private Map<String, ReportColumn<T>> buildColumns(RowDescriptor<T> descriptor)
+    {
+        Map<String, ReportColumn<T>> columns = new HashMap<>();
+        List<ColumnDescriptor> columnDescriptors = descriptor.getColumns();
+        for (int i = 0; i < columnDescriptors.size(); i++)
+        {
+            ReportColumn<T> column = new ReportColumn<>(columnDescriptors.get(i), descriptor, i);
+            columns.put(column.getName(), column);
+        }
+        return columns;
+    }
+
     public String getName()
     {
         return rowType.getSimpleName();
@@ -143,5 +186,33 @@ public class ReportDefinition<T>
     {
         return converters;
     }
+
+    /**
+     * Returns the given converters, plus the converters this report's row type needs; see
+     * {@link ConverterStore#copyAndAdd(ConverterStore)}.  The merged store is kept, so that it is only built
+     * again if a different store is given.
+     */
+    public ConverterStore getConverterStore(ConverterStore baseConverters)
+    {
+        MergedConverters merged = mergedConverters;
+        if (merged == null || merged.base != baseConverters)
+        {
+            merged = new MergedConverters(baseConverters, baseConverters.copyAndAdd(converters));
+            mergedConverters = merged;
+        }
+        return merged.store;
+    }
+
+    private static class MergedConverters
+    {
+        private final ConverterStore base;
+        private final ConverterStore store;
+
+        MergedConverters(ConverterStore base, ConverterStore store)
+        {
+            this.base = base;
+            this.store = store;
+        }
+    }
     
 }
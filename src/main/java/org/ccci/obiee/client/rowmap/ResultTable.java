@@ -0,0 +1,118 @@
+package org.ccci.obiee.client.rowmap;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The rows returned by a query, held column by column rather than as row objects.  Numeric columns are held as
+ * primitive arrays, and String columns as an array of codes into a per-column dictionary of distinct values.
+ * See {@link Query#getResultTable()}.
+ * <p>
+ * Each column's type is chosen from the type of its {@code @Column} field, and, for a {@code BigDecimal}
+ * field, from the SQL type that OBIEE reports for the column:
+ * <ul>
+ * <li>{@code int} and {@code Integer} fields are held as {@link ColumnType#INT} columns</li>
+ * <li>{@code long} and {@code Long} fields, and {@code BigDecimal} fields of an integral SQL type, are held
+ *   as {@link ColumnType#LONG} columns</li>
+ * <li>{@code double} and {@code Double} fields, and {@code BigDecimal} fields of a floating point SQL type,
+ *   are held as {@link ColumnType#DOUBLE} columns</li>
+ * <li>{@code String} fields are held as {@link ColumnType#STRING} columns</li>
+ * <li>any other field is held as an {@link ColumnType#OBJECT} column of converted values</li>
+ * </ul>
+ * Arrays returned by this table are the table's own, and must not be modified.
+ * <p>
+ * A table may be held off the java heap (see {@code AnalyticsManagerImpl.setOffHeapResultTables()}), in
+ * which case the array accessors copy a column onto the heap, and String columns are not dictionary-encoded;
+ * the per-cell accessors ({@link #getInt(ReportColumn, int)} and so on) suit such tables better.  Such a table
+ * must be closed once it is no longer needed, to release its temporary file; closing a table held on the heap
+ * does nothing.
+ *
+ *
+ * @param <T> the row type of the associated report
+ */
+public interface ResultTable<T> extends Closeable
+{
+
+    public enum ColumnType
+    {
+        INT, LONG, DOUBLE, STRING, OBJECT
+    }
+
+    public int getRowCount();
+
+    public Set<ReportColumn<T>> getColumns();
+
+    public ColumnType getColumnType(ReportColumn<T> column);
+
+    public boolean isNull(ReportColumn<T> column, int row);
+
+    /**
+     * @return the value of a cell of an {@link ColumnType#INT} column, or 0 if it is null
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public int getInt(ReportColumn<T> column, int row);
+
+    /**
+     * @return the value of a cell of a {@link ColumnType#LONG} column, or 0 if it is null
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public long getLong(ReportColumn<T> column, int row);
+
+    /**
+     * @return the value of a cell of a {@link ColumnType#DOUBLE} column, or 0 if it is null
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public double getDouble(ReportColumn<T> column, int row);
+
+    /**
+     * @return the value of a cell of a {@link ColumnType#STRING} column, or {@code null}
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public String getString(ReportColumn<T> column, int row);
+
+    /**
+     * @return the values of an {@link ColumnType#INT} column, indexed by row; null values are held as 0
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public int[] getInts(ReportColumn<T> column);
+
+    /**
+     * @return the values of a {@link ColumnType#LONG} column, indexed by row; null values are held as 0
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public long[] getLongs(ReportColumn<T> column);
+
+    /**
+     * @return the values of a {@link ColumnType#DOUBLE} column, indexed by row; null values are held as 0
+     * @throws IllegalArgumentException if the column is of another type
+     */
+    public double[] getDoubles(ReportColumn<T> column);
+
+    /**
+     * @return the values of a {@link ColumnType#STRING} column, indexed by row, as indexes into
+     *   {@link #getStringDictionary(ReportColumn)}; null values are held as -1
+     * @throws IllegalArgumentException if the column is of another type
+     * @throws UnsupportedOperationException if the table is held off the heap
+     */
+    public int[] getStringCodes(ReportColumn<T> column);
+
+    /**
+     * @return the distinct values of a {@link ColumnType#STRING} column, in the order they were first read
+     * @throws IllegalArgumentException if the column is of another type
+     * @throws UnsupportedOperationException if the table is held off the heap
+     */
+    public List<String> getStringDictionary(ReportColumn<T> column);
+
+    /**
+     * Returns the value of a cell of any type of column.  Values of numeric columns are boxed.
+     */
+    public Object getValue(ReportColumn<T> column, int row);
+
+    /**
+     * Releases the memory and any temporary file held by a table held off the heap.  The table can't be read
+     * once it is closed.
+     */
+    @Override
+    public void close();
+}
@@ -0,0 +1,79 @@
+package org.ccci.obiee.client.rowmap;
+
+import java.util.List;
+
+import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.ReportPath;
+
+/**
+ * Describes the {@link Column}-annotated fields of a row type, and creates, reads and writes instances of it
+ * without reflection.
+ * <p>
+ * Implementations are generated at compile time, for each {@link ReportPath}-annotated class, by
+ * {@link org.ccci.obiee.client.rowmap.processor.RowDescriptorProcessor}.  A row type's descriptor is named
+ * according to {@link #descriptorClassName(String)}, and is used automatically when it is present; otherwise,
+ * the row type is mapped by reflection.
+ * 
+ * Implementations are immutable.
+ * 
+ * @param <T> the row type
+ */
+public interface RowDescriptor<T>
+{
+
+    Class<T> getRowType();
+
+    /**
+     * The row type's columns, ordered as its fields are declared, starting with the row type's own fields and
+     * followed by those of its superclasses.  A column's index in this list identifies it to
+     * {@link #getValue(Object, int)} and {@link #setValue(Object, int, Object)}.
+     */
+    List<ColumnDescriptor> getColumns();
+
+    T newRow();
+
+    Object getValue(T row, int column);
+
+    /**
+     * @param value must be an instance of the column's type (or its wrapper type, for a primitive column), and
+     * must not be null for a primitive column
+     */
+    void setValue(T row, int column, Object value);
+
+    /*
+     * Write primitive columns without boxing.  Generated descriptors override these for their primitive columns.
+     */
+
+    default void setInt(T row, int column, int value)
+    {
+        setValue(row, column, value);
+    }
+
+    default void setLong(T row, int column, long value)
+    {
+        setValue(row, column, value);
+    }
+
+    default void setDouble(T row, int column, double value)
+    {
+        setValue(row, column, value);
+    }
+
+    default void setBoolean(T row, int column, boolean value)
+    {
+        setValue(row, column, value);
+    }
+
+    /**
+     * The descriptor is a top-level class named after the row type's binary name, '$' included, so that the
+     * descriptors of nested row types can't collide with those of top-level row types.
+     *
+     * @param rowTypeName the binary name of a row type, e.g. 'com.example.Reports$DonationRow'
+     * @return the binary name of the row type's generated descriptor, e.g.
+     * 'com.example.Reports$DonationRow_RowDescriptor'
+     */
+    static String descriptorClassName(String rowTypeName)
+    {
+        return rowTypeName + "_RowDescriptor";
+    }
+}
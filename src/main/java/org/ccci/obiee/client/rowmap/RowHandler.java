@@ -0,0 +1,20 @@
+package org.ccci.obiee.client.rowmap;
+
+/**
+ * Receives row objects one at a time, as they are read from a rowset.
+ * See {@link Query#forEach(RowHandler)}.
+ *
+ * @param <T> the row type
+ */
+@FunctionalInterface
+public interface RowHandler<T>
+{
+
+    /**
+     * Handles a single row.  Any exception thrown by this method stops the query, and is propagated
+     * to the caller of {@code forEach}.
+     *
+     * @param row a row object mapped from the rowset
+     */
+    void handleRow(T row);
+}
@@ -0,0 +1,30 @@
+package org.ccci.obiee.client.rowmap;
+
+/**
+ * A row of a query's results whose cells are converted only when they are read.  See
+ * {@link Query#getLazyResultList()}.
+ * <p>
+ * Each column is converted the first time it is read, and the converted value is kept for later reads.
+ * 
+ * Instances are not thread-safe.
+ * 
+ *
+ * @param <T> the row type of the associated report
+ */
+public interface RowView<T>
+{
+
+    /**
+     * Returns the value of a column of this row, as it would be held by the corresponding field of a row object.
+     * Values of primitive columns are boxed.  See also {@link ReportColumn#getValue(RowView)}.
+     * 
+     * @throws DataRetrievalException if the column's value can't be converted
+     */
+    public Object getValue(ReportColumn<T> column);
+
+    /**
+     * Creates a row object holding every column of this row.  Each call converts every column, and returns a
+     * new row object.
+     */
+    public T toRow();
+}
@@ -0,0 +1,21 @@
+package org.ccci.obiee.client.rowmap.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Must annotate a field of type String.  Indicates that the column has few distinct values, such as a status
+ * flag or a currency code, so that every row of a query with the same value may share a single String instance.
+ * 
+ * Unannotated String columns share instances too, but only until a query has seen more distinct values
+ * than the configured limit.  This has no effect on a field whose String converter has been replaced.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LowCardinality
+{
+}
@@ -5,6 +5,10 @@ import io.opentracing.Span;
 import io.opentracing.Tracer;
 
 import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -12,6 +16,7 @@ import java.util.regex.Pattern;
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.soap.SOAPFaultException;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.opentracing.tag.Tags;
 import org.ccci.obiee.client.init.AnswersServiceFactory;
 import org.ccci.obiee.client.rowmap.AnalyticsManager;
@@ -47,6 +52,71 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
     private final int connectTimeout;
     private static final int DEFAULT_CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(4);
     
+    private final RowsetParser rowsetParser;
+    private static final RowsetParser DEFAULT_ROWSET_PARSER = RowsetParser.STAX;
+    
+    /** rows per page, or -1 if results are not paged.  Default is -1. */
+    private final int pageSize;
+    
+    /** whether rowsets are parsed as responses arrive.  Default is false. */
+    private final boolean streamResponses;
+    
+    /** shared by all managers; used to prefetch pages */
+    private final ExecutorService backgroundExecutor = buildBackgroundExecutor();
+    
+    /** shared by all managers; converts rows in pipeline mode.  Null if pipeline mode is disabled. */
+    private final ExecutorService pipelineExecutor;
+    
+    /** rows per page above which result lists are mapped in parallel, or -1 if disabled.  Default is -1. */
+    private final int parallelMappingThreshold;
+    
+    /** shared by all managers; maps result lists in parallel.  Null if parallel mapping is disabled. */
+    private final ForkJoinPool parallelMappingPool;
+    
+    /** distinct values per String column that a query shares instances of.  Default is the manager's default. */
+    private final int stringDictionaryLimit;
+    private static final int DEFAULT_STRING_DICTIONARY_LIMIT = AnalyticsManagerImpl.DEFAULT_STRING_DICTIONARY_LIMIT;
+    
+    /** whether result tables are held outside the heap.  Default is false. */
+    private final boolean offHeapResultTables;
+    
+    /** bytes of each off-heap result table held in memory, before spilling to a file.  Default is 64 MB. */
+    private final long resultSpillThreshold;
+    private static final int DEFAULT_RESULT_SPILL_THRESHOLD_MB = 64;
+    
+    /** rows of a result list mapped to row objects before the rest are held compactly, or -1.  Default is -1. */
+    private final int compactResultRowThreshold;
+    
+    /** bytes of cell text of a result list before the rest are held compactly, or -1.  Default is -1. */
+    private final long compactResultSizeThreshold;
+    
+    /** shared by all managers, which therefore share a converter store */
+    private final ConverterStore converterStore = ConverterStore.buildDefault();
+    
+    /** shared by all managers; holds row builders compiled with {@link #converterStore} */
+    private final RowBuilderCache rowBuilderCache = new RowBuilderCache();
+    
+    /** shared by all managers; holds reports' metadata schemas.  Null unless metadata caching is enabled. */
+    private final MetadataCache metadataCache;
+    /** disabled by default; a schema cached before its report is edited maps columns to the wrong fields */
+    private static final int DEFAULT_METADATA_CACHE_TTL = 0;
+    
+    /** shared by all managers; holds reports' xml.  Null unless enabled; metadata caching must also be enabled. */
+    private final ReportTemplateCache reportTemplateCache;
+    
+    /** whether sorted queries fetch reports' xml concurrently with their metadata.  Default is false. */
+    private final boolean concurrentSortedQueries;
+    
+    /** where sorted result lists are sorted.  Default is {@link SortStrategy#SERVER}. */
+    private final SortStrategy sortStrategy;
+    
+    /** rows, as last returned by a report, up to which adaptive sorting sorts on the client.  Default is 10,000. */
+    private final int clientSortRowThreshold;
+    private static final int DEFAULT_CLIENT_SORT_ROW_THRESHOLD = 10000;
+    
+    /** shared by all managers; holds the row counts that adaptive sorting is based on */
+    private final ReportStatistics reportStatistics = new ReportStatistics();
+    
     
     private String endpointBaseUrl;
     private Logger log = LoggerFactory.getLogger(getClass());
@@ -68,6 +138,22 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
         this.tracer = tracer;
         this.readTimeout = DEFAULT_CONNECT_TIMEOUT;
         this.connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+        this.rowsetParser = DEFAULT_ROWSET_PARSER;
+        this.pageSize = -1;
+        this.streamResponses = false;
+        this.pipelineExecutor = null;
+        this.parallelMappingThreshold = -1;
+        this.parallelMappingPool = null;
+        this.stringDictionaryLimit = DEFAULT_STRING_DICTIONARY_LIMIT;
+        this.offHeapResultTables = false;
+        this.resultSpillThreshold = megabytes(DEFAULT_RESULT_SPILL_THRESHOLD_MB);
+        this.compactResultRowThreshold = -1;
+        this.compactResultSizeThreshold = -1;
+        this.metadataCache = buildMetadataCache(DEFAULT_METADATA_CACHE_TTL);
+        this.reportTemplateCache = null;
+        this.concurrentSortedQueries = false;
+        this.sortStrategy = SortStrategy.SERVER;
+        this.clientSortRowThreshold = DEFAULT_CLIENT_SORT_ROW_THRESHOLD;
     }
     
     public AnalyticsManagerFactoryImpl(
@@ -83,6 +169,40 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
         this.endpointBaseUrl = config.getEndpointBaseUrl();
         this.readTimeout = config.getReadTimeout() == null ? DEFAULT_READ_TIMEOUT : config.getReadTimeout();
         this.connectTimeout = config.getConnectTimeout() == null ? DEFAULT_CONNECT_TIMEOUT : config.getConnectTimeout();
+        this.rowsetParser = config.getRowsetParser() == null ? DEFAULT_ROWSET_PARSER : config.getRowsetParser();
+        this.pageSize = config.getPageSize() == null ? -1 : config.getPageSize();
+        this.streamResponses = config.getStreamResponses() == null ? false : config.getStreamResponses();
+        this.pipelineExecutor = buildPipelineExecutor(config.getPipelineThreads());
+        this.parallelMappingThreshold = config.getParallelMappingThreshold() == null ? -1 : config.getParallelMappingThreshold();
+        this.parallelMappingPool = parallelMappingThreshold > 0 ? new ForkJoinPool() : null;
+        this.stringDictionaryLimit = config.getStringDictionaryLimit() == null
+            ? DEFAULT_STRING_DICTIONARY_LIMIT
+            : config.getStringDictionaryLimit();
+        this.offHeapResultTables = config.getOffHeapResultTables() == null ? false : config.getOffHeapResultTables();
+        this.resultSpillThreshold = megabytes(config.getResultSpillThreshold() == null
+            ? DEFAULT_RESULT_SPILL_THRESHOLD_MB
+            : config.getResultSpillThreshold());
+        this.compactResultRowThreshold = config.getCompactResultRowThreshold() == null
+            ? -1
+            : config.getCompactResultRowThreshold();
+        this.compactResultSizeThreshold = config.getCompactResultSizeThreshold() == null
+            || config.getCompactResultSizeThreshold() < 0
+            ? -1
+            : megabytes(config.getCompactResultSizeThreshold());
+        int metadataCacheTtl = config.getMetadataCacheTtl() == null
+            ? DEFAULT_METADATA_CACHE_TTL
+            : config.getMetadataCacheTtl();
+        this.metadataCache = buildMetadataCache(metadataCacheTtl);
+        this.reportTemplateCache = config.getCacheReportTemplates() == null || !config.getCacheReportTemplates()
+            ? null
+            : buildReportTemplateCache(metadataCacheTtl);
+        this.concurrentSortedQueries = config.getConcurrentSortedQueries() == null
+            ? false
+            : config.getConcurrentSortedQueries();
+        this.sortStrategy = config.getSortStrategy() == null ? SortStrategy.SERVER : config.getSortStrategy();
+        this.clientSortRowThreshold = config.getClientSortRowThreshold() == null
+            ? DEFAULT_CLIENT_SORT_ROW_THRESHOLD
+            : config.getClientSortRowThreshold();
         this.tracer = tracer;
     }
 
@@ -101,8 +221,7 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
 
             String sessionId = logon(sawSessionServiceSoap);
 
-            ConverterStore converterStore = ConverterStore.buildDefault();
-            return new AnalyticsManagerImpl(
+            AnalyticsManagerImpl analyticsManager = new AnalyticsManagerImpl(
                 sessionId,
                 sawSessionServiceSoap,
                 xmlViewServiceSoap,
@@ -110,6 +229,22 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
                 converterStore,
                 tracer
             );
+            analyticsManager.setRowsetParser(rowsetParser);
+            analyticsManager.setPageSize(pageSize);
+            analyticsManager.setStreamResponses(streamResponses);
+            analyticsManager.setBackgroundExecutor(backgroundExecutor);
+            analyticsManager.setPipelineExecutor(pipelineExecutor);
+            analyticsManager.setParallelMapping(parallelMappingPool, parallelMappingThreshold);
+            analyticsManager.setRowBuilderCache(rowBuilderCache);
+            analyticsManager.setMetadataCache(metadataCache);
+            analyticsManager.setReportTemplateCache(reportTemplateCache);
+            analyticsManager.setConcurrentSortedQueries(concurrentSortedQueries);
+            analyticsManager.setSortStrategy(sortStrategy, clientSortRowThreshold);
+            analyticsManager.setReportStatistics(reportStatistics);
+            analyticsManager.setStringDictionaryLimit(stringDictionaryLimit);
+            analyticsManager.setOffHeapResultTables(offHeapResultTables, resultSpillThreshold);
+            analyticsManager.setCompactResultThresholds(compactResultRowThreshold, compactResultSizeThreshold);
+            return analyticsManager;
         } catch (Exception e) {
             Tags.ERROR.set(span, Boolean.TRUE);
             span.log(Collections.singletonMap(ERROR_OBJECT, e));
@@ -119,6 +254,89 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
         }
     }
 
+    /**
+     * Shuts down the background, pipeline and parallel mapping pools.  Tasks that are running are allowed to
+     * finish, but managers created by this factory can't run further queries that need the pools.
+     */
+    @Override
+    public void shutdown()
+    {
+        backgroundExecutor.shutdown();
+        if (pipelineExecutor != null)
+            pipelineExecutor.shutdown();
+        if (parallelMappingPool != null)
+            parallelMappingPool.shutdown();
+    }
+
+    boolean cachesMetadata()
+    {
+        return metadataCache != null;
+    }
+
+    boolean isShutdown()
+    {
+        return backgroundExecutor.isShutdown()
+            && (pipelineExecutor == null || pipelineExecutor.isShutdown())
+            && (parallelMappingPool == null || parallelMappingPool.isShutdown());
+    }
+
+    private static ExecutorService buildBackgroundExecutor()
+    {
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("obiee-ws-client-%d")
+            .build();
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private static ExecutorService buildPipelineExecutor(Integer pipelineThreads)
+    {
+        if (pipelineThreads == null || pipelineThreads <= 0)
+            return null;
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("obiee-ws-client-pipeline-%d")
+            .build();
+        return Executors.newFixedThreadPool(pipelineThreads, threadFactory);
+    }
+
+    private static MetadataCache buildMetadataCache(int timeToLiveSeconds)
+    {
+        if (timeToLiveSeconds <= 0)
+            return null;
+        return new MetadataCache(timeToLiveSeconds, TimeUnit.SECONDS);
+    }
+
+    private static ReportTemplateCache buildReportTemplateCache(int timeToLiveSeconds)
+    {
+        if (timeToLiveSeconds <= 0)
+            return null;
+        return new ReportTemplateCache(timeToLiveSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void invalidateReportMetadata(String reportPath)
+    {
+        if (metadataCache != null)
+            metadataCache.invalidate(reportPath);
+        if (reportTemplateCache != null)
+            reportTemplateCache.invalidate(reportPath);
+    }
+
+    @Override
+    public void invalidateAllReportMetadata()
+    {
+        if (metadataCache != null)
+            metadataCache.invalidateAll();
+        if (reportTemplateCache != null)
+            reportTemplateCache.invalidateAll();
+    }
+
+    private static long megabytes(int megabytes)
+    {
+        return megabytes * 1024L * 1024L;
+    }
+
     private String logon(SAWSessionServiceSoap sawSessionServiceSoap) {
         final Span span = tracer.buildSpan("logon").start();
         try (Scope ignored = tracer.scopeManager().activate(span, false)) {
@@ -172,4 +390,24 @@ public class AnalyticsManagerFactoryImpl implements AnalyticsManagerFactory
         return connectTimeout;
     }
 
+    public RowsetParser getRowsetParser()
+    {
+        return rowsetParser;
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public boolean isStreamResponses()
+    {
+        return streamResponses;
+    }
+
+    public int getParallelMappingThreshold()
+    {
+        return parallelMappingThreshold;
+    }
+
 }
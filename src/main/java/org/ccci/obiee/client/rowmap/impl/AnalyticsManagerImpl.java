@@ -1,6 +1,5 @@
 package org.ccci.obiee.client.rowmap.impl;
 
-import com.google.common.collect.Lists;
 import io.opentracing.Scope;
 import io.opentracing.Span;
 import io.opentracing.Tracer;
@@ -19,6 +18,9 @@ import org.ccci.obiee.client.rowmap.DataRetrievalException;
 import org.ccci.obiee.client.rowmap.Query;
 import org.ccci.obiee.client.rowmap.ReportColumn;
 import org.ccci.obiee.client.rowmap.ReportDefinition;
+import org.ccci.obiee.client.rowmap.ResultTable;
+import org.ccci.obiee.client.rowmap.RowHandler;
+import org.ccci.obiee.client.rowmap.RowView;
 import org.ccci.obiee.client.rowmap.RowmapConfigurationException;
 import org.ccci.obiee.client.rowmap.SortDirection;
 import org.ccci.obiee.client.rowmap.annotation.ReportParamVariable;
@@ -29,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
@@ -40,6 +43,9 @@ import javax.xml.namespace.NamespaceContext;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
@@ -53,7 +59,9 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.lang.reflect.Field;
@@ -65,13 +73,18 @@ import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static io.opentracing.log.Fields.ERROR_OBJECT;
 import static org.ccci.obiee.client.rowmap.impl.JodaTimeAvailability.isJodaAvailable;
@@ -88,6 +101,8 @@ public class AnalyticsManagerImpl implements AnalyticsManager
 
     private static final String VALIDATION_REPORT_PATH = "/shared/CCCi/SSW/Rowmap Session Validation Query";
     private static final String SAW_URI = "com.siebel.analytics.web/report/v1.1";
+    /** the number of rows that may be tokenized ahead of the consumer in pipeline mode */
+    private static final int PIPELINE_DEPTH = 256;
     /**
      * The Answers web service doesn't require you to send the sessionId on every request as long
      * as your web service client maintains cookies.  The jax-ws client can be configured to do this
@@ -109,13 +124,34 @@ public class AnalyticsManagerImpl implements AnalyticsManager
     private XPathExpression criteriaExpression;
 
     private final DocumentBuilder builder;
+    private final XMLInputFactory xmlInputFactory;
     private final ConverterStore converterStore;
     private final Tracer tracer;
 
     private final ReportEditingServiceSoap reportEditingService;
     private boolean closed = false;
-
-    private Exception recentException = null;
+    private RowsetParser rowsetParser = RowsetParser.STAX;
+    private int pageSize = -1;
+    private ExecutorService backgroundExecutor;
+    private StreamingXmlViewClient streamingXmlViewClient;
+    private ExecutorService pipelineExecutor;
+    private ParallelRowMapper parallelRowMapper;
+    private int parallelMappingThreshold;
+    private RowBuilderCache rowBuilderCache;
+    private MetadataCache metadataCache;
+    private ReportTemplateCache reportTemplateCache;
+    private boolean concurrentSortedQueries = false;
+    private SortStrategy sortStrategy = SortStrategy.SERVER;
+    private int clientSortRowThreshold = 0;
+    private ReportStatistics reportStatistics;
+    private int stringDictionaryLimit = DEFAULT_STRING_DICTIONARY_LIMIT;
+    static final int DEFAULT_STRING_DICTIONARY_LIMIT = 1024;
+    private boolean offHeapResultTables = false;
+    private int compactResultRowThreshold = -1;
+    private long compactResultSizeThreshold = -1;
+    private long resultSpillThreshold;
+
+    private volatile Exception recentException = null;
     private Logger log = LoggerFactory.getLogger(getClass());
 
     /**
@@ -156,6 +192,181 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         {
             throw new RowmapConfigurationException("unable to build document builder", e);
         }
+
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Selects how rowsets are parsed.  Defaults to {@link RowsetParser#STAX}.
+     */
+    public void setRowsetParser(RowsetParser rowsetParser)
+    {
+        if (rowsetParser == null)
+            throw new NullPointerException("rowsetParser is null");
+        this.rowsetParser = rowsetParser;
+    }
+
+    /**
+     * Enables paged execution: results are requested from Answers in pages of at most {@code pageSize} rows,
+     * and further pages are pulled with {@code fetchNext} until the whole result has been read.
+     * A value of zero or less disables paging, which is the default.
+     */
+    public void setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the executor used for background work, such as prefetching the next page of a paged query.
+     * If no executor is set, that work is done on the calling thread when it is needed.
+     */
+    public void setBackgroundExecutor(ExecutorService backgroundExecutor)
+    {
+        this.backgroundExecutor = backgroundExecutor;
+    }
+
+    /**
+     * Enables pipeline mode: rows are tokenized on the calling thread while the given workers convert
+     * previously tokenized rows into row objects.  Results keep their rowset order.  The executor should
+     * have a bounded number of threads.  Pipeline mode does not apply to
+     * {@link org.ccci.obiee.client.rowmap.Query#forEachReusingRow(RowHandler)}.
+     * If {@code null}, which is the default, rows are converted on the calling thread.
+     */
+    public void setPipelineExecutor(ExecutorService pipelineExecutor)
+    {
+        this.pipelineExecutor = pipelineExecutor;
+    }
+
+    /**
+     * Shares compiled row builders with other managers, so that repeated queries of a report don't each
+     * compile one.  The cache must only be shared by managers with the same converter store.  If
+     * {@code null}, which is the default, a row builder is compiled for each query.
+     */
+    void setRowBuilderCache(RowBuilderCache rowBuilderCache)
+    {
+        this.rowBuilderCache = rowBuilderCache;
+    }
+
+    /**
+     * Lets sorted queries reuse the metadata schemas of reports fetched by earlier queries
+     */
+    void setMetadataCache(MetadataCache metadataCache)
+    {
+        this.metadataCache = metadataCache;
+    }
+
+    /**
+     * Lets sorted queries apply their report params to cached report xml, rather than asking Answers to
+     * apply them
+     */
+    void setReportTemplateCache(ReportTemplateCache reportTemplateCache)
+    {
+        this.reportTemplateCache = reportTemplateCache;
+    }
+
+    /**
+     * Lets sorted queries fetch the report's xml, with params applied, on the background executor while the
+     * report's metadata is fetched, rather than afterwards.  Disabled by default.
+     */
+    public void setConcurrentSortedQueries(boolean concurrentSortedQueries)
+    {
+        this.concurrentSortedQueries = concurrentSortedQueries;
+    }
+
+    /**
+     * Selects where {@link org.ccci.obiee.client.rowmap.Query#getResultList()} sorts the rows of a sorted query;
+     * see {@link SortStrategy}.  The default is {@link SortStrategy#SERVER}.  The chosen side is recorded on
+     * the query's span as the {@code sort.side} tag.
+     *
+     * @param clientSortRowThreshold for {@link SortStrategy#ADAPTIVE}, the largest number of rows, as last
+     *   returned by the report for the same selection, that are sorted on the client
+     */
+    public void setSortStrategy(SortStrategy sortStrategy, int clientSortRowThreshold)
+    {
+        if (sortStrategy == null)
+            throw new NullPointerException("sortStrategy is null");
+        this.sortStrategy = sortStrategy;
+        this.clientSortRowThreshold = clientSortRowThreshold;
+    }
+
+    void setReportStatistics(ReportStatistics reportStatistics)
+    {
+        this.reportStatistics = reportStatistics;
+    }
+
+    /**
+     * Lets the rows of a query share String instances: within each String column, repeated values share an
+     * instance until the column has shown {@code stringDictionaryLimit} distinct values.  Columns annotated
+     * with {@link org.ccci.obiee.client.rowmap.annotation.LowCardinality} share instances regardless.  The
+     * default is {@value #DEFAULT_STRING_DICTIONARY_LIMIT}; zero disables sharing for unannotated columns.
+     */
+    public void setStringDictionaryLimit(int stringDictionaryLimit)
+    {
+        this.stringDictionaryLimit = stringDictionaryLimit;
+    }
+
+    /**
+     * Makes {@link org.ccci.obiee.client.rowmap.Query#getResultList()} adapt to the size of its result.  Rows
+     * are mapped to row objects as usual until {@code rowThreshold} rows, or rows holding {@code sizeThreshold}
+     * bytes of cell text, have been read; the remaining rows are held compactly, as text, and are mapped to a
+     * new row object each time one is requested from the returned list.  The chosen mode is recorded on the
+     * query's span as the {@code result-list.mode} tag.
+     * <p>
+     * Negative thresholds, which are the default, disable adaptation.  Adaptation doesn't apply when pipelined
+     * or parallel mapping is enabled.
+     */
+    public void setCompactResultThresholds(int rowThreshold, long sizeThreshold)
+    {
+        this.compactResultRowThreshold = rowThreshold;
+        this.compactResultSizeThreshold = sizeThreshold;
+    }
+
+    /**
+     * Holds the tables returned by {@link org.ccci.obiee.client.rowmap.Query#getResultTable()} outside the java
+     * heap, so that very large extracts don't exhaust it.  The first {@code spillThreshold} bytes of each table
+     * are held in direct buffers; the remainder is held in a memory-mapped temporary file, which is deleted when
+     * the table is closed.
+     */
+    public void setOffHeapResultTables(boolean offHeapResultTables, long spillThreshold)
+    {
+        this.offHeapResultTables = offHeapResultTables;
+        this.resultSpillThreshold = spillThreshold;
+    }
+
+    /**
+     * Enables parallel mapping for {@link org.ccci.obiee.client.rowmap.Query#getResultList()}: each page of
+     * at least {@code threshold} rows is read in full and then mapped to row objects on the given pool.
+     * If {@code pool} is {@code null}, which is the default, rows are mapped on the calling thread.
+     */
+    public void setParallelMapping(ForkJoinPool pool, int threshold)
+    {
+        this.parallelRowMapper = pool == null ? null : new ParallelRowMapper(pool);
+        this.parallelMappingThreshold = threshold;
+    }
+
+    /**
+     * If enabled, rowset-returning queries are sent over plain http rather than through the jax-ws port, so
+     * that each rowset can be parsed as the response arrives instead of first being read into a String.
+     * The port's endpoint address and timeouts still apply.  Defaults to false.
+     */
+    public void setStreamResponses(boolean streamResponses)
+    {
+        if (!streamResponses)
+        {
+            streamingXmlViewClient = null;
+        }
+        else if (xmlViewService instanceof BindingProvider)
+        {
+            Map<String, Object> requestContext = ((BindingProvider) xmlViewService).getRequestContext();
+            streamingXmlViewClient = new StreamingXmlViewClient(requestContext, xmlInputFactory);
+        }
+        else
+        {
+            throw new RowmapConfigurationException(
+                "responses can only be streamed if the xml view service is a jax-ws port");
+        }
     }
 
     private void buildXpathExpressions()
@@ -266,51 +477,807 @@ public class AnalyticsManagerImpl implements AnalyticsManager
             try (Scope ignored = tracer.scopeManager().activate(span, false))
             {
                 checkOpen();
-                Class<T> rowType = reportDefinition.getRowType();
-                ReportPath reportPathConfiguration = rowType.getAnnotation(ReportPath.class);
+                ReportPath reportPathConfiguration = getReportPathConfiguration();
                 overrideResourceName(span, reportPathConfiguration.value());
 
-                Document dataDocument;
-                Document metadataDocument;
-                ReportParams params = buildReportParams(selection);
+                String selectionKey = reportStatistics == null ? null : getSelectionKey();
+                boolean sortOnClient = shouldSortOnClient(reportPathConfiguration, selectionKey);
                 if (sortColumn != null)
+                    span.setTag("sort.side", sortOnClient ? "client" : "server");
+
+                ExecutedQuery executedQuery = execute(reportPathConfiguration, span, sortOnClient);
+                List<T> results = buildResultList(executedQuery, span, !sortOnClient);
+                if (reportStatistics != null)
                 {
-                    if (direction == null)
-                    {
-                        direction = SortDirection.ASCENDING;
-                    }
+                    reportStatistics.recordResult(
+                        reportPathConfiguration.value(),
+                        selectionKey,
+                        results.size(),
+                        executedQuery.maxResults);
+                }
+                return sortOnClient ? sortResults(results) : results;
+            }
+            catch (Exception e)
+            {
+                Tags.ERROR.set(span, Boolean.TRUE);
+                span.log(Collections.singletonMap(ERROR_OBJECT, e));
+                throw e;
+            }
+            finally
+            {
+                span.finish();
+            }
+        }
+
+        /**
+         * @param allowCompact whether the rows may be held compactly; they aren't if they are to be sorted on the
+         *   client, since sorting would build a row object for every row anyway
+         */
+        private List<T> buildResultList(ExecutedQuery executedQuery, Span span, boolean allowCompact)
+        {
+            if (parallelRowMapper != null)
+            {
+                try (PagedRowReader reader = openReader(executedQuery, false))
+                {
+                    return buildResultsInParallel(reader);
+                }
+            }
+            if (allowCompact
+                && pipelineExecutor == null
+                && (compactResultRowThreshold >= 0 || compactResultSizeThreshold >= 0))
+            {
+                try (PagedRowReader reader = openReader(executedQuery, false))
+                {
+                    return buildResultsAdaptively(reader, span);
+                }
+            }
+            try (RowCursor<T> cursor = openCursor(executedQuery, false, () -> {}))
+            {
+                return buildResults(cursor);
+            }
+        }
+
+        /**
+         * Whether this query's rows should be fetched unsorted, and then sorted by {@link #sortResults(List)}
+         */
+        private boolean shouldSortOnClient(ReportPath reportPathConfiguration, String selectionKey)
+        {
+            // with maxResults, only Answers can sort without fetching every row
+            if (sortColumn == null || maxResults >= 0 || !RowSorter.canSort(sortColumn))
+                return false;
+            int rowCount = reportStatistics == null
+                ? -1
+                : reportStatistics.getRowCount(reportPathConfiguration.value(), selectionKey);
+            // a result known to be large enough to be held compactly is sorted by Answers, and so kept compact
+            if (compactResultRowThreshold >= 0 && rowCount > compactResultRowThreshold)
+                return false;
+            switch (sortStrategy)
+            {
+                case CLIENT:
+                    return true;
+                case ADAPTIVE:
+                    return rowCount >= 0 && rowCount <= clientSortRowThreshold;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Identifies this query's selection, by the name and value of each variable it sets
+         */
+        private String getSelectionKey()
+        {
+            StringBuilder key = new StringBuilder();
+            for (Variable variable : buildReportParams(selection).getVariables())
+            {
+                key.append(variable.getName()).append('=').append(variable.getValue()).append('\n');
+            }
+            return key.toString();
+        }
+
+        /**
+         * Sorts all of this query's rows, which are every row of the report; see
+         * {@link #shouldSortOnClient(ReportPath, String)}.
+         */
+        private List<T> sortResults(List<T> results)
+        {
+            final Span span = tracer.buildSpan("sort-results").start();
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                span.setTag("rows", results.size());
+                return RowSorter.sort(
+                    results,
+                    sortColumn,
+                    direction == null ? SortDirection.ASCENDING : direction,
+                    maxResults);
+            }
+            finally
+            {
+                span.finish();
+            }
+        }
+
+        public List<RowView<T>> getLazyResultList()
+        {
+            final Span span = buildTopLevelSpan(tracer, "get-lazy-result-list");
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                checkOpen();
+                ReportPath reportPathConfiguration = getReportPathConfiguration();
+                overrideResourceName(span, reportPathConfiguration.value());
+
+                ExecutedQuery executedQuery = execute(reportPathConfiguration, span);
+                try (PagedRowReader reader = openReader(executedQuery, false))
+                {
+                    return reader.readRemainingRowsAsViews();
+                }
+            }
+            catch (Exception e)
+            {
+                Tags.ERROR.set(span, Boolean.TRUE);
+                span.log(Collections.singletonMap(ERROR_OBJECT, e));
+                throw e;
+            }
+            finally
+            {
+                span.finish();
+            }
+        }
+
+        public ResultTable<T> getResultTable()
+        {
+            final Span span = buildTopLevelSpan(tracer, "get-result-table");
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                checkOpen();
+                ReportPath reportPathConfiguration = getReportPathConfiguration();
+                overrideResourceName(span, reportPathConfiguration.value());
+
+                ExecutedQuery executedQuery = execute(reportPathConfiguration, span);
+                try (PagedRowReader reader = openReader(executedQuery, false))
+                {
+                    return buildResultTable(reader);
+                }
+            }
+            catch (Exception e)
+            {
+                Tags.ERROR.set(span, Boolean.TRUE);
+                span.log(Collections.singletonMap(ERROR_OBJECT, e));
+                throw e;
+            }
+            finally
+            {
+                span.finish();
+            }
+        }
+
+        public Stream<T> stream()
+        {
+            final Span span = buildTopLevelSpan(tracer, "stream-results");
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                checkOpen();
+                ReportPath reportPathConfiguration = getReportPathConfiguration();
+                overrideResourceName(span, reportPathConfiguration.value());
+
+                ExecutedQuery executedQuery = execute(reportPathConfiguration, span);
+                RowCursor<T> cursor = openCursor(executedQuery, false, span::finish);
+                return cursor.stream();
+            }
+            catch (Exception e)
+            {
+                Tags.ERROR.set(span, Boolean.TRUE);
+                span.log(Collections.singletonMap(ERROR_OBJECT, e));
+                span.finish();
+                throw e;
+            }
+        }
+
+        public void forEach(RowHandler<? super T> handler)
+        {
+            forEach(handler, false);
+        }
+
+        public void forEachReusingRow(RowHandler<? super T> handler)
+        {
+            forEach(handler, true);
+        }
+
+        private void forEach(RowHandler<? super T> handler, boolean reuseRowInstance)
+        {
+            if (handler == null)
+                throw new NullPointerException("handler is null");
+            final Span span = buildTopLevelSpan(tracer, "for-each-result");
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                checkOpen();
+                ReportPath reportPathConfiguration = getReportPathConfiguration();
+                overrideResourceName(span, reportPathConfiguration.value());
+
+                ExecutedQuery executedQuery = execute(reportPathConfiguration, span);
+                try (RowCursor<T> cursor = openCursor(executedQuery, reuseRowInstance, () -> {}))
+                {
+                    handleResults(cursor, handler);
+                }
+            }
+            catch (Exception e)
+            {
+                Tags.ERROR.set(span, Boolean.TRUE);
+                span.log(Collections.singletonMap(ERROR_OBJECT, e));
+                throw e;
+            }
+            finally
+            {
+                span.finish();
+            }
+        }
+
+        private ReportPath getReportPathConfiguration()
+        {
+            Class<T> rowType = reportDefinition.getRowType();
+            return rowType.getAnnotation(ReportPath.class);
+        }
+
+        private ExecutedQuery execute(ReportPath reportPathConfiguration, Span parentSpan)
+        {
+            return execute(reportPathConfiguration, parentSpan, false);
+        }
 
-                    String metadata = queryForMetadata(reportPathConfiguration);
-                    metadataDocument = buildRowsetDocument(metadata);
+        /**
+         * @param parentSpan the top-level span of this execution; used as the parent of
+         *   spans for pages that are fetched in the background
+         * @param sortOnClient if true, the rows are fetched unsorted, so that they can be sorted on the client
+         */
+        private ExecutedQuery execute(ReportPath reportPathConfiguration, Span parentSpan, boolean sortOnClient)
+        {
+            RowsetSchema metadataSchema = null;
+            RowsetPages.Page firstPage;
+            ReportParams params = buildReportParams(selection);
+            int rowLimit = sortOnClient ? -1 : maxResults;
+            int maxRowsPerPage = getMaxRowsPerPage(rowLimit);
+            if (sortColumn != null && !sortOnClient)
+            {
+                if (direction == null)
+                {
+                    direction = SortDirection.ASCENDING;
+                }
+
+                Future<String> prefetchedXml = prefetchReportXml(reportPathConfiguration, params, parentSpan);
+                try
+                {
+                    metadataSchema = getMetadataSchema(reportPathConfiguration, parentSpan);
 
-                    String rowset = buildXmlReportAndQuery(
+                    firstPage = buildXmlReportAndQuery(
                         reportPathConfiguration,
                         params,
-                        metadataDocument,
-                        maxResults
+                        metadataSchema,
+                        maxRowsPerPage,
+                        prefetchedXml
                     );
-                    dataDocument = buildRowsetDocument(rowset);
+                }
+                catch (RuntimeException e)
+                {
+                    if (prefetchedXml != null)
+                        prefetchedXml.cancel(true);
+                    throw e;
+                }
+            }
+            else
+            {
+                firstPage = queryForMetadataAndData(reportPathConfiguration, params, maxRowsPerPage);
+            }
+            // a streamed page's query id and 'finished' flag follow its rowset, so the next page
+            // can't be requested before the current one has been read
+            RowsetPages pages = new RowsetPages(
+                firstPage,
+                isPaged(),
+                new XmlViewPagingService(parentSpan),
+                streamingXmlViewClient == null ? backgroundExecutor : null);
+            return new ExecutedQuery(pages, metadataSchema, rowLimit);
+        }
+
+        private boolean isPaged()
+        {
+            return pageSize > 0;
+        }
+
+        private int getMaxRowsPerPage(int rowLimit)
+        {
+            if (!isPaged())
+                return rowLimit;
+            else if (rowLimit >= 0)
+                return Math.min(pageSize, rowLimit);
+            else
+                return pageSize;
+        }
+
+        private RowsetPages.Page buildXmlReportAndQuery(
+            ReportPath reportPathConfiguration,
+            ReportParams params,
+            RowsetSchema metadataSchema,
+            int maxRowsPerPage,
+            Future<String> prefetchedXml) {
+
+            if (metadataSchema == null) {
+                throw new RowmapConfigurationException(
+                    String.format(
+                        "the report '%s', as stored in Answers, appears to return zero results. " +
+                        "Please adjust the default parameters in Answers so that it returns at least one.",
+                        reportPathConfiguration.value()
+                    )
+                );
+            }
+
+            String sortColumnId = findSortColumnId(sortColumn, metadataSchema);
+
+            String xmlReportWithAppropriateOrdering = createXmlReportWithAppropriateOrdering(
+                reportPathConfiguration,
+                params,
+                sortColumnId,
+                direction,
+                prefetchedXml);
+
+            return queryForData(xmlReportWithAppropriateOrdering, params, maxRowsPerPage);
+        }
+
+        /**
+         * Returns the report's metadata schema, from the metadata cache if it holds a schema that describes the
+         * sort column.  A cached schema that doesn't is stale, and is fetched again.
+         *
+         * @return the schema, or {@code null} if the report returned no rows
+         */
+        private RowsetSchema getMetadataSchema(ReportPath reportPathConfiguration, Span parentSpan)
+        {
+            if (metadataCache == null)
+                return parseMetadataSchema(queryForMetadata(reportPathConfiguration));
+
+            String reportPath = reportPathConfiguration.value();
+            boolean[] fetched = {false};
+            Supplier<RowsetSchema> fetcher = () -> {
+                fetched[0] = true;
+                return parseMetadataSchema(queryForMetadata(reportPathConfiguration));
+            };
+            RowsetSchema schema = metadataCache.getSchema(reportPath, fetcher);
+            if (!fetched[0] && !describesSortColumn(schema))
+            {
+                metadataCache.invalidate(reportPath);
+                schema = metadataCache.getSchema(reportPath, fetcher);
+            }
+            parentSpan.setTag("metadata.cached", !fetched[0]);
+            return schema;
+        }
+
+        private boolean describesSortColumn(RowsetSchema schema)
+        {
+            RowsetSchema.Column column = schema.findColumn(ReportColumnId.buildColumnId(sortColumn.getField()));
+            return column != null && column.columnId != null;
+        }
+
+        /**
+         * @return the schema of the given metadata rowset, or {@code null} if the rowset is empty
+         */
+        private RowsetSchema parseMetadataSchema(String metadata)
+        {
+            if (rowsetParser == RowsetParser.DOM)
+            {
+                Document metadataDocument = buildRowsetDocument(metadata);
+                return isEmptyRowset(metadataDocument) ? null : readSchema(metadataDocument);
+            }
+            else
+            {
+                try (StreamingRowsetReader reader = openRowsetReader(metadata))
+                {
+                    RowsetSchema schema = readSchema(reader);
+                    return reader.isEmpty() ? null : schema;
+                }
+            }
+        }
+
+        /**
+         * Opens a cursor over the rows of the given query's rowset.  Closing the cursor cancels the query
+         * if it has not finished, and then runs {@code onClose}.  If the cursor cannot be opened, the query is
+         * cancelled before the exception is thrown, and {@code onClose} is not run.
+         *
+         * @param reuseRowInstance if true, the cursor returns the same row instance for every row
+         */
+        private RowCursor<T> openCursor(ExecutedQuery executedQuery, boolean reuseRowInstance, Runnable onClose)
+        {
+            PagedRowReader reader = openReader(executedQuery, reuseRowInstance);
+            return new RowCursor<>(
+                reader,
+                () -> {
+                    try
+                    {
+                        reader.close();
+                    }
+                    finally
+                    {
+                        onClose.run();
+                    }
+                });
+        }
+
+        /**
+         * Opens a reader over the rows of the given query's rowset.  Closing the reader cancels the query
+         * if it has not finished.  If the reader cannot be opened, the query is cancelled before the
+         * exception is thrown.
+         */
+        private PagedRowReader openReader(ExecutedQuery executedQuery, boolean reuseRowInstance)
+        {
+            PagedRowReader reader = new PagedRowReader(executedQuery, reuseRowInstance);
+            try
+            {
+                reader.openNextPage();
+            }
+            catch (RuntimeException e)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (RuntimeException closeFailure)
+                {
+                    e.addSuppressed(closeFailure);
+                }
+                throw e;
+            }
+            return reader;
+        }
+
+        /**
+         * Reads the rows of each page of a query's rowset in turn, stopping early once
+         * the query's row limit has been read.
+         */
+        private class PagedRowReader implements RowCursor.RowReader<T>, Closeable
+        {
+            private final RowsetPages pages;
+            private final RowsetSchema metadataSchema;
+            private final boolean reuseRowInstance;
+            private RowBuilder<T> rowBuilder;
+            /** the schema {@link #rowBuilder} was built for */
+            private RowsetSchema rowsetSchema;
+            private T reusableRow;
+
+            private RowCursor.RowReader<T> pageRows;
+            private RawRowReader pageRawRows;
+            private RawRow rawRowBuffer;
+            private StreamingRowsetReader pageReader;
+            private PipelinedRowReader<T> pagePipeline;
+            private int remaining;
+
+            PagedRowReader(ExecutedQuery executedQuery, boolean reuseRowInstance)
+            {
+                this.pages = executedQuery.pages;
+                this.metadataSchema = executedQuery.metadataSchema;
+                this.reuseRowInstance = reuseRowInstance;
+                this.remaining = executedQuery.maxResults < 0 ? -1 : executedQuery.maxResults;
+            }
+
+            @Override
+            public T readNextRow()
+            {
+                while (remaining != 0 && (pageRows != null || openNextPage()))
+                {
+                    T row = pageRows.readNextRow();
+                    if (row != null)
+                    {
+                        if (remaining > 0)
+                            remaining--;
+                        return row;
+                    }
+                    closePage();
+                }
+                return null;
+            }
+
+            /**
+             * Reads all remaining rows.  The rows of each page are mapped on the fork/join pool if the page
+             * has at least {@code parallelThreshold} rows.
+             */
+            List<T> readRemainingRows(ParallelRowMapper mapper, int parallelThreshold)
+            {
+                List<T> results = new ArrayList<>();
+                while (remaining != 0 && (pageRows != null || openNextPage()))
+                {
+                    List<RawRow> rawRows = new ArrayList<>();
+                    RawRow rawRow;
+                    while (remaining != 0 && (rawRow = pageRawRows.readNextRow(newRawRow())) != null)
+                    {
+                        rawRows.add(rawRow);
+                        if (remaining > 0)
+                            remaining--;
+                    }
+                    if (rawRows.size() >= parallelThreshold)
+                    {
+                        results.addAll(mapper.mapRows(rawRows, rowBuilder));
+                    }
+                    else
+                    {
+                        for (RawRow row : rawRows)
+                        {
+                            results.add(rowBuilder.buildRowInstance(row));
+                        }
+                    }
+                    closePage();
+                }
+                return results;
+            }
+
+            /**
+             * Reads all remaining rows, mapping them to row objects until either threshold is reached, and holding
+             * the rest as {@link CompactRows}.  A negative threshold is ignored.
+             *
+             * @param sizeThreshold in bytes of cell text, which is held as UTF-16
+             */
+            List<T> readRemainingRowsAdaptively(int rowThreshold, long sizeThreshold)
+            {
+                List<T> results = new ArrayList<>();
+                long textSize = 0;
+                CompactRows compactRows = null;
+                while (remaining != 0 && (pageRows != null || openNextPage()))
+                {
+                    RawRow rawRow;
+                    while (remaining != 0 && (rawRow = pageRawRows.readNextRow(getRawRowBuffer())) != null)
+                    {
+                        if (compactRows != null)
+                        {
+                            compactRows.add(rawRow);
+                        }
+                        else
+                        {
+                            results.add(mapRow(rawRow));
+                            textSize += rawRow.textLength() * (long) Character.BYTES;
+                            if (rowThreshold >= 0 && results.size() >= rowThreshold
+                                || sizeThreshold >= 0 && textSize >= sizeThreshold)
+                            {
+                                compactRows = new CompactRows(rawRow.size());
+                            }
+                        }
+                        if (remaining > 0)
+                            remaining--;
+                    }
+                    closePage();
+                }
+                if (compactRows == null)
+                    return results;
+                compactRows.trim();
+                return new CompactResultList<>(results, compactRows, rowBuilder);
+            }
+
+            /**
+             * Reads all remaining rows, keeping each row's cell text for {@link LazyRowView}s to convert.
+             */
+            List<RowView<T>> readRemainingRowsAsViews()
+            {
+                List<RowView<T>> views = new ArrayList<>();
+                while (remaining != 0 && (pageRows != null || openNextPage()))
+                {
+                    RawRow rawRow;
+                    while (remaining != 0 && (rawRow = pageRawRows.readNextRow(newRawRow())) != null)
+                    {
+                        views.add(new LazyRowView<>(rowBuilder, rawRow.compact()));
+                        if (remaining > 0)
+                            remaining--;
+                    }
+                    closePage();
+                }
+                return views;
+            }
+
+            /**
+             * Reads all remaining rows into a table, column by column, without creating row objects.
+             */
+            ResultTable<T> readRemainingRowsIntoTable()
+            {
+                ResultTableBuilder<T> table = null;
+                OffHeapStorage storage = null;
+                try
+                {
+                    while (remaining != 0 && (pageRows != null || openNextPage()))
+                    {
+                        RawRow rawRow;
+                        while (remaining != 0 && (rawRow = pageRawRows.readNextRow(getRawRowBuffer())) != null)
+                        {
+                            if (table == null)
+                            {
+                                if (offHeapResultTables)
+                                    storage = new OffHeapStorage(resultSpillThreshold);
+                                table = new ResultTableBuilder<>(
+                                    reportDefinition.getColumns(),
+                                    rowBuilder,
+                                    rowsetSchema,
+                                    storage);
+                            }
+                            table.addRow(rawRow);
+                            if (remaining > 0)
+                                remaining--;
+                        }
+                        closePage();
+                    }
+                }
+                catch (RuntimeException e)
+                {
+                    if (storage != null)
+                        storage.close();
+                    throw e;
+                }
+                return table == null ? ResultTableBuilder.emptyTable(reportDefinition.getColumns()) : table.build();
+            }
+
+            /**
+             * @return false if there are no more pages
+             */
+            boolean openNextPage()
+            {
+                Reader rowset = pages.nextPage();
+                if (rowset == null)
+                {
+                    return false;
+                }
+
+                RawRowReader rawRows = openRawRows(rowset);
+                pageRawRows = rawRows;
+                if (pipelineExecutor != null && !reuseRowInstance)
+                {
+                    pagePipeline = new PipelinedRowReader<>(
+                        () -> rawRows.readNextRow(newRawRow()),
+                        rowBuilder,
+                        pipelineExecutor,
+                        PIPELINE_DEPTH);
+                    pageRows = pagePipeline;
                 }
                 else
                 {
-                    String rowset = queryForMetadataAndData(reportPathConfiguration, params, maxResults);
-                    dataDocument = buildRowsetDocument(rowset);
-                    metadataDocument = dataDocument;
+                    pageRows = () -> {
+                        RawRow row = rawRows.readNextRow(getRawRowBuffer());
+                        return row == null ? null : mapRow(row);
+                    };
                 }
+                return true;
+            }
 
-                if (isEmptyRowset(dataDocument))
+            /**
+             * Reads the schema of a page and prepares to read its rows.  Row nodes are converted to raw rows
+             * here, on the calling thread, since DOM nodes can't be safely read from other threads.
+             */
+            private RawRowReader openRawRows(Reader rowset)
+            {
+                if (rowsetParser == RowsetParser.DOM)
+                {
+                    Document dataDocument = buildRowsetDocument(rowset);
+                    if (isEmptyRowset(dataDocument))
+                    {
+                        return row -> null;
+                    }
+                    RowBuilder<T> pageRowBuilder = getRowBuilder(readSchema(dataDocument));
+                    Iterator<Node> rows = Doms.each(getRows(dataDocument)).iterator();
+                    return row -> rows.hasNext() ? pageRowBuilder.readRow(rows.next(), row) : null;
+                }
+                else
                 {
-                    return Lists.newArrayList();
+                    StreamingRowsetReader reader = openRowsetReader(rowset);
+                    pageReader = reader;
+                    RowsetSchema dataSchema = readSchema(reader);
+                    if (reader.isEmpty())
+                    {
+                        return row -> null;
+                    }
+                    ColumnSlots columnSlots = getRowBuilder(dataSchema).getColumnSlots();
+                    return row -> readRow(reader, columnSlots, row);
                 }
-                RowBuilder<T> rowBuilder = buildRowBuilder(metadataDocument);
-                NodeList rows = getRows(dataDocument);
-                return buildResults(rowBuilder, rows);
             }
-            catch (Exception e)
+
+            /**
+             * @return a new raw row to read a row into, or {@code null} if no rows have been seen yet
+             */
+            private RawRow newRawRow()
+            {
+                return rowBuilder == null ? null : rowBuilder.getColumnSlots().newRow();
+            }
+
+            /**
+             * @return the raw row that rows are read into when they are mapped as soon as they are read
+             */
+            private RawRow getRawRowBuffer()
+            {
+                if (rawRowBuffer == null)
+                {
+                    rawRowBuffer = newRawRow();
+                }
+                return rawRowBuffer;
+            }
+
+            private T mapRow(RawRow row)
+            {
+                if (!reuseRowInstance)
+                    return rowBuilder.buildRowInstance(row);
+                rowBuilder.populateRow(getReusableRow(rowBuilder), row);
+                return reusableRow;
+            }
+
+            private T getReusableRow(RowBuilder<T> pageRowBuilder)
+            {
+                if (reusableRow == null)
+                {
+                    reusableRow = pageRowBuilder.instantiateRow();
+                }
+                return reusableRow;
+            }
+
+            /**
+             * Builds the row builder when the first non-empty page is read.  Only the first page of a
+             * rowset carries a schema preamble, unless a separate metadata query supplied the schema.
+             * The builder is this query's own, so that String dictionaries live only as long as the query.
+             */
+            private RowBuilder<T> getRowBuilder(RowsetSchema pageSchema)
+            {
+                if (rowBuilder == null)
+                {
+                    rowsetSchema = metadataSchema == null ? pageSchema : metadataSchema;
+                    rowBuilder = buildRowBuilder(rowsetSchema).forQuery(stringDictionaryLimit);
+                }
+                return rowBuilder;
+            }
+
+            private void closePage()
+            {
+                if (pagePipeline != null)
+                {
+                    pagePipeline.close();
+                    pagePipeline = null;
+                }
+                if (pageReader != null)
+                {
+                    pageReader.close();
+                    pageReader = null;
+                }
+                pageRows = null;
+                pageRawRows = null;
+            }
+
+            @Override
+            public void close()
+            {
+                try
+                {
+                    closePage();
+                }
+                finally
+                {
+                    pages.close();
+                }
+            }
+        }
+
+        private boolean isEmptyRowset(Document rowsetDocument) {
+            Node rowsetNode = rowsetDocument.getDocumentElement();
+            return rowsetNode.getChildNodes().getLength() == 0;
+        }
+
+        private List<T> buildResults(RowCursor<T> cursor)
+        {
+            final Span span = tracer.buildSpan("build-results").start();
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                List<T> results = new ArrayList<>();
+                while (cursor.hasNext())
+                {
+                    results.add(cursor.next());
+                }
+                return results;
+            }
+            finally
+            {
+                span.finish();
+            }
+        }
+
+        private List<T> buildResultsInParallel(PagedRowReader reader)
+        {
+            final Span span = tracer.buildSpan("build-results-in-parallel").start();
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
             {
-                Tags.ERROR.set(span, Boolean.TRUE);
-                span.log(Collections.singletonMap(ERROR_OBJECT, e));
-                throw e;
+                return reader.readRemainingRows(parallelRowMapper, parallelMappingThreshold);
             }
             finally
             {
@@ -318,78 +1285,75 @@ public class AnalyticsManagerImpl implements AnalyticsManager
             }
         }
 
-        private String buildXmlReportAndQuery(
-            ReportPath reportPathConfiguration,
-            ReportParams params,
-            Document metadataDoc,
-            int maxResults) {
-
-            if (isEmptyRowset(metadataDoc)) {
-                throw new RowmapConfigurationException(
-                    String.format(
-                        "the report '%s', as stored in Answers, appears to return zero results. " +
-                        "Please adjust the default parameters in Answers so that it returns at least one.",
-                        reportPathConfiguration.value()
-                    )
-                );
+        /**
+         * @param querySpan the span to record the chosen mode on
+         */
+        private List<T> buildResultsAdaptively(PagedRowReader reader, Span querySpan)
+        {
+            final Span span = tracer.buildSpan("build-results-adaptively").start();
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                List<T> results = reader.readRemainingRowsAdaptively(
+                    compactResultRowThreshold,
+                    compactResultSizeThreshold);
+                querySpan.setTag("result-list.mode", results instanceof CompactResultList ? "compact" : "objects");
+                querySpan.setTag("result-list.rows", results.size());
+                return results;
+            }
+            finally
+            {
+                span.finish();
             }
-
-            String sortColumnId = findSortColumnId(sortColumn, metadataDoc);
-
-            String xmlReportWithAppropriateOrdering = createXmlReportWithAppropriateOrdering(
-                reportPathConfiguration,
-                params,
-                sortColumnId,
-                direction);
-
-            return queryForData(xmlReportWithAppropriateOrdering, params, maxResults);
         }
 
-        private boolean isEmptyRowset(Document rowsetDocument) {
-            Node rowsetNode = rowsetDocument.getDocumentElement();
-            return rowsetNode.getChildNodes().getLength() == 0;
+        private ResultTable<T> buildResultTable(PagedRowReader reader)
+        {
+            final Span span = tracer.buildSpan("build-result-table").start();
+            try (Scope ignored = tracer.scopeManager().activate(span, false))
+            {
+                return reader.readRemainingRowsIntoTable();
+            }
+            finally
+            {
+                span.finish();
+            }
         }
 
-        private List<T> buildResults(RowBuilder<T> rowBuilder, NodeList rows)
+        private void handleResults(RowCursor<T> cursor, RowHandler<? super T> handler)
         {
-            final Span span = tracer.buildSpan("build-results").start();
+            final Span span = tracer.buildSpan("handle-results").start();
             try (Scope ignored = tracer.scopeManager().activate(span, false))
             {
-                List<T> results = new ArrayList<>();
-                for (Node row : Doms.each(rows))
+                while (cursor.hasNext())
                 {
-                    T rowInstance = rowBuilder.buildRowInstance(row);
-                    results.add(rowInstance);
+                    handler.handleRow(cursor.next());
                 }
-                return results;
             }
             finally
             {
                 span.finish();
             }
-
         }
 
         RowBuilder<T> buildRowBuilder(Document doc)
         {
-            NodeList columnDefinitionXsdElements = getColumnSchemaNodesFromPreamble(doc);
-            
-            Map<ReportColumnId, String> elementNamesPerColumnId = new HashMap<>();
-            
-            for (Node node : Doms.each(columnDefinitionXsdElements) )
-            {
-                String elementName = node.getAttributes().getNamedItem("name").getNodeValue();
-                String tableHeading = node.getAttributes().getNamedItem("saw-sql:tableHeading").getNodeValue();
-                String columnHeading = node.getAttributes().getNamedItem("saw-sql:columnHeading").getNodeValue();
-                
-                elementNamesPerColumnId.put(new ReportColumnId(tableHeading, columnHeading), elementName);
-            }
-            if (elementNamesPerColumnId.isEmpty())
+            return buildRowBuilder(readSchema(doc));
+        }
+
+        private RowBuilder<T> buildRowBuilder(RowsetSchema schema)
+        {
+            if (schema.isEmpty())
                 throw new DataRetrievalException("No schema was returned in rowset");
-            ConverterStore converters = reportDefinition.getConverterStore();
-            ConverterStore reportConverterStore = converterStore.copyAndAdd(converters);
+            if (rowBuilderCache == null)
+                return compileRowBuilder(schema);
+            return rowBuilderCache.getRowBuilder(reportDefinition.getRowType(), schema, () -> compileRowBuilder(schema));
+        }
+
+        private RowBuilder<T> compileRowBuilder(RowsetSchema schema)
+        {
+            ConverterStore reportConverterStore = reportDefinition.getConverterStore(converterStore);
             
-            return new RowBuilder<>(elementNamesPerColumnId, reportDefinition.getRowType(), reportConverterStore);
+            return new RowBuilder<>(schema.getElementNamesPerColumnId(), reportDefinition.getRowType(), reportConverterStore);
         }
         
         
@@ -421,23 +1385,92 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         }
     }
     
-    private <T> String findSortColumnId(ReportColumn<T> sortColumn, Document metadataDoc)
+    /**
+     * Reads the rows of a page into raw rows indexed by slot (see {@link ColumnSlots}).
+     */
+    private interface RawRowReader
+    {
+        /**
+         * @param row the raw row to read the next row into
+         * @return {@code row}, or {@code null} if there are no more rows
+         */
+        RawRow readNextRow(RawRow row);
+    }
+
+    /**
+     * The outcome of executing a query: the pages of the rowset returned by the xml view service, along with
+     * (for sorted queries) the schema obtained from the separate metadata query.
+     */
+    static class ExecutedQuery
+    {
+        final RowsetPages pages;
+
+        /** {@code null} unless a separate metadata query was needed */
+        final RowsetSchema metadataSchema;
+
+        /** the number of rows to read, or -1 to read them all */
+        final int maxResults;
+
+        ExecutedQuery(RowsetPages pages, RowsetSchema metadataSchema, int maxResults)
+        {
+            this.pages = pages;
+            this.metadataSchema = metadataSchema;
+            this.maxResults = maxResults;
+        }
+    }
+
+    private class XmlViewPagingService implements RowsetPages.PagingService
+    {
+        private final Span parentSpan;
+
+        XmlViewPagingService(Span parentSpan)
+        {
+            this.parentSpan = parentSpan;
+        }
+
+        @Override
+        public RowsetPages.Page fetchNext(String queryId)
+        {
+            return fetchNextPage(queryId, parentSpan);
+        }
+
+        @Override
+        public void cancelQuery(String queryId)
+        {
+            xmlViewService.cancelQuery(queryId, sessionId);
+        }
+    }
+
+    private RowsetPages.Page fetchNextPage(String queryId, Span parentSpan)
+    {
+        final Span span = tracer.buildSpan("fetch-next-page").asChildOf(parentSpan).start();
+        try (Scope ignored = tracer.scopeManager().activate(span, false))
+        {
+            if (streamingXmlViewClient != null)
+                return streamingXmlViewClient.fetchNext(queryId, sessionId);
+            return RowsetPages.page(xmlViewService.fetchNext(queryId, sessionId));
+        }
+        catch (RuntimeException e)
+        {
+            recentException = e;
+            throw new DataRetrievalException("unable to fetch next page of query " + queryId, e);
+        }
+        finally
+        {
+            span.finish();
+        }
+    }
+
+    private <T> String findSortColumnId(ReportColumn<T> sortColumn, RowsetSchema metadataSchema)
     {
-        NodeList columnDefinitionXsdElements = getColumnSchemaNodesFromPreamble(metadataDoc);
-        
         ReportColumnId sortColumnId = ReportColumnId.buildColumnId(sortColumn.getField());
         
-        for (Node node : Doms.each(columnDefinitionXsdElements) )
+        RowsetSchema.Column column = metadataSchema.findColumn(sortColumnId);
+        if (column == null || column.columnId == null)
         {
-            ReportColumnId potentialColumnId = new ReportColumnId(
-                node.getAttributes().getNamedItem("saw-sql:tableHeading").getNodeValue(), 
-                node.getAttributes().getNamedItem("saw-sql:columnHeading").getNodeValue());
-            if (sortColumnId.equals(potentialColumnId))
-            {
-                return node.getAttributes().getNamedItem("saw-sql:columnID").getNodeValue();
-            }
+            throw new DataRetrievalException("metadata does not indicate such a sort column exists: " + sortColumnId);
         }
-        throw new DataRetrievalException("metadata does not indicate such a sort column exists: " + sortColumnId);
+        return column.columnId;
     }
 
     private ReportParams buildReportParams(Object selector)
@@ -559,17 +1592,145 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         return value;
     }
     
+    /**
+     * If concurrent sorted queries are enabled, starts fetching the report's xml, with the given params applied,
+     * on the background executor.  If the params can be applied to a cached report template, the report's template
+     * is fetched instead, and cached; the returned future then yields {@code null}.
+     *
+     * @param parentSpan the top-level span of this execution; the parent of the fetch's span
+     * @return the pending xml, or {@code null} if it is not fetched in the background
+     */
+    private Future<String> prefetchReportXml(ReportPath reportPathConfiguration, ReportParams params, Span parentSpan)
+    {
+        if (!concurrentSortedQueries || backgroundExecutor == null)
+            return null;
+        boolean applyLocally = canApplyParamsLocally(params);
+        List<String> names = getVariableNames(params);
+        if (applyLocally && reportTemplateCache.containsTemplate(reportPathConfiguration.value(), names))
+            return null;
+        return backgroundExecutor.submit(() -> {
+            try (Scope ignored = tracer.scopeManager().activate(parentSpan, false))
+            {
+                if (applyLocally)
+                {
+                    ReportTemplateCache.Template template = reportTemplateCache.getTemplate(
+                        reportPathConfiguration.value(),
+                        names,
+                        markers -> applyMarkers(reportPathConfiguration, names, markers));
+                    if (template.substitutesAll())
+                        return null;
+                }
+                return applyReportParams(reportPathConfiguration, params);
+            }
+        });
+    }
+
+    /**
+     * Applies the given params and ordering to the report's xml.  If the params can be applied to a cached report
+     * template, this is done with the cached sort plan for the report, params and ordering, so that no xml is
+     * parsed or serialized.
+     *
+     * @param prefetchedXml see {@link #prefetchReportXml(ReportPath, ReportParams, Span)}; may be {@code null}
+     */
     private String createXmlReportWithAppropriateOrdering(
         ReportPath reportPathConfiguration,
         ReportParams params,
         String sortColumnId,
-        SortDirection direction)
+        SortDirection direction,
+        Future<String> prefetchedXml)
     {
-        String xml = buildXmlFromParams(reportPathConfiguration, params);
+        String xml = prefetchedXml == null ? null : awaitPrefetchedXml(prefetchedXml);
+        if (xml == null && canApplyParamsLocally(params))
+        {
+            List<String> names = getVariableNames(params);
+            List<String> values = new ArrayList<>();
+            for (Variable variable : params.getVariables())
+            {
+                values.add((String) variable.getValue());
+            }
+            ReportTemplateCache.Template sortPlan = reportTemplateCache.getSortPlan(
+                reportPathConfiguration.value(),
+                names,
+                sortColumnId + ' ' + direction,
+                unsorted -> prepareXml(unsorted, sortColumnId, direction),
+                markers -> applyMarkers(reportPathConfiguration, names, markers));
+            if (sortPlan != null)
+                return sortPlan.apply(values);
+        }
+        if (xml == null)
+            xml = applyReportParams(reportPathConfiguration, params);
         return prepareXml(xml, sortColumnId, direction);
     }
 
-    private String buildXmlFromParams(ReportPath reportPathConfiguration, ReportParams params)
+    /**
+     * Whether report templates are cached, and every param is a String that a template can take as it is; see
+     * {@link ReportTemplateCache#canApply(String)}.  Other values, such as the dates sent for {@code LocalDateTime}
+     * variables, or Strings that Answers must escape or quote, are formatted by Answers, so their params must be
+     * applied by Answers.
+     */
+    private boolean canApplyParamsLocally(ReportParams params)
+    {
+        if (reportTemplateCache == null)
+            return false;
+        for (Variable variable : params.getVariables())
+        {
+            Object value = variable.getValue();
+            if (!(value instanceof String) || !ReportTemplateCache.canApply((String) value))
+                return false;
+        }
+        return true;
+    }
+
+    private String awaitPrefetchedXml(Future<String> prefetchedXml)
+    {
+        try
+        {
+            return prefetchedXml.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            prefetchedXml.cancel(true);
+            throw new DataRetrievalException("interrupted while waiting for report xml", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new DataRetrievalException("unable to generate xml", (Exception) cause);
+        }
+    }
+
+    private List<String> getVariableNames(ReportParams params)
+    {
+        List<String> names = new ArrayList<>();
+        for (Variable variable : params.getVariables())
+        {
+            names.add(variable.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Applies the given marker value to each of the given variables; see {@link ReportTemplateCache}.
+     */
+    private String applyMarkers(ReportPath reportPathConfiguration, List<String> names, List<String> markers)
+    {
+        ReportParams markerParams = new ReportParams();
+        for (int i = 0; i < names.size(); i++)
+        {
+            Variable variable = new Variable();
+            variable.setName(names.get(i));
+            variable.setValue(markers.get(i));
+            markerParams.getVariables().add(variable);
+        }
+        return applyReportParams(reportPathConfiguration, markerParams);
+    }
+
+    private String applyReportParams(ReportPath reportPathConfiguration, ReportParams params)
     {
         final Span span = tracer.buildSpan("apply-report-params").start();
         try (Scope ignored = tracer.scopeManager().activate(span, false))
@@ -610,12 +1771,16 @@ public class AnalyticsManagerImpl implements AnalyticsManager
             ReportRef report = new ReportRef();
             report.setReportPath(reportPathConfiguration.value());
 
+            ReportParams reportParams = new ReportParams();
             QueryResults results = queryXmlViewServiceAndHandleExceptions(
                 reportPathConfiguration,
-                new ReportParams(),
-                report,
-                outputFormat,
-                executionOptions
+                reportParams,
+                () -> xmlViewService.executeXMLQuery(
+                    report,
+                    outputFormat,
+                    executionOptions,
+                    reportParams,
+                    sessionId)
             );
             return results.getRowset();
         }
@@ -625,26 +1790,19 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         }
     }
 
-    private String queryForData(String xmlReport, ReportParams reportParams, int maxResults)
+    private RowsetPages.Page queryForData(String xmlReport, ReportParams reportParams, int maxRowsPerPage)
     {
         final Span span = tracer.buildSpan("query-for-data").start();
         try (Scope ignored = tracer.scopeManager().activate(span, false))
         {
             XMLQueryOutputFormat outputFormat = XMLQueryOutputFormat.SAW_ROWSET_DATA;
 
-            QueryResults results = queryXmlViewServiceWithXmlAndHandleExceptions(
+            return queryXmlViewServiceWithXmlAndHandleExceptions(
                 xmlReport,
                 outputFormat,
                 reportParams,
-                maxResults
+                maxRowsPerPage
             );
-
-            if (!results.isFinished())
-            {
-                String queryId = results.getQueryID();
-                xmlViewService.cancelQuery(queryId, sessionId);
-            }
-            return results.getRowset();
         }
         finally
         {
@@ -652,7 +1810,7 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         }
     }
 
-    private QueryResults queryXmlViewServiceWithXmlAndHandleExceptions(
+    private RowsetPages.Page queryXmlViewServiceWithXmlAndHandleExceptions(
         String xmlReport,
         XMLQueryOutputFormat outputFormat,
         ReportParams reportParams,
@@ -672,12 +1830,11 @@ public class AnalyticsManagerImpl implements AnalyticsManager
 
         try
         {
-            return xmlViewService.executeXMLQuery(
+            return executeXMLQuery(
                 report,
                 outputFormat,
                 executionOptions,
-                reportParams,
-                sessionId);
+                reportParams);
         }
         catch (SOAPFaultException e)
         {
@@ -691,7 +1848,7 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         }
     }
 
-    private String queryForMetadataAndData(
+    private RowsetPages.Page queryForMetadataAndData(
         ReportPath reportPathConfiguration,
         ReportParams reportParams,
         int maxRowsPerPage)
@@ -711,20 +1868,15 @@ public class AnalyticsManagerImpl implements AnalyticsManager
             executionOptions.setAsync(maxRowsPerPage != -1);
 
             executionOptions.setPresentationInfo(true);
-            QueryResults queryResults = queryXmlViewServiceAndHandleExceptions(
+            return queryXmlViewServiceAndHandleExceptions(
                 reportPathConfiguration,
                 reportParams,
-                report,
-                outputFormat,
-                executionOptions
+                () -> executeXMLQuery(
+                    report,
+                    outputFormat,
+                    executionOptions,
+                    reportParams)
             );
-
-            if (!queryResults.isFinished())
-            {
-                String queryId = queryResults.getQueryID();
-                xmlViewService.cancelQuery(queryId, sessionId);
-            }
-            return queryResults.getRowset();
         }
         finally
         {
@@ -732,20 +1884,41 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         }
     }
 
-    private QueryResults queryXmlViewServiceAndHandleExceptions(
+    /**
+     * Executes a query against the xml view service, returning the rowset as a page.  The rowset is read as it
+     * arrives if responses are streamed.
+     */
+    private RowsetPages.Page executeXMLQuery(
+        ReportRef report,
+        XMLQueryOutputFormat outputFormat,
+        XMLQueryExecutionOptions executionOptions,
+        ReportParams reportParams)
+    {
+        if (streamingXmlViewClient != null)
+        {
+            return streamingXmlViewClient.executeXMLQuery(
+                report,
+                outputFormat,
+                executionOptions,
+                reportParams,
+                sessionId);
+        }
+        return RowsetPages.page(xmlViewService.executeXMLQuery(
+            report,
+            outputFormat,
+            executionOptions,
+            reportParams,
+            sessionId));
+    }
+
+    private <R> R queryXmlViewServiceAndHandleExceptions(
             ReportPath reportPathConfiguration,
-            ReportParams reportParams, ReportRef report,
-            XMLQueryOutputFormat outputFormat,
-            XMLQueryExecutionOptions executionOptions)
+            ReportParams reportParams,
+            Supplier<R> query)
     {
         try
         {
-            return xmlViewService.executeXMLQuery(
-                    report,
-                    outputFormat,
-                    executionOptions,
-                    reportParams,
-                    sessionId);
+            return query.get();
         }
         catch (SOAPFaultException e)
         {
@@ -852,6 +2025,19 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         return writer.toString();
     }
 
+    Document buildRowsetDocument(Reader rowset)
+    {
+        final Span span = tracer.buildSpan("parse-rowset-document").start();
+        try (Scope ignored = tracer.scopeManager().activate(span, false))
+        {
+            return parseXml(new InputSource(rowset), "rowset from OBIEE");
+        }
+        finally
+        {
+            span.finish();
+        }
+    }
+
     Document buildRowsetDocument(String rowset)
     {
         final Span span = tracer.buildSpan("parse-rowset-document").start();
@@ -887,7 +2073,10 @@ public class AnalyticsManagerImpl implements AnalyticsManager
             throw new DataRetrievalException(description + " is empty");
         }
 
-        InputSource inputsource = new InputSource(new StringReader(xml));
+        return parseXml(new InputSource(new StringReader(xml)), description);
+    }
+
+    private Document parseXml(InputSource inputsource, String description) {
         String parseErrorMessage = "cannot parse " + description;
         try
         {
@@ -936,6 +2125,105 @@ public class AnalyticsManagerImpl implements AnalyticsManager
         }
     }
 
+    RowsetSchema readSchema(Document doc)
+    {
+        NodeList columnDefinitionXsdElements = getColumnSchemaNodesFromPreamble(doc);
+
+        List<RowsetSchema.Column> columns = new ArrayList<>();
+        for (Node node : Doms.each(columnDefinitionXsdElements) )
+        {
+            NamedNodeMap attributes = node.getAttributes();
+            String elementName = attributes.getNamedItem("name").getNodeValue();
+            String tableHeading = attributes.getNamedItem("saw-sql:tableHeading").getNodeValue();
+            String columnHeading = attributes.getNamedItem("saw-sql:columnHeading").getNodeValue();
+
+            columns.add(new RowsetSchema.Column(
+                elementName,
+                new ReportColumnId(tableHeading, columnHeading),
+                getAttributeValue(attributes, "saw-sql:columnID"),
+                getAttributeValue(attributes, "saw-sql:type")));
+        }
+        return new RowsetSchema(columns);
+    }
+
+    private String getAttributeValue(NamedNodeMap attributes, String name)
+    {
+        Node attribute = attributes.getNamedItem(name);
+        return attribute == null ? null : attribute.getNodeValue();
+    }
+
+    StreamingRowsetReader openRowsetReader(String rowset)
+    {
+        String description = "rowset from OBIEE";
+        if (rowset == null) {
+            throw new DataRetrievalException(description + " is null");
+        }
+
+        if (rowset.isEmpty()) {
+            throw new DataRetrievalException(description + " is empty");
+        }
+
+        return openRowsetReader(new StringReader(rowset));
+    }
+
+    StreamingRowsetReader openRowsetReader(Reader rowset)
+    {
+        try
+        {
+            return new StreamingRowsetReader(xmlInputFactory.createXMLStreamReader(rowset));
+        }
+        catch (XMLStreamException e)
+        {
+            throw handleStreamingParseException(e);
+        }
+    }
+
+    RowsetSchema readSchema(StreamingRowsetReader reader)
+    {
+        final Span span = tracer.buildSpan("read-rowset-schema").start();
+        try (Scope ignored = tracer.scopeManager().activate(span, false))
+        {
+            return reader.readSchema();
+        }
+        catch (XMLStreamException e)
+        {
+            throw handleStreamingParseException(e);
+        }
+        finally
+        {
+            span.finish();
+        }
+    }
+
+    private RawRow readRow(StreamingRowsetReader reader, ColumnSlots columnSlots, RawRow row)
+    {
+        try
+        {
+            return reader.nextRow(columnSlots, row);
+        }
+        catch (XMLStreamException e)
+        {
+            throw handleStreamingParseException(e);
+        }
+    }
+
+    private DataRetrievalException handleStreamingParseException(XMLStreamException e)
+    {
+        recentException = e;
+        String parseErrorMessage = "cannot parse rowset from OBIEE";
+        Location location = e.getLocation();
+        if (location == null)
+        {
+            return new DataRetrievalException(parseErrorMessage, e);
+        }
+        return new DataRetrievalException(
+            String.format(
+                parseErrorMessage + "; error on line %s and column %s",
+                location.getLineNumber(),
+                location.getColumnNumber()),
+            e);
+    }
+
     NodeList getRows(Document doc)
     {
         final Span span = tracer.buildSpan("xpath-for-data").start();
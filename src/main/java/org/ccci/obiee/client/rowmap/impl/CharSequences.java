@@ -0,0 +1,150 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses numbers from a {@link CharSequence} in place, where the JDK would first require a {@code String}.
+ */
+class CharSequences
+{
+
+    /** the powers of ten that a double represents exactly */
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** the largest integer below which every integer is exactly representable as a double */
+    private static final long EXACT_DOUBLE_LIMIT = 1L << 53;
+
+    private CharSequences()
+    {
+    }
+
+    static boolean isEmpty(CharSequence value)
+    {
+        return value == null || value.length() == 0;
+    }
+
+    static int parseInt(CharSequence value)
+    {
+        long parsed = parseLong(value);
+        if (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE)
+            throw new NumberFormatException("For input string: \"" + value + "\"");
+        return (int) parsed;
+    }
+
+    /**
+     * Parses an optionally signed decimal integer, as {@link Long#parseLong(String)} does.
+     */
+    static long parseLong(CharSequence value)
+    {
+        int length = value.length();
+        if (length == 0)
+            throw new NumberFormatException("For input string: \"\"");
+        int i = 0;
+        boolean negative = false;
+        char first = value.charAt(0);
+        if (first == '-' || first == '+')
+        {
+            negative = first == '-';
+            i++;
+            if (length == 1)
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+        }
+        // accumulate negatively, since Long.MIN_VALUE has no positive counterpart
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; i < length; i++)
+        {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit)
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            result *= 10;
+            if (result < limit + digit)
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a double.  Plain decimals such as '-123.45', whose digits fit in a double's mantissa, are parsed
+     * in place with a single (correctly rounded) division; anything else is left to
+     * {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(CharSequence value)
+    {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+'))
+        {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < length; i++)
+        {
+            char c = value.charAt(i);
+            if (c == '.' && fractionDigits < 0)
+            {
+                fractionDigits = 0;
+            }
+            else if (c >= '0' && c <= '9' && mantissa < EXACT_DOUBLE_LIMIT / 10)
+            {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0 && ++fractionDigits == EXACT_POWERS_OF_TEN.length)
+                    return Double.parseDouble(value.toString());
+            }
+            else
+            {
+                return Double.parseDouble(value.toString());
+            }
+        }
+        if (digits == 0)
+            return Double.parseDouble(value.toString());
+        double result = mantissa;
+        if (fractionDigits > 0)
+            result /= EXACT_POWERS_OF_TEN[fractionDigits];
+        return negative ? -result : result;
+    }
+
+    static BigDecimal parseBigDecimal(CharSequence value)
+    {
+        if (value instanceof CharSlice)
+            return ((CharSlice) value).toBigDecimal();
+        return new BigDecimal(value.toString());
+    }
+
+    static boolean equalsIgnoreCase(CharSequence value, String expected)
+    {
+        if (value.length() != expected.length())
+            return false;
+        for (int i = 0; i < expected.length(); i++)
+        {
+            char c = value.charAt(i);
+            char e = expected.charAt(i);
+            if (c != e && Character.toLowerCase(c) != Character.toLowerCase(e))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the same hash as {@link String#hashCode()} would for these characters
+     */
+    static int hash(CharSequence value)
+    {
+        int hash = 0;
+        for (int i = 0; i < value.length(); i++)
+        {
+            hash = 31 * hash + value.charAt(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,61 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.math.BigDecimal;
+
+/**
+ * A view of a range of a character array, which can be re-pointed at another range; used to hand the text of
+ * a {@link RawRow}'s cells to converters without copying it.
+ *
+ * Instances are not thread-safe.
+ */
+class CharSlice implements CharSequence
+{
+
+    private char[] chars;
+    private int start;
+    private int end;
+
+    CharSlice set(char[] chars, int start, int end)
+    {
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    @Override
+    public int length()
+    {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= end - start)
+            throw new IndexOutOfBoundsException("index " + index + ", length " + (end - start));
+        return chars[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to)
+    {
+        if (from < 0 || to > end - start || from > to)
+            throw new IndexOutOfBoundsException("from " + from + ", to " + to + ", length " + (end - start));
+        return new CharSlice().set(chars, start + from, start + to);
+    }
+
+    /**
+     * Parses this slice as a {@link BigDecimal}, without copying it.
+     */
+    BigDecimal toBigDecimal()
+    {
+        return new BigDecimal(chars, start, end - start);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(chars, start, end - start);
+    }
+}
@@ -0,0 +1,84 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.lang.reflect.Field;
+
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
+
+/**
+ * Remembers the values most recently converted by another converter, so that a repeated value is converted
+ * only once, and the same instance is returned each time.  This suits columns with few distinct values, such
+ * as the date columns of most reports.
+ * <p>
+ * The delegate must produce immutable values, and must not depend on the field it is given.
+ * {@link RowBuilder} gives each column its own cache, through {@link #forColumn()}.
+ *
+ * Instances are thread-safe.
+ *
+ * @param <T> the type of converted values
+ */
+class ColumnCachingConverter<T> implements CharSequenceConverter<T>
+{
+
+    /** must be a power of two */
+    static final int CACHE_SIZE = 64;
+
+    private final CharSequenceConverter<T> delegate;
+
+    /*
+     * A direct-mapped cache: each value may only be held in the slot given by its hash.  Entries are immutable,
+     * so threads may race to read and replace them without locking.
+     */
+    private final Entry<?>[] entries = new Entry<?>[CACHE_SIZE];
+
+    ColumnCachingConverter(CharSequenceConverter<T> delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns a converter with the same delegate as this one, and an empty cache of its own.
+     */
+    ColumnCachingConverter<T> forColumn()
+    {
+        return new ColumnCachingConverter<>(delegate);
+    }
+
+    @Override
+    public T convert(CharSequence xmlValue, Field field)
+    {
+        if (CharSequences.isEmpty(xmlValue))
+            return delegate.convert(xmlValue, field);
+
+        int slot = CharSequences.hash(xmlValue) & (CACHE_SIZE - 1);
+        @SuppressWarnings("unchecked") //only values from our delegate are stored
+        Entry<T> entry = (Entry<T>) entries[slot];
+        if (entry != null && entry.xmlValue.contentEquals(xmlValue))
+            return entry.value;
+
+        T value = delegate.convert(xmlValue, field);
+        if (value != null)
+        {
+            // xmlValue may be a view of a reused buffer, so a copy is kept
+            entries[slot] = new Entry<>(xmlValue.toString(), value);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnCachingConverter[" + delegate + "]";
+    }
+
+    private static class Entry<T>
+    {
+        final String xmlValue;
+        final T value;
+
+        Entry(String xmlValue, T value)
+        {
+            this.xmlValue = xmlValue;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns each element name of a rowset (e.g. 'Column0') a fixed slot, so that a row's values can be held in
+ * a {@link RawRow} indexed by slot, rather than in a map keyed by element name.
+ * <p>
+ * OBIEE names the elements 'Column0', 'Column1', and so on, in which case the slot is simply the column's
+ * ordinal, and is found without any hashing.  Any other names are assigned slots through a lookup table.
+ *
+ * Instances are immutable.
+ */
+class ColumnSlots
+{
+
+    private static final String ORDINAL_PREFIX = "Column";
+
+    private final int size;
+
+    /** {@code null} if every element name is of the form 'ColumnN' */
+    private final Map<String, Integer> slotsByElementName;
+
+    ColumnSlots(Collection<String> elementNames)
+    {
+        int maxOrdinal = -1;
+        boolean ordinalNames = true;
+        for (String elementName : elementNames)
+        {
+            int ordinal = parseOrdinal(elementName);
+            if (ordinal < 0)
+            {
+                ordinalNames = false;
+                break;
+            }
+            maxOrdinal = Math.max(maxOrdinal, ordinal);
+        }
+
+        if (ordinalNames)
+        {
+            size = maxOrdinal + 1;
+            slotsByElementName = null;
+        }
+        else
+        {
+            slotsByElementName = new HashMap<>();
+            for (String elementName : elementNames)
+            {
+                if (!slotsByElementName.containsKey(elementName))
+                    slotsByElementName.put(elementName, slotsByElementName.size());
+            }
+            size = slotsByElementName.size();
+        }
+    }
+
+    /**
+     * The number of slots needed to hold a row.
+     */
+    int size()
+    {
+        return size;
+    }
+
+    RawRow newRow()
+    {
+        return new RawRow(size);
+    }
+
+    /**
+     * @return the slot of the given element, or -1 if the element is not one of this rowset's columns
+     */
+    int slotOf(String elementName)
+    {
+        if (slotsByElementName == null)
+        {
+            int ordinal = parseOrdinal(elementName);
+            return ordinal < size ? ordinal : -1;
+        }
+        Integer slot = slotsByElementName.get(elementName);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return N, for an element name of the form 'ColumnN'; otherwise, -1
+     */
+    private static int parseOrdinal(String elementName)
+    {
+        int length = elementName.length();
+        if (length == ORDINAL_PREFIX.length() || !elementName.startsWith(ORDINAL_PREFIX))
+            return -1;
+        int ordinal = 0;
+        for (int i = ORDINAL_PREFIX.length(); i < length; i++)
+        {
+            char c = elementName.charAt(i);
+            if (c < '0' || c > '9' || ordinal > (Integer.MAX_VALUE - 9) / 10)
+                return -1;
+            ordinal = ordinal * 10 + (c - '0');
+        }
+        return ordinal;
+    }
+}
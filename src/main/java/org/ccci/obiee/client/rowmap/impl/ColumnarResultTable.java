@@ -0,0 +1,189 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ccci.obiee.client.rowmap.ReportColumn;
+import org.ccci.obiee.client.rowmap.ResultTable;
+
+/**
+ * A {@link ResultTable} built by a {@link ResultTableBuilder}.
+ *
+ * Instances are immutable, once built.  A table whose columns are held in an {@link OffHeapStorage} closes the
+ * storage when it is closed.
+ *
+ * @param <T> the row type
+ */
+class ColumnarResultTable<T> implements ResultTable<T>
+{
+
+    private final Set<ReportColumn<T>> columns;
+    private final Map<ReportColumn<T>, TableColumn> tableColumns;
+    private final int rowCount;
+
+    /** {@code null} if this table is held on the heap */
+    private final OffHeapStorage storage;
+    private volatile boolean closed = false;
+
+    ColumnarResultTable(Set<ReportColumn<T>> columns, Map<ReportColumn<T>, TableColumn> tableColumns, int rowCount)
+    {
+        this(columns, tableColumns, rowCount, null);
+    }
+
+    ColumnarResultTable(
+        Set<ReportColumn<T>> columns,
+        Map<ReportColumn<T>, TableColumn> tableColumns,
+        int rowCount,
+        OffHeapStorage storage)
+    {
+        this.columns = Collections.unmodifiableSet(new HashSet<>(columns));
+        this.tableColumns = tableColumns;
+        this.rowCount = rowCount;
+        this.storage = storage;
+    }
+
+    @Override
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    @Override
+    public Set<ReportColumn<T>> getColumns()
+    {
+        return columns;
+    }
+
+    @Override
+    public ColumnType getColumnType(ReportColumn<T> column)
+    {
+        return getTableColumn(column).getType();
+    }
+
+    @Override
+    public boolean isNull(ReportColumn<T> column, int row)
+    {
+        return getTableColumn(column).isNull(checkRow(row));
+    }
+
+    @Override
+    public int getInt(ReportColumn<T> column, int row)
+    {
+        return getTableColumn(column, ColumnType.INT).getInt(checkRow(row));
+    }
+
+    @Override
+    public long getLong(ReportColumn<T> column, int row)
+    {
+        return getTableColumn(column, ColumnType.LONG).getLong(checkRow(row));
+    }
+
+    @Override
+    public double getDouble(ReportColumn<T> column, int row)
+    {
+        return getTableColumn(column, ColumnType.DOUBLE).getDouble(checkRow(row));
+    }
+
+    @Override
+    public String getString(ReportColumn<T> column, int row)
+    {
+        return getTableColumn(column, ColumnType.STRING).getString(checkRow(row));
+    }
+
+    @Override
+    public int[] getInts(ReportColumn<T> column)
+    {
+        return getTableColumn(column, ColumnType.INT).getInts();
+    }
+
+    @Override
+    public long[] getLongs(ReportColumn<T> column)
+    {
+        return getTableColumn(column, ColumnType.LONG).getLongs();
+    }
+
+    @Override
+    public double[] getDoubles(ReportColumn<T> column)
+    {
+        return getTableColumn(column, ColumnType.DOUBLE).getDoubles();
+    }
+
+    @Override
+    public int[] getStringCodes(ReportColumn<T> column)
+    {
+        return getStringColumn(column).getCodes();
+    }
+
+    @Override
+    public List<String> getStringDictionary(ReportColumn<T> column)
+    {
+        return getStringColumn(column).getDictionary();
+    }
+
+    @Override
+    public Object getValue(ReportColumn<T> column, int row)
+    {
+        return getTableColumn(column).getValue(checkRow(row));
+    }
+
+    @Override
+    public void close()
+    {
+        if (storage != null && !closed)
+        {
+            closed = true;
+            storage.close();
+        }
+    }
+
+    private TableColumn getTableColumn(ReportColumn<T> column)
+    {
+        if (closed)
+            throw new IllegalStateException("this table has been closed");
+        if (column == null)
+            throw new NullPointerException("column is null");
+        TableColumn tableColumn = tableColumns.get(column);
+        if (tableColumn == null)
+            throw new IllegalArgumentException(column + " is not a column of this table");
+        return tableColumn;
+    }
+
+    private TableColumn getTableColumn(ReportColumn<T> column, ColumnType type)
+    {
+        TableColumn tableColumn = getTableColumn(column);
+        if (tableColumn.getType() != type)
+        {
+            throw new IllegalArgumentException(String.format(
+                "%s is a column of type %s, not %s",
+                column,
+                tableColumn.getType(),
+                type));
+        }
+        return tableColumn;
+    }
+
+    private TableColumn.StringColumn getStringColumn(ReportColumn<T> column)
+    {
+        TableColumn tableColumn = getTableColumn(column, ColumnType.STRING);
+        if (!(tableColumn instanceof TableColumn.StringColumn))
+            throw new UnsupportedOperationException("String columns of an off-heap table are not dictionary-encoded");
+        return (TableColumn.StringColumn) tableColumn;
+    }
+
+    private int checkRow(int row)
+    {
+        if (row < 0 || row >= rowCount)
+            throw new IndexOutOfBoundsException("row " + row + " of a table of " + rowCount + " rows");
+        return row;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ColumnarResultTable[" + rowCount + " rows, " + columns.size() + " columns" +
+            (storage == null ? "" : ", off-heap") + "]";
+    }
+}
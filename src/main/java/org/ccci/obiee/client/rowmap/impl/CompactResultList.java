@@ -0,0 +1,50 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A result list for a large query: the first rows of the result are held as row objects, and the rest are held
+ * as {@link CompactRows}, from which a new row object is built each time one is requested.
+ * <p>
+ * The list is unmodifiable.  Since compact rows are built anew on each request, changes to a row object built
+ * from a compact row are lost, and the row objects returned for such a row are not identical to each other.
+ *
+ * @param <T> the row type
+ */
+class CompactResultList<T> extends AbstractList<T> implements RandomAccess
+{
+
+    private final List<T> builtRows;
+    private final CompactRows compactRows;
+    private final RowBuilder<T> rowBuilder;
+
+    /**
+     * @param rowBuilder must be safe to use from multiple threads
+     */
+    CompactResultList(List<T> builtRows, CompactRows compactRows, RowBuilder<T> rowBuilder)
+    {
+        this.builtRows = builtRows;
+        this.compactRows = compactRows;
+        this.rowBuilder = rowBuilder;
+    }
+
+    @Override
+    public T get(int index)
+    {
+        if (index < builtRows.size())
+            return builtRows.get(index);
+        int compactIndex = index - builtRows.size();
+        if (compactIndex >= compactRows.size())
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        RawRow row = compactRows.read(compactIndex, rowBuilder.getColumnSlots().newRow());
+        return rowBuilder.buildRowInstance(row);
+    }
+
+    @Override
+    public int size()
+    {
+        return builtRows.size() + compactRows.size();
+    }
+}
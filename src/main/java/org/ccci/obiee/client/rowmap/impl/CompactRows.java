@@ -0,0 +1,96 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Arrays;
+
+/**
+ * The text of many raw rows, packed into a single character buffer with the bounds of each cell, so that a large
+ * result can be held in little more memory than its text needs.  Rows are copied back into a {@link RawRow} to be
+ * read.
+ *
+ * Instances are not thread-safe while rows are being added; once they have all been added, rows can be read from
+ * any number of threads.
+ */
+class CompactRows
+{
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final int slots;
+
+    private char[] text;
+    private int length = 0;
+
+    /** the start and end of each cell's text, by row and then by slot; the start is -1 for a null cell */
+    private int[] bounds;
+    private int rowCount = 0;
+
+    CompactRows(int slots)
+    {
+        this.slots = slots;
+        this.text = new char[INITIAL_ROWS * 16];
+        this.bounds = new int[INITIAL_ROWS * slots * 2];
+    }
+
+    void add(RawRow row)
+    {
+        int needed = length + row.textLength();
+        if (needed < 0)
+            throw new IllegalStateException("results are too large to hold compactly: over " + length + " chars");
+        if (needed > text.length)
+            text = Arrays.copyOf(text, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * text.length, needed)));
+        int boundsOffset = rowCount * slots * 2;
+        if (boundsOffset + slots * 2 > bounds.length)
+            bounds = Arrays.copyOf(bounds, Math.max(bounds.length * 2, boundsOffset + slots * 2));
+
+        for (int slot = 0; slot < slots; slot++)
+        {
+            int start = -1;
+            if (!row.isNull(slot))
+            {
+                start = length;
+                row.copyCell(slot, text, length);
+                length += row.cellLength(slot);
+            }
+            bounds[boundsOffset++] = start;
+            bounds[boundsOffset++] = length;
+        }
+        rowCount++;
+    }
+
+    int size()
+    {
+        return rowCount;
+    }
+
+    /**
+     * Copies a row into the given raw row, which must have the same number of slots.
+     *
+     * @return {@code into}
+     */
+    RawRow read(int row, RawRow into)
+    {
+        into.clear();
+        int boundsOffset = row * slots * 2;
+        for (int slot = 0; slot < slots; slot++)
+        {
+            int start = bounds[boundsOffset++];
+            int end = bounds[boundsOffset++];
+            if (start >= 0)
+            {
+                into.startCell(slot);
+                into.append(text, start, end - start);
+                into.endCell();
+            }
+        }
+        return into;
+    }
+
+    /**
+     * Releases the unused capacity of the buffers, once all rows have been added.
+     */
+    void trim()
+    {
+        text = Arrays.copyOf(text, length);
+        bounds = Arrays.copyOf(bounds, rowCount * slots * 2);
+    }
+}
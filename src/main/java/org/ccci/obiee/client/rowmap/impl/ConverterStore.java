@@ -1,6 +1,11 @@
 package org.ccci.obiee.client.rowmap.impl;
 
+import org.ccci.obiee.client.rowmap.BooleanConverter;
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
 import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.DoubleConverter;
+import org.ccci.obiee.client.rowmap.IntConverter;
+import org.ccci.obiee.client.rowmap.LongConverter;
 import org.ccci.obiee.client.rowmap.annotation.Scale;
 
 import java.lang.reflect.Field;
@@ -13,11 +18,22 @@ import java.time.format.DateTimeFormatterBuilder;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableMap;
+
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_TIME;
 import static org.ccci.obiee.client.rowmap.impl.JodaTimeAvailability.isJodaAvailable;
 
+/**
+ * An immutable registry of {@link Converter}s, keyed by the exact type they produce.  Stores are assembled with
+ * a {@link Builder}; a store that is filled with the deprecated {@link #addConverter(Class, Converter)} is only
+ * immutable once it is filled.
+ * <p>
+ * A store may also hold primitive converters, such as an {@link IntConverter}, which produce unboxed values for
+ * primitive fields.  For a given primitive type, whichever of the primitive converter and a {@code Converter}
+ * was registered last is the one that applies.
+ */
 public class ConverterStore
 {
 
@@ -33,8 +49,46 @@ public class ConverterStore
             .toFormatter();
     }
 
-    private final Map<Class<?>, Converter<?>> converters = new HashMap<>();
+    private static final ConverterStore DEFAULT = buildDefaultStore();
+
+    private Map<Class<?>, Converter<?>> converters;
+
+    /** keyed by primitive type; e.g. an {@link IntConverter} is held under {@code int.class} */
+    private Map<Class<?>, Object> primitiveConverters;
     
+    private ConverterStore(Map<Class<?>, Converter<?>> converters, Map<Class<?>, Object> primitiveConverters)
+    {
+        this.converters = ImmutableMap.copyOf(converters);
+        this.primitiveConverters = ImmutableMap.copyOf(primitiveConverters);
+    }
+
+    /**
+     * Creates an empty store, to be filled with {@link #addConverter(Class, Converter)}.
+     *
+     * @deprecated use {@link #builder()}
+     */
+    @Deprecated
+    public ConverterStore()
+    {
+        this(ImmutableMap.of(), ImmutableMap.of());
+    }
+
+    /**
+     * Registers a converter, as {@link Builder#addConverter(Class, Converter)} does.  Should only be called during
+     * initial construction, before the store is shared.
+     *
+     * @deprecated use {@link #builder()}
+     */
+    @Deprecated
+    public <T> void addConverter(Class<T> fieldType, Converter<T> converter)
+    {
+        ConverterStore filled = builder()
+            .addConverters(this)
+            .addConverter(fieldType, converter)
+            .build();
+        this.converters = filled.converters;
+        this.primitiveConverters = filled.primitiveConverters;
+    }
     
     /**
      * Returns the an appropriate converter for the given type, if the given type is known;
@@ -44,71 +98,104 @@ public class ConverterStore
      */
     public <T> Converter<T> getConverter(Class<T> fieldType)
     {
-        @SuppressWarnings("unchecked") //The compiler checked the types match in addConverter()
+        @SuppressWarnings("unchecked") //The compiler checked the types match when the converter was added
         Converter<T> converter = (Converter<T>) converters.get(fieldType);
         return converter;
     }
-    
+
     /**
-     * Should only be called during initial construction
+     * Returns the primitive converter for the given primitive type, if there is one; otherwise {@code null}
+     * is returned.
+     * 
+     * @return an {@link IntConverter}, {@link LongConverter}, {@link DoubleConverter} or {@link BooleanConverter}
      */
-    public <T> void addConverter(Class<T> fieldType, Converter<T> converter)
+    public Object getPrimitiveConverter(Class<?> primitiveType)
     {
-        converters.put(fieldType, converter);
+        return primitiveConverters.get(primitiveType);
     }
     
-
     /**
-     * Returns a copy of this converter store, with the addition of the given converters
+     * Returns a converter store with the converters of this one, plus the given converters.  If there are no
+     * additional converters, this store itself is returned.  See also
+     * {@link org.ccci.obiee.client.rowmap.ReportDefinition#getConverterStore(ConverterStore)}, which caches the
+     * result.
      */
     public ConverterStore copyAndAdd(ConverterStore additionalConverters)
     {
-        ConverterStore copy = new ConverterStore();
-        copy.converters.putAll(this.converters);
-        copy.converters.putAll(additionalConverters.converters);
-        return copy;
+        if (additionalConverters.converters.isEmpty() && additionalConverters.primitiveConverters.isEmpty())
+            return this;
+        return builder()
+            .addConverters(this)
+            .addConverters(additionalConverters)
+            .build();
+    }
+
+    public static Builder builder()
+    {
+        return new Builder();
     }
     
+    /**
+     * Returns the default converters.  The store is built once, and shared.
+     */
     public static ConverterStore buildDefault()
     {
-        ConverterStore converterStore = new ConverterStore();
-        converterStore.addConverter(String.class, (xmlValue, field) -> xmlValue);
+        return DEFAULT;
+    }
+
+    private static ConverterStore buildDefaultStore()
+    {
+        Builder converterStore = builder();
+        // shares no values until RowBuilder.forQuery() gives each column a dictionary of its own
+        converterStore.addConverter(String.class, new StringDictionary(0));
         
-        Converter<Integer> integerConverter = (xmlValue, field) -> {
+        CharSequenceConverter<Integer> integerConverter = (xmlValue, field) -> {
             if (empty(xmlValue)) return null;
-            return Integer.valueOf(xmlValue);
+            return CharSequences.parseInt(xmlValue);
         };
         converterStore.addConverter(Integer.class, integerConverter);
         converterStore.addConverter(Integer.TYPE, integerConverter);
+        converterStore.addIntConverter((xmlValue, field) -> CharSequences.parseInt(requireValue(xmlValue, int.class)));
         
-        Converter<Long> longConverter = (xmlValue, field) -> {
+        CharSequenceConverter<Long> longConverter = (xmlValue, field) -> {
             if (empty(xmlValue)) return null;
-            return Long.valueOf(xmlValue);
+            return CharSequences.parseLong(xmlValue);
         };
         converterStore.addConverter(Long.class, longConverter);
         converterStore.addConverter(Long.TYPE, longConverter);
+        converterStore.addLongConverter((xmlValue, field) -> CharSequences.parseLong(requireValue(xmlValue, long.class)));
         
-        Converter<Double> doubleConverter = (xmlValue, field) -> {
+        CharSequenceConverter<Double> doubleConverter = (xmlValue, field) -> {
             if (empty(xmlValue)) return null;
-            return Double.valueOf(xmlValue);
+            return CharSequences.parseDouble(xmlValue);
         };
         converterStore.addConverter(Double.class, doubleConverter);
         converterStore.addConverter(Double.TYPE, doubleConverter);
+        converterStore.addDoubleConverter((xmlValue, field) -> CharSequences.parseDouble(requireValue(xmlValue, double.class)));
+
+        converterStore.addBooleanConverter((xmlValue, field) -> {
+            CharSequence value = requireValue(xmlValue, boolean.class);
+            if (CharSequences.equalsIgnoreCase(value, "1") || CharSequences.equalsIgnoreCase(value, "true")) return true;
+            if (CharSequences.equalsIgnoreCase(value, "0") || CharSequences.equalsIgnoreCase(value, "false")) return false;
+            throw new IllegalArgumentException("not a boolean: " + value);
+        });
         
-        converterStore.addConverter(LocalDate.class, (xmlValue, field) -> {
+        converterStore.addConverter(LocalDate.class, new ColumnCachingConverter<>((xmlValue, field) -> {
             if (empty(xmlValue)) return null;
-            return LocalDate.parse(xmlValue, ISO_LOCAL_DATE_OPTIONAL_TIME);
-        });
+            LocalDate date = IsoDates.parseLocalDate(xmlValue);
+            return date != null ? date : LocalDate.parse(xmlValue, ISO_LOCAL_DATE_OPTIONAL_TIME);
+        }));
         
-        converterStore.addConverter(LocalDateTime.class, (xmlValue, field) -> {
+        converterStore.addConverter(LocalDateTime.class, new ColumnCachingConverter<>((xmlValue, field) -> {
             if (empty(xmlValue)) return null;
-            return LocalDateTime.parse(xmlValue, ISO_LOCAL_DATE_TIME.withZone(ZoneOffset.UTC));
-        });
+            LocalDateTime dateTime = IsoDates.parseLocalDateTime(xmlValue);
+            return dateTime != null ? dateTime : LocalDateTime.parse(xmlValue, ISO_LOCAL_DATE_TIME.withZone(ZoneOffset.UTC));
+        }));
         
-        converterStore.addConverter(BigDecimal.class, (xmlValue, field) -> {
+        CharSequenceConverter<BigDecimal> bigDecimalConverter = (xmlValue, field) -> {
             if (empty(xmlValue)) return null;
 
-            BigDecimal parsed = new BigDecimal(xmlValue);
+            BigDecimal parsed = CharSequences.parseBigDecimal(xmlValue);
 
             if (field.isAnnotationPresent(Scale.class))
             {
@@ -118,20 +205,88 @@ public class ConverterStore
             {
                 return parsed;
             }
-        });
+        };
+        converterStore.addConverter(BigDecimal.class, bigDecimalConverter);
 
         if (isJodaAvailable())
         {
             JodaConverters.addJodaTimeConverters(converterStore);
         }
 
-        return converterStore;
+        return converterStore.build();
     }
 
 
-    private static boolean empty(String string)
+    private static boolean empty(CharSequence string)
     {
         return string == null || string.length() == 0;
     }
 
+    private static CharSequence requireValue(CharSequence xmlValue, Class<?> primitiveType)
+    {
+        if (empty(xmlValue))
+            throw new IllegalArgumentException("an empty value cannot be converted to " + primitiveType);
+        return xmlValue;
+    }
+
+    public static class Builder
+    {
+        private final Map<Class<?>, Converter<?>> converters = new HashMap<>();
+        private final Map<Class<?>, Object> primitiveConverters = new HashMap<>();
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Registers a converter, replacing any converter already registered for the given type.
+         */
+        public <T> Builder addConverter(Class<T> fieldType, Converter<T> converter)
+        {
+            converters.put(fieldType, converter);
+            primitiveConverters.remove(fieldType);
+            return this;
+        }
+
+        public Builder addIntConverter(IntConverter converter)
+        {
+            primitiveConverters.put(int.class, converter);
+            return this;
+        }
+
+        public Builder addLongConverter(LongConverter converter)
+        {
+            primitiveConverters.put(long.class, converter);
+            return this;
+        }
+
+        public Builder addDoubleConverter(DoubleConverter converter)
+        {
+            primitiveConverters.put(double.class, converter);
+            return this;
+        }
+
+        public Builder addBooleanConverter(BooleanConverter converter)
+        {
+            primitiveConverters.put(boolean.class, converter);
+            return this;
+        }
+
+        public Builder addConverters(ConverterStore store)
+        {
+            for (Map.Entry<Class<?>, Converter<?>> entry : store.converters.entrySet())
+            {
+                converters.put(entry.getKey(), entry.getValue());
+                primitiveConverters.remove(entry.getKey());
+            }
+            primitiveConverters.putAll(store.primitiveConverters);
+            return this;
+        }
+
+        public ConverterStore build()
+        {
+            return new ConverterStore(converters, primitiveConverters);
+        }
+    }
+
 }
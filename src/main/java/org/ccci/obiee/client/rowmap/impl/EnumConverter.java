@@ -1,24 +1,30 @@
 package org.ccci.obiee.client.rowmap.impl;
 
 import java.lang.reflect.Field;
-import java.util.EnumSet;
-import java.util.Set;
 
-import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
 import org.ccci.obiee.client.rowmap.annotation.ObiFieldValue;
 
-public class EnumConverter<T extends Enum<T>> implements Converter<T>
+public class EnumConverter<T extends Enum<T>> implements CharSequenceConverter<T>
 {
 
     private final Class<T> enumType;
-    private final Set<T> possibleEnumValues;
+    private final T[] possibleEnumValues;
     private final Field mappingField;
+
+    /** the OBI value of each of {@link #possibleEnumValues}, read once */
+    private final String[] codes;
     
     public EnumConverter(Class<T> enumType)
     {
         this.enumType = enumType;
-        this.possibleEnumValues = EnumSet.allOf(enumType);
+        this.possibleEnumValues = enumType.getEnumConstants();
         this.mappingField = getObiValueField();
+        this.codes = new String[possibleEnumValues.length];
+        for (int i = 0; i < possibleEnumValues.length; i++)
+        {
+            codes[i] = (String) getFieldValueFromAccessibleField(possibleEnumValues[i], mappingField);
+        }
     }
 
     private Field getObiValueField()
@@ -49,18 +55,18 @@ public class EnumConverter<T extends Enum<T>> implements Converter<T>
 
 
     @Override
-    public T convert(String xmlValue, Field field)
+    public T convert(CharSequence xmlValue, Field field)
     {
-        for (T possibleEnum : possibleEnumValues)
+        for (int i = 0; i < possibleEnumValues.length; i++)
         {
-            String code = (String) getFieldValueFromAccessibleField(possibleEnum, mappingField);
+            String code = codes[i];
             if (code == null)
                 throw new IllegalArgumentException(String.format(
                     "siebel value field %s contains null value",
                     mappingField
                 ));
-            if (code.equals(xmlValue))
-                return possibleEnum;
+            if (xmlValue != null && code.contentEquals(xmlValue))
+                return possibleEnumValues[i];
         }
         throw new IllegalArgumentException(String.format(
             "The value returned by OBI (%s) does not correspond to any enum of type %s",
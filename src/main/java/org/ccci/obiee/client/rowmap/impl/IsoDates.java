@@ -0,0 +1,125 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Decodes the fixed-layout ISO dates and date-times that OBIEE sends, such as '2009-01-15' and
+ * '2009-01-15T00:00:00', by reading their digits at known positions.  This avoids the generality (and the
+ * cost) of a {@link java.time.format.DateTimeFormatter}.  Values that don't have one of these layouts are
+ * left to a formatter by the caller.
+ */
+class IsoDates
+{
+
+    /** 'yyyy-MM-dd' */
+    static final int DATE_LENGTH = 10;
+
+    /** 'yyyy-MM-ddTHH:mm:ss' */
+    static final int DATE_TIME_LENGTH = 19;
+
+    private IsoDates()
+    {
+    }
+
+    static boolean isDate(CharSequence value)
+    {
+        return value.length() == DATE_LENGTH && hasDateLayout(value);
+    }
+
+    static boolean isDateTime(CharSequence value)
+    {
+        return value.length() == DATE_TIME_LENGTH
+            && hasDateLayout(value)
+            && value.charAt(10) == 'T'
+            && isDigits(value, 11, 2)
+            && value.charAt(13) == ':'
+            && isDigits(value, 14, 2)
+            && value.charAt(16) == ':'
+            && isDigits(value, 17, 2);
+    }
+
+    /**
+     * @return the date, or {@code null} if the value is neither a date nor a date-time
+     */
+    static LocalDate parseLocalDate(CharSequence value)
+    {
+        if (isDate(value) || isDateTime(value))
+            return LocalDate.of(year(value), month(value), day(value));
+        return null;
+    }
+
+    /**
+     * @return the date-time, or {@code null} if the value is not a date-time
+     */
+    static LocalDateTime parseLocalDateTime(CharSequence value)
+    {
+        if (isDateTime(value))
+            return LocalDateTime.of(year(value), month(value), day(value), hour(value), minute(value), second(value));
+        return null;
+    }
+
+    /*
+     * Fields of a value that has been checked by isDate() or isDateTime()
+     */
+
+    static int year(CharSequence value)
+    {
+        return digits(value, 0, 4);
+    }
+
+    static int month(CharSequence value)
+    {
+        return digits(value, 5, 2);
+    }
+
+    static int day(CharSequence value)
+    {
+        return digits(value, 8, 2);
+    }
+
+    static int hour(CharSequence value)
+    {
+        return digits(value, 11, 2);
+    }
+
+    static int minute(CharSequence value)
+    {
+        return digits(value, 14, 2);
+    }
+
+    static int second(CharSequence value)
+    {
+        return digits(value, 17, 2);
+    }
+
+    private static boolean hasDateLayout(CharSequence value)
+    {
+        return isDigits(value, 0, 4)
+            && value.charAt(4) == '-'
+            && isDigits(value, 5, 2)
+            && value.charAt(7) == '-'
+            && isDigits(value, 8, 2);
+    }
+
+    private static boolean isDigits(CharSequence value, int start, int count)
+    {
+        for (int i = start; i < start + count; i++)
+        {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9')
+                return false;
+        }
+        return true;
+    }
+
+    private static int digits(CharSequence value, int start, int count)
+    {
+        int result = 0;
+        for (int i = start; i < start + count; i++)
+        {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+}
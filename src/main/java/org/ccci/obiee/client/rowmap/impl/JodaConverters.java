@@ -1,6 +1,6 @@
 package org.ccci.obiee.client.rowmap.impl;
 
-import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
@@ -12,33 +12,48 @@ import java.util.Date;
 
 class JodaConverters
 {
-    static void addJodaTimeConverters(ConverterStore converterStore)
+    static void addJodaTimeConverters(ConverterStore.Builder converterStore)
     {
 
-        converterStore.addConverter(LocalDate.class, new Converter<LocalDate>()
+        converterStore.addConverter(LocalDate.class, new ColumnCachingConverter<>(new CharSequenceConverter<LocalDate>()
         {
             DateTimeFormatter isoFormatter = ISODateTimeFormat.localDateOptionalTimeParser();
 
-            public LocalDate convert(String xmlValue, Field field)
+            public LocalDate convert(CharSequence xmlValue, Field field)
             {
                 if (empty(xmlValue)) return null;
-                DateTime parsedDateTime = isoFormatter.parseDateTime(xmlValue);
+                if (IsoDates.isDate(xmlValue) || IsoDates.isDateTime(xmlValue))
+                {
+                    return new LocalDate(IsoDates.year(xmlValue), IsoDates.month(xmlValue), IsoDates.day(xmlValue));
+                }
+                DateTime parsedDateTime = isoFormatter.parseDateTime(xmlValue.toString());
                 return parsedDateTime.toLocalDate();
             }
-        });
+        }));
 
-        converterStore.addConverter(DateTime.class, new Converter<DateTime>()
+        converterStore.addConverter(DateTime.class, new ColumnCachingConverter<>(new CharSequenceConverter<DateTime>()
         {
             DateTimeFormatter isoFormatter =
                 ISODateTimeFormat.dateHourMinuteSecond()
                     .withZone(DateTimeZone.UTC);
 
-            public DateTime convert(String xmlValue, Field field)
+            public DateTime convert(CharSequence xmlValue, Field field)
             {
                 if (empty(xmlValue)) return null;
-                return isoFormatter.parseDateTime(xmlValue);
+                if (IsoDates.isDateTime(xmlValue))
+                {
+                    return new DateTime(
+                        IsoDates.year(xmlValue),
+                        IsoDates.month(xmlValue),
+                        IsoDates.day(xmlValue),
+                        IsoDates.hour(xmlValue),
+                        IsoDates.minute(xmlValue),
+                        IsoDates.second(xmlValue),
+                        DateTimeZone.UTC);
+                }
+                return isoFormatter.parseDateTime(xmlValue.toString());
             }
-        });
+        }));
 
     }
 
@@ -82,7 +97,7 @@ class JodaConverters
 
 
 
-    private static boolean empty(String string)
+    private static boolean empty(CharSequence string)
     {
         return string == null || string.length() == 0;
     }
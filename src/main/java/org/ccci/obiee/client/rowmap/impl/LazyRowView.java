@@ -0,0 +1,66 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Arrays;
+
+import org.ccci.obiee.client.rowmap.ReportColumn;
+import org.ccci.obiee.client.rowmap.RowView;
+
+/**
+ * A {@link RowView} that holds a row's raw cell text, and converts a column's cell through the query's
+ * {@link RowBuilder} when the column is first read.
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> the row type
+ */
+class LazyRowView<T> implements RowView<T>
+{
+
+    /** marks a column that has not been converted yet, since null is a valid converted value */
+    private static final Object UNCONVERTED = new Object();
+
+    private final RowBuilder<T> rowBuilder;
+    private final RawRow row;
+
+    /** indexed like the row builder's fields; {@code null} until a column is first read */
+    private Object[] values;
+
+    /**
+     * @param row the row's cells; must not be changed once given to the view
+     */
+    LazyRowView(RowBuilder<T> rowBuilder, RawRow row)
+    {
+        this.rowBuilder = rowBuilder;
+        this.row = row;
+    }
+
+    @Override
+    public Object getValue(ReportColumn<T> column)
+    {
+        if (column == null)
+            throw new NullPointerException("column is null");
+        int index = rowBuilder.indexOf(column.getField());
+        if (values == null)
+        {
+            values = new Object[rowBuilder.getFieldCount()];
+            Arrays.fill(values, UNCONVERTED);
+        }
+        if (values[index] == UNCONVERTED)
+        {
+            values[index] = rowBuilder.convertField(index, row, new CharSlice());
+        }
+        return values[index];
+    }
+
+    @Override
+    public T toRow()
+    {
+        return rowBuilder.buildRowInstance(row);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LazyRowView" + row;
+    }
+}
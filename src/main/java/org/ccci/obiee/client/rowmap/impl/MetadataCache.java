@@ -0,0 +1,75 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Holds the metadata schemas of reports, keyed by report path, so that sorted queries of the same report skip the
+ * metadata round trip to Answers.
+ * <p>
+ * A report's schema only changes when the report is edited in Answers, so schemas are kept for a fixed time after
+ * they are fetched, and can be invalidated explicitly.  Schemas of reports that returned no rows are not cached.
+ *
+ * Instances are thread-safe.
+ */
+class MetadataCache
+{
+
+    static final int MAXIMUM_SIZE = 256;
+
+    private final Cache<String, RowsetSchema> schemas;
+
+    /**
+     * @param timeToLive how long a schema is kept after it is fetched
+     */
+    MetadataCache(long timeToLive, TimeUnit unit)
+    {
+        this(timeToLive, unit, Ticker.systemTicker());
+    }
+
+    MetadataCache(long timeToLive, TimeUnit unit, Ticker ticker)
+    {
+        schemas = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(timeToLive, unit)
+            .ticker(ticker)
+            .build();
+    }
+
+    /**
+     * Returns the cached schema of the given report, fetching and caching it if there is none.
+     *
+     * @param fetcher fetches the report's schema, or returns {@code null} if the report returned no rows
+     */
+    RowsetSchema getSchema(String reportPath, Supplier<RowsetSchema> fetcher)
+    {
+        RowsetSchema schema = schemas.getIfPresent(reportPath);
+        if (schema == null)
+        {
+            // two threads may both fetch the schema here; either may be kept
+            schema = fetcher.get();
+            if (schema != null)
+                schemas.put(reportPath, schema);
+        }
+        return schema;
+    }
+
+    void invalidate(String reportPath)
+    {
+        schemas.invalidate(reportPath);
+    }
+
+    void invalidateAll()
+    {
+        schemas.invalidateAll();
+    }
+
+    long size()
+    {
+        return schemas.size();
+    }
+}
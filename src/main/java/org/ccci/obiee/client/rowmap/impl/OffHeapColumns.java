@@ -0,0 +1,281 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.lang.reflect.Field;
+import java.util.BitSet;
+
+import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.DoubleConverter;
+import org.ccci.obiee.client.rowmap.IntConverter;
+import org.ccci.obiee.client.rowmap.LongConverter;
+import org.ccci.obiee.client.rowmap.ResultTable.ColumnType;
+
+/**
+ * {@link TableColumn}s that hold their values in an {@link OffHeapStorage}, so that a table of any size
+ * needs little more than a bit per row (for null values) of heap.
+ * <p>
+ * Numeric columns hold values as they would be held in an array.  String and object columns hold the text of
+ * each cell; object values are converted each time they are read, since they can't be held off the heap.
+ */
+class OffHeapColumns
+{
+
+    private OffHeapColumns()
+    {
+    }
+
+    static class NumericColumn extends TableColumn.NumericColumn
+    {
+        private final ColumnType type;
+        private final int width;
+        private final Object primitiveConverter;
+        private final OffHeapStorage.Buffer values;
+        private int rowCount;
+
+        /**
+         * @param type {@link ColumnType#INT}, {@link ColumnType#LONG} or {@link ColumnType#DOUBLE}
+         */
+        NumericColumn(ColumnType type, int slot, Field field, Object converter, OffHeapStorage storage)
+        {
+            super(slot, field, converter);
+            this.type = type;
+            this.width = type == ColumnType.INT ? Integer.BYTES : Long.BYTES;
+            this.primitiveConverter = converter;
+            this.values = storage.newBuffer();
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return type;
+        }
+
+        @Override
+        void ensureCapacity(int row)
+        {
+            values.ensureCapacity(((long) row + 1) * width);
+        }
+
+        @Override
+        void setNumber(int row, Number value)
+        {
+            long offset = (long) row * width;
+            switch (type)
+            {
+                case INT:
+                    values.putInt(offset, value.intValue());
+                    break;
+                case LONG:
+                    values.putLong(offset, value.longValue());
+                    break;
+                default:
+                    values.putDouble(offset, value.doubleValue());
+                    break;
+            }
+        }
+
+        @Override
+        void setParsed(int row, CharSequence value)
+        {
+            long offset = (long) row * width;
+            switch (type)
+            {
+                case INT:
+                    values.putInt(offset, ((IntConverter) primitiveConverter).convert(value, field));
+                    break;
+                case LONG:
+                    values.putLong(offset, ((LongConverter) primitiveConverter).convert(value, field));
+                    break;
+                default:
+                    values.putDouble(offset, ((DoubleConverter) primitiveConverter).convert(value, field));
+                    break;
+            }
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        int getInt(int row)
+        {
+            checkType(ColumnType.INT);
+            return isNull(row) ? 0 : values.getInt((long) row * width);
+        }
+
+        @Override
+        long getLong(int row)
+        {
+            checkType(ColumnType.LONG);
+            return isNull(row) ? 0 : values.getLong((long) row * width);
+        }
+
+        @Override
+        double getDouble(int row)
+        {
+            checkType(ColumnType.DOUBLE);
+            return isNull(row) ? 0 : values.getDouble((long) row * width);
+        }
+
+        /*
+         * The array accessors copy the column onto the heap.
+         */
+
+        @Override
+        int[] getInts()
+        {
+            int[] copy = new int[rowCount];
+            for (int row = 0; row < rowCount; row++)
+            {
+                copy[row] = getInt(row);
+            }
+            return copy;
+        }
+
+        @Override
+        long[] getLongs()
+        {
+            long[] copy = new long[rowCount];
+            for (int row = 0; row < rowCount; row++)
+            {
+                copy[row] = getLong(row);
+            }
+            return copy;
+        }
+
+        @Override
+        double[] getDoubles()
+        {
+            double[] copy = new double[rowCount];
+            for (int row = 0; row < rowCount; row++)
+            {
+                copy[row] = getDouble(row);
+            }
+            return copy;
+        }
+
+        private void checkType(ColumnType expected)
+        {
+            if (type != expected)
+                throw new UnsupportedOperationException("this column holds " + type + " values, not " + expected);
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            if (isNull(row))
+                return null;
+            switch (type)
+            {
+                case INT:
+                    return getInt(row);
+                case LONG:
+                    return getLong(row);
+                default:
+                    return getDouble(row);
+            }
+        }
+    }
+
+    /**
+     * Holds the text of each cell, as UTF-16 chars, along with the offset at which each row's text ends.  For a
+     * String column whose converter has been replaced, the converted value is held instead.
+     */
+    static class TextColumn extends TableColumn
+    {
+        private final ColumnType type;
+        /** {@code null} if a String column's text is held as it is read */
+        private final Converter<?> converter;
+        /** the offset, in chars, at which each row's text ends */
+        private final OffHeapStorage.Buffer ends;
+        private final OffHeapStorage.Buffer chars;
+        private long length = 0;
+        private final BitSet nulls = new BitSet();
+
+        /**
+         * @param type {@link ColumnType#STRING} or {@link ColumnType#OBJECT}
+         */
+        TextColumn(ColumnType type, int slot, Field field, Converter<?> converter, OffHeapStorage storage)
+        {
+            super(slot, field);
+            this.type = type;
+            this.converter = type == ColumnType.STRING && converter instanceof StringDictionary ? null : converter;
+            this.ends = storage.newBuffer();
+            this.chars = storage.newBuffer();
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return type;
+        }
+
+        @Override
+        void append(int row, RawRow rawRow, CharSlice slice)
+        {
+            CharSequence value = type == ColumnType.STRING && converter != null
+                ? (String) convert(converter, field, rawRow, slot, slice)
+                : rawRow.getChars(slot, slice);
+            if (value == null)
+            {
+                nulls.set(row);
+            }
+            else
+            {
+                chars.ensureCapacity((length + value.length()) * Character.BYTES);
+                for (int i = 0; i < value.length(); i++)
+                {
+                    chars.putChar((length + i) * Character.BYTES, value.charAt(i));
+                }
+                length += value.length();
+            }
+            long offset = (long) row * Long.BYTES;
+            ends.ensureCapacity(offset + Long.BYTES);
+            ends.putLong(offset, length);
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return nulls.get(row);
+        }
+
+        /**
+         * @return the text of the given row, or {@code null} if it is null
+         */
+        private String getText(int row)
+        {
+            if (isNull(row))
+                return null;
+            long start = row == 0 ? 0 : ends.getLong((long) (row - 1) * Long.BYTES);
+            long end = ends.getLong((long) row * Long.BYTES);
+            char[] text = new char[(int) (end - start)];
+            for (int i = 0; i < text.length; i++)
+            {
+                text[i] = chars.getChar((start + i) * Character.BYTES);
+            }
+            return new String(text);
+        }
+
+        @Override
+        String getString(int row)
+        {
+            if (type != ColumnType.STRING)
+                throw new UnsupportedOperationException("this column holds " + type + " values, not STRING");
+            return getText(row);
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            String text = getText(row);
+            return type == ColumnType.STRING ? text : converter.convert(text, field);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ccci.obiee.client.rowmap.DataRetrievalException;
+
+/**
+ * Memory outside the java heap, handed out in fixed-size segments.  Segments are allocated as direct buffers
+ * until {@code spillThreshold} bytes have been handed out; later segments are mapped from a temporary file, so
+ * that the operating system can page them out.  The file is deleted when the storage is closed.
+ * <p>
+ * Direct buffers are released once they become unreachable; closing the storage only deletes the spill file.
+ *
+ * Instances are not thread-safe.
+ */
+class OffHeapStorage implements Closeable
+{
+
+    /** a multiple of 8, so that no value stored in a {@link Buffer} straddles two segments */
+    static final int SEGMENT_SIZE = 1 << 18;
+
+    private final long spillThreshold;
+    private long allocated = 0;
+
+    /** {@code null} until the first segment is spilled */
+    private FileChannel spillFile;
+
+    /**
+     * @param spillThreshold the number of bytes to allocate as direct buffers, before spilling to a file
+     */
+    OffHeapStorage(long spillThreshold)
+    {
+        this.spillThreshold = spillThreshold;
+    }
+
+    Buffer newBuffer()
+    {
+        return new Buffer();
+    }
+
+    /**
+     * The number of bytes handed out so far
+     */
+    long getAllocated()
+    {
+        return allocated;
+    }
+
+    boolean hasSpilled()
+    {
+        return spillFile != null;
+    }
+
+    private ByteBuffer allocateSegment()
+    {
+        ByteBuffer segment;
+        if (allocated + SEGMENT_SIZE <= spillThreshold)
+        {
+            segment = ByteBuffer.allocateDirect(SEGMENT_SIZE);
+        }
+        else
+        {
+            try
+            {
+                if (spillFile == null)
+                    spillFile = openSpillFile();
+                segment = spillFile.map(FileChannel.MapMode.READ_WRITE, spillFile.size(), SEGMENT_SIZE);
+            }
+            catch (IOException e)
+            {
+                throw new DataRetrievalException("unable to spill results to a temporary file", e);
+            }
+        }
+        allocated += SEGMENT_SIZE;
+        return segment.order(ByteOrder.nativeOrder());
+    }
+
+    private static FileChannel openSpillFile() throws IOException
+    {
+        Path path = Files.createTempFile("obiee-results", ".bin");
+        return FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    private static int index(long offset)
+    {
+        return (int) (offset % SEGMENT_SIZE);
+    }
+
+    @Override
+    public void close()
+    {
+        if (spillFile != null)
+        {
+            try
+            {
+                spillFile.close();
+            }
+            catch (IOException e)
+            {
+                throw new DataRetrievalException("unable to delete temporary results file", e);
+            }
+        }
+    }
+
+    /**
+     * A growable run of bytes, made of segments of this storage, addressed by byte offset.  Values must be
+     * stored at offsets that are a multiple of their size.
+     */
+    class Buffer
+    {
+        private final List<ByteBuffer> segments = new ArrayList<>();
+
+        /**
+         * Makes sure that the first {@code size} bytes of this buffer can be written.
+         */
+        void ensureCapacity(long size)
+        {
+            while ((long) segments.size() * SEGMENT_SIZE < size)
+            {
+                segments.add(allocateSegment());
+            }
+        }
+
+        private ByteBuffer segment(long offset)
+        {
+            return segments.get((int) (offset / SEGMENT_SIZE));
+        }
+
+        void putInt(long offset, int value)
+        {
+            segment(offset).putInt(index(offset), value);
+        }
+
+        int getInt(long offset)
+        {
+            return segment(offset).getInt(index(offset));
+        }
+
+        void putLong(long offset, long value)
+        {
+            segment(offset).putLong(index(offset), value);
+        }
+
+        long getLong(long offset)
+        {
+            return segment(offset).getLong(index(offset));
+        }
+
+        void putDouble(long offset, double value)
+        {
+            segment(offset).putDouble(index(offset), value);
+        }
+
+        double getDouble(long offset)
+        {
+            return segment(offset).getDouble(index(offset));
+        }
+
+        void putChar(long offset, char value)
+        {
+            segment(offset).putChar(index(offset), value);
+        }
+
+        char getChar(long offset)
+        {
+            return segment(offset).getChar(index(offset));
+        }
+    }
+}
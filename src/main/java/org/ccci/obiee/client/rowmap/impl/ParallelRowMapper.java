@@ -0,0 +1,77 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Maps a batch of raw rows to row objects on a {@link ForkJoinPool}, by recursively splitting the batch into
+ * ranges.  Each range writes into its own slots of the result, so the result keeps the order of the batch.
+ */
+class ParallelRowMapper
+{
+
+    /** ranges smaller than this are mapped sequentially */
+    static final int MINIMUM_RANGE_SIZE = 256;
+
+    private final ForkJoinPool pool;
+
+    ParallelRowMapper(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * @param rowBuilder must be safe to use from multiple threads
+     */
+    <T> List<T> mapRows(List<RawRow> rawRows, RowBuilder<T> rowBuilder)
+    {
+        @SuppressWarnings("unchecked")
+        T[] rows = (T[]) new Object[rawRows.size()];
+        int rangeSize = Math.max(MINIMUM_RANGE_SIZE, rawRows.size() / (pool.getParallelism() * 4));
+        pool.invoke(new MapRange<>(rawRows, rowBuilder, rows, 0, rows.length, rangeSize));
+        return Arrays.asList(rows);
+    }
+
+    private static class MapRange<T> extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<RawRow> rawRows;
+        private final RowBuilder<T> rowBuilder;
+        private final T[] rows;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+
+        MapRange(List<RawRow> rawRows, RowBuilder<T> rowBuilder, T[] rows, int from, int to, int rangeSize)
+        {
+            this.rawRows = rawRows;
+            this.rowBuilder = rowBuilder;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= rangeSize)
+            {
+                for (int i = from; i < to; i++)
+                {
+                    rows[i] = rowBuilder.buildRowInstance(rawRows.get(i));
+                }
+            }
+            else
+            {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                    new MapRange<>(rawRows, rowBuilder, rows, from, middle, rangeSize),
+                    new MapRange<>(rawRows, rowBuilder, rows, middle, to, rangeSize));
+            }
+        }
+    }
+}
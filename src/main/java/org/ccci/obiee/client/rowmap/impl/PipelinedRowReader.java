@@ -0,0 +1,114 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.ccci.obiee.client.rowmap.DataRetrievalException;
+
+/**
+ * Overlaps the tokenizing of a rowset with the conversion of its rows.
+ * <p>
+ * Raw rows are read from the rowset on the calling thread, and each is handed off to a worker to be converted
+ * into a row object.  Rows are returned in rowset order.  At most {@code depth} rows are tokenized ahead
+ * of the row most recently returned, so the memory held by the pipeline is bounded no matter how large the
+ * rowset is.
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> the row type
+ */
+class PipelinedRowReader<T> implements RowCursor.RowReader<T>, Closeable
+{
+
+    private final RowCursor.RowReader<RawRow> rawRows;
+    private final RowBuilder<T> rowBuilder;
+    private final ExecutorService workers;
+    private final int depth;
+
+    private final Deque<Future<T>> pending;
+    private boolean rawRowsExhausted = false;
+
+    /**
+     * @param rawRows the rows of the rowset, decoded into slots; each row must be a new instance
+     * @param rowBuilder converts raw rows to row objects; must be safe to use from multiple threads
+     * @param workers the threads that convert rows
+     * @param depth the maximum number of rows read but not yet returned
+     */
+    PipelinedRowReader(
+        RowCursor.RowReader<RawRow> rawRows,
+        RowBuilder<T> rowBuilder,
+        ExecutorService workers,
+        int depth)
+    {
+        if (depth < 1)
+            throw new IllegalArgumentException("depth must be positive, but was " + depth);
+        this.rawRows = rawRows;
+        this.rowBuilder = rowBuilder;
+        this.workers = workers;
+        this.depth = depth;
+        this.pending = new ArrayDeque<>(depth);
+    }
+
+    @Override
+    public T readNextRow()
+    {
+        fillPipeline();
+        Future<T> next = pending.poll();
+        return next == null ? null : await(next);
+    }
+
+    private void fillPipeline()
+    {
+        while (!rawRowsExhausted && pending.size() < depth)
+        {
+            RawRow rawRow = rawRows.readNextRow();
+            if (rawRow == null)
+            {
+                rawRowsExhausted = true;
+            }
+            else
+            {
+                pending.add(workers.submit(() -> rowBuilder.buildRowInstance(rawRow)));
+            }
+        }
+    }
+
+    private T await(Future<T> row)
+    {
+        try
+        {
+            return row.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new DataRetrievalException("unable to build row", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DataRetrievalException("interrupted while building row", e);
+        }
+    }
+
+    /**
+     * Abandons any rows still in the pipeline.
+     */
+    @Override
+    public void close()
+    {
+        for (Future<T> row : pending)
+        {
+            row.cancel(false);
+        }
+        pending.clear();
+        rawRowsExhausted = true;
+    }
+}
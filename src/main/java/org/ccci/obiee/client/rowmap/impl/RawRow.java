@@ -0,0 +1,175 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Arrays;
+
+/**
+ * The text of a row's cells, indexed by slot (see {@link ColumnSlots}).  The text of all cells is held in a
+ * single character buffer, so decoding a row doesn't create a {@code String} per cell; a cell's text can be
+ * read in place through a {@link CharSlice}, and is only copied into a {@code String} when one is needed.
+ * <p>
+ * Cells that are missing or empty are {@code null}.
+ *
+ * Instances are not thread-safe.
+ */
+class RawRow
+{
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private char[] text = new char[INITIAL_CAPACITY];
+    private int length = 0;
+
+    /** the start of each cell's text, or -1 for a null cell */
+    private final int[] starts;
+    private final int[] ends;
+
+    private int currentSlot = -1;
+
+    RawRow(int slots)
+    {
+        starts = new int[slots];
+        ends = new int[slots];
+        Arrays.fill(starts, -1);
+    }
+
+    /**
+     * A row holding the given values, in slot order
+     */
+    static RawRow of(String... values)
+    {
+        RawRow row = new RawRow(values.length);
+        for (int slot = 0; slot < values.length; slot++)
+        {
+            row.set(slot, values[slot]);
+        }
+        return row;
+    }
+
+    int size()
+    {
+        return starts.length;
+    }
+
+    /**
+     * Sets every cell to {@code null}.
+     */
+    void clear()
+    {
+        Arrays.fill(starts, -1);
+        length = 0;
+        currentSlot = -1;
+    }
+
+    /**
+     * Begins the text of a cell.  Text is added by {@link #append(char[], int, int)}, and the cell is
+     * completed by {@link #endCell()}.
+     */
+    void startCell(int slot)
+    {
+        currentSlot = slot;
+        starts[slot] = length;
+        ends[slot] = length;
+    }
+
+    void append(char[] chars, int start, int count)
+    {
+        if (length + count > text.length)
+        {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, length + count));
+        }
+        System.arraycopy(chars, start, text, length, count);
+        length += count;
+        ends[currentSlot] = length;
+    }
+
+    void endCell()
+    {
+        if (starts[currentSlot] == ends[currentSlot])
+        {
+            starts[currentSlot] = -1;
+        }
+        currentSlot = -1;
+    }
+
+    void set(int slot, String value)
+    {
+        startCell(slot);
+        if (value != null)
+        {
+            append(value.toCharArray(), 0, value.length());
+        }
+        endCell();
+    }
+
+    /**
+     * The number of characters of text this row holds, across all of its cells
+     */
+    int textLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return the length of the cell's text, or 0 if it is null
+     */
+    int cellLength(int slot)
+    {
+        return isNull(slot) ? 0 : ends[slot] - starts[slot];
+    }
+
+    /**
+     * Copies the text of a cell, which must not be null, into the given array.
+     */
+    void copyCell(int slot, char[] dest, int destPos)
+    {
+        System.arraycopy(text, starts[slot], dest, destPos, ends[slot] - starts[slot]);
+    }
+
+    /**
+     * Shrinks this row's character buffer to the text it holds, for a row that is kept once it has been read.
+     *
+     * @return this row
+     */
+    RawRow compact()
+    {
+        if (text.length > length)
+            text = Arrays.copyOf(text, length);
+        return this;
+    }
+
+    boolean isNull(int slot)
+    {
+        return starts[slot] < 0;
+    }
+
+    /**
+     * @return the text of the cell, or {@code null}
+     */
+    String getString(int slot)
+    {
+        return isNull(slot) ? null : new String(text, starts[slot], ends[slot] - starts[slot]);
+    }
+
+    /**
+     * Points the given slice at the text of a cell.  The slice is only valid until this row is next changed.
+     *
+     * @return {@code slice}, or {@code null} if the cell is null
+     */
+    CharSlice getChars(int slot, CharSlice slice)
+    {
+        return isNull(slot) ? null : slice.set(text, starts[slot], ends[slot]);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("[");
+        for (int slot = 0; slot < starts.length; slot++)
+        {
+            if (slot > 0)
+                builder.append(", ");
+            builder.append(getString(slot));
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -2,6 +2,7 @@ package org.ccci.obiee.client.rowmap.impl;
 
 import java.lang.reflect.Field;
 
+import org.ccci.obiee.client.rowmap.ColumnDescriptor;
 import org.ccci.obiee.client.rowmap.annotation.Column;
 
 /**
@@ -60,15 +61,19 @@ class ReportColumnId
     static ReportColumnId buildColumnId(Field field)
     {
         Column column = field.getAnnotation(Column.class);
-        String tableHeading = column.tableHeading();
-        String columnHeading;
-        if (!column.columnHeading().equals(""))
-        {
-            columnHeading = column.columnHeading();
-        }
-        else
+        return buildColumnId(column.tableHeading(), column.columnHeading(), field.getName());
+    }
+
+    static ReportColumnId buildColumnId(ColumnDescriptor column)
+    {
+        return buildColumnId(column.getTableHeading(), column.getColumnHeading(), column.getName());
+    }
+
+    private static ReportColumnId buildColumnId(String tableHeading, String columnHeading, String fieldName)
+    {
+        if (columnHeading.equals(""))
         {
-            columnHeading = buildDefaultColumnHeadingFromFieldName(field.getName()); 
+            columnHeading = buildDefaultColumnHeadingFromFieldName(fieldName); 
         }
         return new ReportColumnId(tableHeading, columnHeading);
     }
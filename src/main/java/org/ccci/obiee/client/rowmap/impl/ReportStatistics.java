@@ -0,0 +1,46 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Remembers how many rows the most recent complete result of each report held, keyed by report path and
+ * selection, so that sorted queries can choose where to sort their rows (see {@link SortStrategy#ADAPTIVE}).  The
+ * selection decides how many rows a report returns, so a count is only used for queries with the same selection.
+ * A result that was cut short by {@code setMaxResults()} says little about the size of the report, so isn't
+ * recorded.
+ *
+ * Instances are thread-safe.
+ */
+class ReportStatistics
+{
+
+    static final int MAXIMUM_SIZE = 1024;
+
+    private final Cache<List<String>, Integer> rowCounts = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .build();
+
+    /**
+     * @param selection identifies the query's selection; queries with equal selections must return the same rows
+     * @param maxResults the query's maximum number of results, or -1 if it had none
+     */
+    void recordResult(String reportPath, String selection, int rowCount, int maxResults)
+    {
+        if (maxResults < 0 || rowCount < maxResults)
+            rowCounts.put(Arrays.asList(reportPath, selection), rowCount);
+    }
+
+    /**
+     * @return the number of rows in the most recent complete result of the report for the given selection, or -1
+     *   if none has been recorded
+     */
+    int getRowCount(String reportPath, String selection)
+    {
+        Integer rowCount = rowCounts.getIfPresent(Arrays.asList(reportPath, selection));
+        return rowCount == null ? -1 : rowCount;
+    }
+}
@@ -0,0 +1,293 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Holds the xml of reports as {@link Template}s, so that sorted queries can apply their report params to a
+ * report's xml locally, rather than asking Answers to apply them.
+ * <p>
+ * A template is made by asking Answers to apply a marker value to each of a query's variables; the xml is then
+ * split at each occurrence of a marker.  A template only shows how Answers copies the marker's characters into
+ * the xml, so only values made of such characters can be applied to it; see {@link #canApply(String)}.  Answers
+ * formats other values itself, such as the dates sent for {@code LocalDateTime} variables, or Strings that must
+ * be escaped or quoted.
+ * <p>
+ * Since the variables a query sets depend on its selection, templates are keyed by report path and the names of
+ * the variables that are set.  Like report metadata, templates are kept for a fixed time after they are fetched,
+ * and can be invalidated explicitly.
+ * <p>
+ * A sorted query's template, or sort plan, is derived from the report's template by applying the query's
+ * ordering to the xml while it still holds the markers, so that each (report, variables, ordering) combination
+ * is only parsed and serialized once.
+ *
+ * Instances are thread-safe.
+ */
+class ReportTemplateCache
+{
+
+    static final int MAXIMUM_SIZE = 256;
+
+    private static final CharMatcher APPLICABLE = CharMatcher.inRange(' ', '~').and(CharMatcher.noneOf("&<>\"'"));
+
+    private final Cache<Key, Template> templates;
+
+    ReportTemplateCache(long timeToLive, TimeUnit unit)
+    {
+        this(timeToLive, unit, Ticker.systemTicker());
+    }
+
+    ReportTemplateCache(long timeToLive, TimeUnit unit, Ticker ticker)
+    {
+        templates = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(timeToLive, unit)
+            .ticker(ticker)
+            .build();
+    }
+
+    /**
+     * The value to apply to the given variable when fetching a template.  Markers contain only letters and
+     * digits, so that Answers copies them into the report's xml as they are.
+     *
+     * @param variable the index of the variable among the query's variables
+     */
+    static String marker(int variable)
+    {
+        return "zzObieeWsClientParam" + variable + "zz";
+    }
+
+    /**
+     * Returns the cached template of the given report for a query that sets the given variables, fetching and
+     * caching it if there is none.
+     *
+     * @param variableNames the names of the variables the query sets, in the order their values will be given
+     *   to {@link Template#apply(List)}
+     * @param fetcher returns the report's xml with the {@link #marker(int) marker} of each variable applied
+     */
+    Template getTemplate(String reportPath, List<String> variableNames, Function<List<String>, String> fetcher)
+    {
+        Key key = new Key(reportPath, variableNames, "");
+        Template template = templates.getIfPresent(key);
+        if (template == null)
+        {
+            // two threads may both fetch the template here; they are equivalent, so either may be kept
+            template = Template.parse(fetcher.apply(markers(variableNames.size())), variableNames.size());
+            templates.put(key, template);
+        }
+        return template;
+    }
+
+    /**
+     * Whether the template of the given report, for a query that sets the given variables, is cached and
+     * {@link Template#substitutesAll() substitutes every variable}
+     */
+    boolean containsTemplate(String reportPath, List<String> variableNames)
+    {
+        Template template = templates.getIfPresent(new Key(reportPath, variableNames, ""));
+        return template != null && template.substitutesAll();
+    }
+
+    /**
+     * Returns the cached sort plan of the given report for a query that sets the given variables and has the
+     * given ordering, deriving and caching it if there is none.
+     *
+     * @param ordering identifies the query's ordering; queries with equal orderings must be sorted alike
+     * @param sorter applies the query's ordering to the report's xml
+     * @param fetcher fetches the report's template, if it isn't cached; see
+     *   {@link #getTemplate(String, List, Function)}
+     * @return the sort plan, or {@code null} if the report's template doesn't
+     *   {@link Template#substitutesAll() substitute every variable}, so that the params must be applied by Answers
+     */
+    Template getSortPlan(
+        String reportPath,
+        List<String> variableNames,
+        String ordering,
+        UnaryOperator<String> sorter,
+        Function<List<String>, String> fetcher)
+    {
+        Key key = new Key(reportPath, variableNames, ordering);
+        Template sortPlan = templates.getIfPresent(key);
+        if (sortPlan == null)
+        {
+            Template template = getTemplate(reportPath, variableNames, fetcher);
+            if (!template.substitutesAll())
+                return null;
+            List<String> markers = markers(variableNames.size());
+            sortPlan = Template.parse(sorter.apply(template.apply(markers)), variableNames.size());
+            templates.put(key, sortPlan);
+        }
+        return sortPlan;
+    }
+
+    /**
+     * Whether the given value can be applied to a template.  Only printable ASCII characters other than those
+     * that xml escapes ({@code & < > " '}) can be, since only those are copied into the xml as they are, in
+     * attribute values, text and CDATA sections alike.  How Answers encodes other characters is not known, so
+     * params with such values must be applied by Answers.
+     */
+    static boolean canApply(String value)
+    {
+        return APPLICABLE.matchesAllOf(value);
+    }
+
+    private static List<String> markers(int variableCount)
+    {
+        List<String> markers = new ArrayList<>();
+        for (int i = 0; i < variableCount; i++)
+        {
+            markers.add(marker(i));
+        }
+        return markers;
+    }
+
+    /**
+     * Discards the templates and sort plans of the given report, for every combination of variables.
+     */
+    void invalidate(String reportPath)
+    {
+        templates.asMap().keySet().removeIf(key -> key.reportPath.equals(reportPath));
+    }
+
+    void invalidateAll()
+    {
+        templates.invalidateAll();
+    }
+
+    long size()
+    {
+        return templates.size();
+    }
+
+    /**
+     * A report's xml, split at the points where a query's variables are substituted.
+     *
+     * Instances are immutable.
+     */
+    static class Template
+    {
+        /** the xml between substitutions; there is one more chunk than there are substitutions */
+        private final List<String> chunks;
+
+        /** the variable substituted after each chunk but the last */
+        private final int[] substitutions;
+
+        /** whether each variable is substituted at least once */
+        private final boolean substitutesAll;
+
+        private Template(List<String> chunks, int[] substitutions, int variableCount)
+        {
+            this.chunks = chunks;
+            this.substitutions = substitutions;
+            boolean[] substituted = new boolean[variableCount];
+            for (int variable : substitutions)
+            {
+                substituted[variable] = true;
+            }
+            boolean all = true;
+            for (boolean variableSubstituted : substituted)
+            {
+                all &= variableSubstituted;
+            }
+            this.substitutesAll = all;
+        }
+
+        static Template parse(String xml, int variableCount)
+        {
+            List<String> chunks = new ArrayList<>();
+            List<Integer> substitutions = new ArrayList<>();
+            int chunkStart = 0;
+            while (true)
+            {
+                int nextMarker = -1;
+                int nextVariable = -1;
+                for (int variable = 0; variable < variableCount; variable++)
+                {
+                    int index = xml.indexOf(marker(variable), chunkStart);
+                    if (index >= 0 && (nextMarker < 0 || index < nextMarker))
+                    {
+                        nextMarker = index;
+                        nextVariable = variable;
+                    }
+                }
+                if (nextMarker < 0)
+                    break;
+                chunks.add(xml.substring(chunkStart, nextMarker));
+                substitutions.add(nextVariable);
+                chunkStart = nextMarker + marker(nextVariable).length();
+            }
+            chunks.add(xml.substring(chunkStart));
+            return new Template(chunks, substitutions.stream().mapToInt(Integer::intValue).toArray(), variableCount);
+        }
+
+        /**
+         * Whether every variable's marker was found in the report's xml.  If one wasn't, Answers either ignores
+         * the variable or doesn't copy its value into the xml as it is (it may quote or reformat it), and this
+         * template can't be trusted to reproduce what Answers would do.
+         */
+        boolean substitutesAll()
+        {
+            return substitutesAll;
+        }
+
+        /**
+         * @param values the value of each variable, in the order their names were given to
+         *   {@link ReportTemplateCache#getTemplate(String, List, Function)}; each must be
+         *   {@link ReportTemplateCache#canApply(String) applicable}
+         * @return the report's xml, with the given values applied
+         */
+        String apply(List<String> values)
+        {
+            StringBuilder xml = new StringBuilder();
+            for (int i = 0; i < substitutions.length; i++)
+            {
+                String value = values.get(substitutions[i]);
+                if (!canApply(value))
+                    throw new IllegalArgumentException("can't apply " + value + " to a template");
+                xml.append(chunks.get(i)).append(value);
+            }
+            return xml.append(chunks.get(substitutions.length)).toString();
+        }
+    }
+
+    private static class Key
+    {
+        private final String reportPath;
+        private final List<String> variableNames;
+        /** empty for a report's unsorted template */
+        private final String ordering;
+
+        Key(String reportPath, List<String> variableNames, String ordering)
+        {
+            this.reportPath = reportPath;
+            this.variableNames = new ArrayList<>(variableNames);
+            this.ordering = ordering;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(reportPath, variableNames, ordering);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return reportPath.equals(other.reportPath) &&
+                variableNames.equals(other.variableNames) &&
+                ordering.equals(other.ordering);
+        }
+    }
+}
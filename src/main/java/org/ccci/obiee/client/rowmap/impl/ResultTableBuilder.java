@@ -0,0 +1,196 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.ccci.obiee.client.rowmap.BooleanConverter;
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
+import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.DataRetrievalException;
+import org.ccci.obiee.client.rowmap.DoubleConverter;
+import org.ccci.obiee.client.rowmap.LongConverter;
+import org.ccci.obiee.client.rowmap.ReportColumn;
+import org.ccci.obiee.client.rowmap.ResultTable;
+import org.ccci.obiee.client.rowmap.ResultTable.ColumnType;
+
+/**
+ * Builds a {@link ColumnarResultTable} from raw rows, without creating row objects.  Each column reads its
+ * slot of the raw rows with the converter that {@link RowBuilder} resolved for the column's field.  Columns are
+ * held on the heap, or, if an {@link OffHeapStorage} is given, in that storage.
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> the row type
+ */
+class ResultTableBuilder<T>
+{
+
+    /** parses a {@code BigDecimal} column held as a long; such columns are integral, so have no scale */
+    private static final LongConverter INTEGRAL_DECIMAL_CONVERTER =
+        (xmlValue, field) -> CharSequences.parseLong(xmlValue);
+
+    /** parses a {@code BigDecimal} column held as a double; OBIEE sends such values as doubles anyway */
+    private static final DoubleConverter FLOATING_DECIMAL_CONVERTER =
+        (xmlValue, field) -> CharSequences.parseDouble(xmlValue);
+
+    private final Set<ReportColumn<T>> columns;
+    private final Map<ReportColumn<T>, TableColumn> tableColumns = new HashMap<>();
+    private final TableColumn[] appendOrder;
+    private final CharSlice slice = new CharSlice();
+    private final OffHeapStorage storage;
+    private int rowCount = 0;
+
+    ResultTableBuilder(Set<ReportColumn<T>> columns, RowBuilder<T> rowBuilder, RowsetSchema schema)
+    {
+        this(columns, rowBuilder, schema, null);
+    }
+
+    /**
+     * @param rowBuilder the query's row builder, which knows each field's slot and converter
+     * @param schema the rowset's schema, which gives each column's SQL type
+     * @param storage the storage to hold the table's columns in, or {@code null} to hold them on the heap
+     */
+    ResultTableBuilder(
+        Set<ReportColumn<T>> columns,
+        RowBuilder<T> rowBuilder,
+        RowsetSchema schema,
+        OffHeapStorage storage)
+    {
+        this.columns = columns;
+        this.storage = storage;
+        for (ReportColumn<T> column : columns)
+        {
+            Field field = column.getField();
+            RowsetSchema.Column schemaColumn = schema.findColumn(rowBuilder.getColumnId(field));
+            String sqlType = schemaColumn == null ? null : schemaColumn.sqlType;
+            tableColumns.put(column, buildTableColumn(
+                field,
+                columnType(field.getType(), sqlType),
+                rowBuilder.getSlot(field),
+                rowBuilder.getConverter(field),
+                storage));
+        }
+        appendOrder = tableColumns.values().toArray(new TableColumn[0]);
+    }
+
+    /**
+     * Returns an empty table of the given columns, typed by their fields alone.
+     */
+    static <T> ResultTable<T> emptyTable(Set<ReportColumn<T>> columns)
+    {
+        Map<ReportColumn<T>, TableColumn> tableColumns = new HashMap<>();
+        for (ReportColumn<T> column : columns)
+        {
+            Field field = column.getField();
+            TableColumn tableColumn = buildTableColumn(field, columnType(field.getType(), null), -1, null, null);
+            tableColumn.trim(0);
+            tableColumns.put(column, tableColumn);
+        }
+        return new ColumnarResultTable<>(columns, tableColumns, 0);
+    }
+
+    static ColumnType columnType(Class<?> fieldType, String sqlType)
+    {
+        if (fieldType == int.class || fieldType == Integer.class)
+            return ColumnType.INT;
+        if (fieldType == long.class || fieldType == Long.class)
+            return ColumnType.LONG;
+        if (fieldType == double.class || fieldType == Double.class)
+            return ColumnType.DOUBLE;
+        if (fieldType == String.class)
+            return ColumnType.STRING;
+        if (fieldType == BigDecimal.class && sqlType != null)
+        {
+            switch (sqlType.toLowerCase(Locale.ROOT))
+            {
+                case "tinyint":
+                case "smallint":
+                case "integer":
+                case "bigint":
+                    return ColumnType.LONG;
+                case "real":
+                case "float":
+                case "double":
+                    return ColumnType.DOUBLE;
+                default:
+                    break;
+            }
+        }
+        return ColumnType.OBJECT;
+    }
+
+    private static TableColumn buildTableColumn(
+        Field field,
+        ColumnType type,
+        int slot,
+        Object converter,
+        OffHeapStorage storage)
+    {
+        if (field.getType() == BigDecimal.class && type == ColumnType.LONG)
+            converter = INTEGRAL_DECIMAL_CONVERTER;
+        else if (field.getType() == BigDecimal.class && type == ColumnType.DOUBLE)
+            converter = FLOATING_DECIMAL_CONVERTER;
+        else if (type == ColumnType.OBJECT && converter instanceof BooleanConverter)
+        {
+            BooleanConverter booleanConverter = (BooleanConverter) converter;
+            CharSequenceConverter<Boolean> boxingConverter = (xmlValue, convertedField) ->
+                xmlValue == null ? null : booleanConverter.convert(xmlValue, convertedField);
+            converter = boxingConverter;
+        }
+
+        if (storage != null)
+        {
+            switch (type)
+            {
+                case INT:
+                case LONG:
+                case DOUBLE:
+                    return new OffHeapColumns.NumericColumn(type, slot, field, converter, storage);
+                default:
+                    return new OffHeapColumns.TextColumn(type, slot, field, (Converter<?>) converter, storage);
+            }
+        }
+        switch (type)
+        {
+            case INT:
+                return new TableColumn.IntColumn(slot, field, converter);
+            case LONG:
+                return new TableColumn.LongColumn(slot, field, converter);
+            case DOUBLE:
+                return new TableColumn.DoubleColumn(slot, field, converter);
+            case STRING:
+                return new TableColumn.StringColumn(slot, field, (Converter<?>) converter);
+            default:
+                return new TableColumn.ObjectColumn(slot, field, (Converter<?>) converter);
+        }
+    }
+
+    void addRow(RawRow rawRow)
+    {
+        try
+        {
+            for (TableColumn column : appendOrder)
+            {
+                column.append(rowCount, rawRow, slice);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            throw new DataRetrievalException("unable to parse row: " + rawRow, e);
+        }
+        rowCount++;
+    }
+
+    ResultTable<T> build()
+    {
+        for (TableColumn column : appendOrder)
+        {
+            column.trim(rowCount);
+        }
+        return new ColumnarResultTable<>(columns, tableColumns, rowCount, storage);
+    }
+}
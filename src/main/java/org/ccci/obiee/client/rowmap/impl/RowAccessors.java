@@ -0,0 +1,152 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ccci.obiee.client.rowmap.RowmapConfigurationException;
+import org.ccci.obiee.client.rowmap.annotation.Column;
+
+/**
+ * Method handles for constructing instances of a row type and writing its {@link Column} fields.  Unlike
+ * {@link Constructor#newInstance(Object...)} and {@link Field#set(Object, Object)}, these involve no access
+ * checks or argument arrays on each call.
+ * <p>
+ * Accessors are built once per row type, the first time the type is mapped, and are then shared.
+ *
+ * Instances are immutable.
+ */
+class RowAccessors
+{
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<RowAccessors> accessorsByRowType = new ClassValue<RowAccessors>()
+    {
+        @Override
+        protected RowAccessors computeValue(Class<?> rowType)
+        {
+            return new RowAccessors(rowType);
+        }
+    };
+
+    /** {@code null} if the row type has no no-arg constructor */
+    private final MethodHandle constructor;
+    private final Map<Field, MethodHandle> setters = new HashMap<>();
+    private final Map<Field, MethodHandle> primitiveSetters = new HashMap<>();
+
+    private RowAccessors(Class<?> rowType)
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        constructor = findConstructor(lookup, rowType);
+
+        Class<?> clazz = rowType;
+        while (!clazz.equals(Object.class))
+        {
+            for (Field field : clazz.getDeclaredFields())
+            {
+                if (field.isAnnotationPresent(Column.class))
+                {
+                    MethodHandle setter = buildSetter(lookup, field);
+                    // for a primitive field, asType() unboxes the value
+                    setters.put(field, setter.asType(SETTER_TYPE));
+                    if (field.getType().isPrimitive())
+                    {
+                        primitiveSetters.put(field, setter);
+                    }
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+    }
+
+    static RowAccessors forRowType(Class<?> rowType)
+    {
+        return accessorsByRowType.get(rowType);
+    }
+
+    private static MethodHandle findConstructor(MethodHandles.Lookup lookup, Class<?> rowType)
+    {
+        Constructor<?> rowConstructor;
+        try
+        {
+            rowConstructor = rowType.getConstructor();
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+        rowConstructor.setAccessible(true);
+        try
+        {
+            return lookup.unreflectConstructor(rowConstructor).asType(CONSTRUCTOR_TYPE);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new AssertionError("constructor.setAccessible(true) should have been called by now");
+        }
+    }
+
+    private static MethodHandle buildSetter(MethodHandles.Lookup lookup, Field field)
+    {
+        if (!field.isAccessible())
+        {
+            field.setAccessible(true);
+        }
+        try
+        {
+            MethodHandle setter = lookup.unreflectSetter(field);
+            if (Modifier.isStatic(field.getModifiers()))
+            {
+                setter = MethodHandles.dropArguments(setter, 0, Object.class);
+            }
+            return setter.asType(MethodType.methodType(void.class, Object.class, field.getType()));
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new RowmapConfigurationException(String.format(
+                "%s cannot be written; it may be static and final",
+                field
+            ), e);
+        }
+    }
+
+    /**
+     * A handle of type {@code ()Object} that creates a new row instance
+     */
+    MethodHandle getConstructor()
+    {
+        if (constructor == null)
+            throw new IllegalStateException("row type has no no-arg constructor");
+        return constructor;
+    }
+
+    /**
+     * A handle of type {@code (Object, Object)void} that writes the given field of a row instance
+     */
+    MethodHandle getSetter(Field field)
+    {
+        MethodHandle setter = setters.get(field);
+        if (setter == null)
+            throw new IllegalArgumentException(field + " is not a mapped column of this row type");
+        return setter;
+    }
+
+    /**
+     * A handle of type {@code (Object, P)void}, where {@code P} is the type of the given primitive field, that
+     * writes the field of a row instance without boxing
+     */
+    MethodHandle getPrimitiveSetter(Field field)
+    {
+        MethodHandle setter = primitiveSetters.get(field);
+        if (setter == null)
+            throw new IllegalArgumentException(field + " is not a mapped primitive column of this row type");
+        return setter;
+    }
+}
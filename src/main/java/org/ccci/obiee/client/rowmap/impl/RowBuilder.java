@@ -1,66 +1,286 @@
 package org.ccci.obiee.client.rowmap.impl;
 
-import java.lang.reflect.Constructor;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
+import org.ccci.obiee.client.rowmap.BooleanConverter;
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
+import org.ccci.obiee.client.rowmap.ColumnDescriptor;
 import org.ccci.obiee.client.rowmap.Converter;
 import org.ccci.obiee.client.rowmap.DataRetrievalException;
+import org.ccci.obiee.client.rowmap.DoubleConverter;
+import org.ccci.obiee.client.rowmap.IntConverter;
+import org.ccci.obiee.client.rowmap.LongConverter;
+import org.ccci.obiee.client.rowmap.RowDescriptor;
 import org.ccci.obiee.client.rowmap.RowmapConfigurationException;
 import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.LowCardinality;
 import org.ccci.obiee.client.rowmap.util.Doms;
 import org.w3c.dom.Node;
 
-import com.google.common.collect.Maps;
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Primitives;
 
 class RowBuilder<T>
 {
+
+    /**
+     * How a field's value is converted and written: through a {@link Converter}, through a
+     * {@link CharSequenceConverter} that reads the cell's text in place, or, for a primitive field with a
+     * primitive converter, without boxing.
+     */
+    private enum FieldKind
+    {
+        OBJECT, CHARS, INT, LONG, DOUBLE, BOOLEAN
+    }
+
     final Map<ReportColumnId, String> columnToNodeNameMapping;
     
     final Map<ReportColumnId, Field> columnToFieldMapping = new HashMap<>();
     private final ConverterStore converterStore;
-    private final Constructor<T> rowConstructor;
+    private final Class<T> rowType;
+
+    /**
+     * The row type's generated descriptor, which creates and writes rows directly; {@code null} if there is
+     * none, in which case rows are created and written through {@link RowAccessors}.
+     */
+    private final RowDescriptor<T> rowDescriptor;
+    private final MethodHandle rowConstructorHandle;
+
+    /*
+     * The mappings above, compiled so that rows can be decoded without hashing: a row is held as a raw row of
+     * cells indexed by slot, and each mapped field knows the slot it reads from.
+     */
+    private final ColumnSlots columnSlots;
+    private final Field[] fields;
+    private final FieldKind[] fieldKinds;
+    /** a {@link Converter}, or a primitive converter matching the field's kind */
+    private final Object[] fieldConverters;
+    private final int[] fieldSlots;
+    /** of type {@code (Object, Object)void}, or {@code (Object, P)void} for a field of primitive kind */
+    private final MethodHandle[] fieldSetters;
+    private final int[] descriptorColumns;
     
     public RowBuilder(Map<ReportColumnId, String> columnToNodeNameMapping, Class<T> rowType, ConverterStore converterStore)
+    {
+        this(columnToNodeNameMapping, rowType, converterStore, RowDescriptors.forRowType(rowType));
+    }
+
+    /**
+     * @param rowDescriptor the row type's descriptor, or {@code null} to create and write rows by reflection
+     */
+    RowBuilder(
+        Map<ReportColumnId, String> columnToNodeNameMapping,
+        Class<T> rowType,
+        ConverterStore converterStore,
+        RowDescriptor<T> rowDescriptor)
     {
         this.columnToNodeNameMapping = columnToNodeNameMapping;
         this.converterStore = converterStore;
+        this.rowType = rowType;
+        this.rowDescriptor = rowDescriptor;
         
-        rowConstructor = getRowConstructor(rowType);
-        Class<?> clazz = rowType;
-        while(!clazz.equals(Object.class))
+        Map<Field, Integer> descriptorColumnsByField = new HashMap<>();
+        RowAccessors accessors;
+        if (rowDescriptor == null)
         {
-            for (Field field : clazz.getDeclaredFields())
+            checkRowConstructor(rowType);
+            Class<?> clazz = rowType;
+            while(!clazz.equals(Object.class))
             {
-                if (field.isAnnotationPresent(Column.class))
+                for (Field field : clazz.getDeclaredFields())
                 {
-                    ReportColumnId columnId = ReportColumnId.buildColumnId(field);
-                    if (columnToFieldMapping.containsKey(columnId))
+                    if (field.isAnnotationPresent(Column.class))
                     {
-                        throw new RowmapConfigurationException(String.format(
-                            "two fields are mapped to the same report column: %s, and %s",
-                            field,
-                            columnToFieldMapping.get(columnId)));
+                        addColumn(ReportColumnId.buildColumnId(field), field);
+                        ensureFieldAccessible(field);
                     }
-                    
-                    checkFieldHasCorrespondingReportColumn(rowType, field, columnId);
-                    checkFieldTypeIsSupported(converterStore, field);
-                    ensureFieldAccessible(field);
-                    columnToFieldMapping.put(columnId, field);
                 }
+                clazz = clazz.getSuperclass();
             }
-            clazz = clazz.getSuperclass();
+            accessors = RowAccessors.forRowType(rowType);
+            rowConstructorHandle = accessors.getConstructor();
+        }
+        else
+        {
+            List<ColumnDescriptor> columns = rowDescriptor.getColumns();
+            for (int column = 0; column < columns.size(); column++)
+            {
+                Field field = columns.get(column).getField();
+                addColumn(ReportColumnId.buildColumnId(columns.get(column)), field);
+                descriptorColumnsByField.put(field, column);
+            }
+            accessors = null;
+            rowConstructorHandle = null;
+        }
+
+        columnSlots = new ColumnSlots(columnToNodeNameMapping.values());
+        fields = new Field[columnToFieldMapping.size()];
+        fieldKinds = new FieldKind[columnToFieldMapping.size()];
+        fieldConverters = new Object[columnToFieldMapping.size()];
+        fieldSlots = new int[columnToFieldMapping.size()];
+        fieldSetters = new MethodHandle[columnToFieldMapping.size()];
+        descriptorColumns = new int[columnToFieldMapping.size()];
+        int i = 0;
+        for (Map.Entry<ReportColumnId, Field> entry : columnToFieldMapping.entrySet())
+        {
+            Field field = entry.getValue();
+            fields[i] = field;
+            Object primitiveConverter = converterStore.getPrimitiveConverter(field.getType());
+            if (primitiveConverter != null)
+            {
+                fieldKinds[i] = FieldKind.valueOf(field.getType().getName().toUpperCase(Locale.ROOT));
+                fieldConverters[i] = primitiveConverter;
+            }
+            else
+            {
+                Converter<?> converter = converterStore.getConverter(field.getType());
+                if (converter instanceof ColumnCachingConverter)
+                    converter = ((ColumnCachingConverter<?>) converter).forColumn();
+                fieldKinds[i] = converter instanceof CharSequenceConverter ? FieldKind.CHARS : FieldKind.OBJECT;
+                fieldConverters[i] = converter;
+            }
+            fieldSlots[i] = columnSlots.slotOf(columnToNodeNameMapping.get(entry.getKey()));
+            if (accessors != null)
+                fieldSetters[i] = fieldKinds[i] == FieldKind.OBJECT || fieldKinds[i] == FieldKind.CHARS
+                    ? accessors.getSetter(field)
+                    : accessors.getPrimitiveSetter(field);
+            else
+                descriptorColumns[i] = descriptorColumnsByField.get(entry.getValue());
+            i++;
+        }
+    }
+
+    /**
+     * A copy of the given builder that converts with the given converters.
+     */
+    private RowBuilder(RowBuilder<T> prototype, Object[] fieldConverters)
+    {
+        this.columnToNodeNameMapping = prototype.columnToNodeNameMapping;
+        this.columnToFieldMapping.putAll(prototype.columnToFieldMapping);
+        this.converterStore = prototype.converterStore;
+        this.rowType = prototype.rowType;
+        this.rowDescriptor = prototype.rowDescriptor;
+        this.rowConstructorHandle = prototype.rowConstructorHandle;
+        this.columnSlots = prototype.columnSlots;
+        this.fields = prototype.fields;
+        this.fieldKinds = prototype.fieldKinds;
+        this.fieldConverters = fieldConverters;
+        this.fieldSlots = prototype.fieldSlots;
+        this.fieldSetters = prototype.fieldSetters;
+        this.descriptorColumns = prototype.descriptorColumns;
+    }
+
+    /**
+     * Returns a builder for a single query, which gives each String column converted by a
+     * {@link StringDictionary} a dictionary of its own, so that repeated values within the query share an
+     * instance.  Columns annotated with {@link LowCardinality} are given an unbounded dictionary; others are
+     * given one that is abandoned after {@code dictionaryLimit} distinct values.
+     * <p>
+     * Returns this builder if it has no such columns.
+     */
+    RowBuilder<T> forQuery(int dictionaryLimit)
+    {
+        Object[] queryConverters = null;
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (fieldConverters[i] instanceof StringDictionary)
+            {
+                if (queryConverters == null)
+                    queryConverters = fieldConverters.clone();
+                int limit = fields[i].isAnnotationPresent(LowCardinality.class)
+                    ? StringDictionary.UNBOUNDED
+                    : dictionaryLimit;
+                queryConverters[i] = ((StringDictionary) fieldConverters[i]).forQuery(limit);
+            }
+        }
+        return queryConverters == null ? this : new RowBuilder<>(this, queryConverters);
+    }
+
+    private void addColumn(ReportColumnId columnId, Field field)
+    {
+        if (columnToFieldMapping.containsKey(columnId))
+        {
+            throw new RowmapConfigurationException(String.format(
+                "two fields are mapped to the same report column: %s, and %s",
+                field,
+                columnToFieldMapping.get(columnId)));
         }
         
+        checkFieldHasCorrespondingReportColumn(rowType, field, columnId);
+        checkFieldTypeIsSupported(converterStore, field);
+        columnToFieldMapping.put(columnId, field);
+    }
+
+    /**
+     * The slots of the rows that this builder accepts
+     */
+    ColumnSlots getColumnSlots()
+    {
+        return columnSlots;
+    }
+
+    /**
+     * The slot of the rows that this builder accepts from which the given field is read
+     */
+    int getSlot(Field field)
+    {
+        return fieldSlots[indexOf(field)];
+    }
+
+    /**
+     * The converter of the given field: a {@link Converter}, or a primitive converter if the field is written
+     * without boxing
+     */
+    Object getConverter(Field field)
+    {
+        return fieldConverters[indexOf(field)];
+    }
+
+    /**
+     * The number of fields this builder writes
+     */
+    int getFieldCount()
+    {
+        return fields.length;
+    }
+
+    /**
+     * The index of the given field among the fields this builder writes; see
+     * {@link #convertField(int, RawRow, CharSlice)}.
+     */
+    int indexOf(Field field)
+    {
+        for (int i = 0; i < fields.length; i++)
+        {
+            if (fields[i].equals(field))
+                return i;
+        }
+        throw new IllegalArgumentException(field + " is not a mapped column of " + rowType);
     }
 
-    private Constructor<T> getRowConstructor(Class<T> rowType)
+    /**
+     * The id of the report column that the given field is mapped to
+     */
+    ReportColumnId getColumnId(Field field)
+    {
+        for (Map.Entry<ReportColumnId, Field> entry : columnToFieldMapping.entrySet())
+        {
+            if (entry.getValue().equals(field))
+                return entry.getKey();
+        }
+        throw new IllegalArgumentException(field + " is not a mapped column of " + rowType);
+    }
+
+    private void checkRowConstructor(Class<T> rowType)
     {
-        Constructor<T> constructor;
         try
         {
-            constructor = rowType.getConstructor();
+            rowType.getConstructor();
         }
         catch (NoSuchMethodException e)
         {
@@ -69,8 +289,6 @@ class RowBuilder<T>
                 rowType
             ), e);
         }
-        constructor.setAccessible(true);
-        return constructor;
     }
 
     private void ensureFieldAccessible(Field field)
@@ -83,7 +301,8 @@ class RowBuilder<T>
 
     private void checkFieldTypeIsSupported(ConverterStore converterStore, Field field)
     {
-        if (converterStore.getConverter(field.getType()) == null)
+        if (converterStore.getConverter(field.getType()) == null
+                && converterStore.getPrimitiveConverter(field.getType()) == null)
         {
             throw new RowmapConfigurationException(String.format(
                 "%s is not of a type that this system can use (%s).  If you need to convert to this type, add an appropriate converter",
@@ -108,69 +327,208 @@ class RowBuilder<T>
 
     public T buildRowInstance(Node rowNode)
     {
+        return buildRowInstance(readRow(rowNode, columnSlots.newRow()));
+    }
+
+    /**
+     * @param row the values of a row's cells, indexed by their slots in {@link #getColumnSlots()}
+     */
+    public T buildRowInstance(RawRow row)
+    {
+        T rowInstance = instantiateRow();
+        populateRow(rowInstance, row);
+        return rowInstance;
+    }
+
+    /**
+     * Overwrites every mapped field of the given row instance with the values of a row.
+     */
+    public void populateRow(T rowInstance, RawRow row)
+    {
+        CharSlice slice = new CharSlice();
         try
         {
-            T rowInstance = instantiateRow();
-            Map<String, String> nodeNamesToValues = buildNodeNameToValueMapping(rowNode);
-            for (ReportColumnId columnId : columnToFieldMapping.keySet())
+            for (int i = 0; i < fields.length; i++)
             {
-                String nodeName = columnToNodeNameMapping.get(columnId);
-                String value = nodeNamesToValues.get(nodeName);
-                Field field = columnToFieldMapping.get(columnId);
-                Object converted = convert(value, field);
-                updateModel(rowInstance, field, converted);
+                populateField(rowInstance, i, row, slice);
             }
-            return rowInstance;
         }
         catch (Exception e)
         {
-            throw new DataRetrievalException("unable to parse row: " + rowNode, e);
+            throw new DataRetrievalException("unable to parse row: " + row, e);
+        }
+        catch (Throwable e)
+        {
+            throw Throwables.propagate(e);
         }
     }
 
-    private Map<String, String> buildNodeNameToValueMapping(Node rowNode)
+    /**
+     * @param slice a slice to point at the cell's text, for converters that read it in place
+     */
+    private void populateField(T rowInstance, int i, RawRow row, CharSlice slice) throws Throwable
     {
-        Map<String, String> nodeNamesToValues = Maps.newHashMapWithExpectedSize(columnToFieldMapping.size());
-        
-        for (Node node : Doms.each(rowNode.getChildNodes()))
+        Object converter = fieldConverters[i];
+        Field field = fields[i];
+        FieldKind kind = fieldKinds[i];
+        if (kind == FieldKind.OBJECT)
         {
-            String nodeName = node.getNodeName();
-            Node textChild = node.getChildNodes().item(0);
-            String value = textChild == null ? null : textChild.getNodeValue();
-            nodeNamesToValues.put(nodeName, value);
+            Object converted = convert(row.getString(fieldSlots[i]), field, (Converter<?>) converter);
+            setValue(rowInstance, i, converted);
+            return;
+        }
+
+        CharSequence value = row.getChars(fieldSlots[i], slice);
+        try
+        {
+            switch (kind)
+            {
+                case CHARS:
+                    Object converted = ((CharSequenceConverter<?>) converter).convert(value, field);
+                    checkConverted(converted, field, (Converter<?>) converter);
+                    setValue(rowInstance, i, converted);
+                    return;
+                case INT:
+                    int intValue = ((IntConverter) converter).convert(value, field);
+                    if (rowDescriptor != null)
+                        rowDescriptor.setInt(rowInstance, descriptorColumns[i], intValue);
+                    else
+                        fieldSetters[i].invokeExact((Object) rowInstance, intValue);
+                    return;
+                case LONG:
+                    long longValue = ((LongConverter) converter).convert(value, field);
+                    if (rowDescriptor != null)
+                        rowDescriptor.setLong(rowInstance, descriptorColumns[i], longValue);
+                    else
+                        fieldSetters[i].invokeExact((Object) rowInstance, longValue);
+                    return;
+                case DOUBLE:
+                    double doubleValue = ((DoubleConverter) converter).convert(value, field);
+                    if (rowDescriptor != null)
+                        rowDescriptor.setDouble(rowInstance, descriptorColumns[i], doubleValue);
+                    else
+                        fieldSetters[i].invokeExact((Object) rowInstance, doubleValue);
+                    return;
+                case BOOLEAN:
+                    boolean booleanValue = ((BooleanConverter) converter).convert(value, field);
+                    if (rowDescriptor != null)
+                        rowDescriptor.setBoolean(rowInstance, descriptorColumns[i], booleanValue);
+                    else
+                        fieldSetters[i].invokeExact((Object) rowInstance, booleanValue);
+                    return;
+                default:
+                    throw new AssertionError(kind);
+            }
+        }
+        catch (RowmapConfigurationException e)
+        {
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            throw new DataRetrievalException("unable to parse: " + value, e);
         }
-        return nodeNamesToValues;
     }
 
-    private void updateModel(T rowInstance, Field field, Object converted) throws AssertionError
+    /**
+     * Converts one field's cell of a row, as {@link #populateRow(Object, RawRow)} would, without writing it to
+     * a row instance.  Primitive values are boxed.
+     *
+     * @param i the field's index; see {@link #indexOf(Field)}
+     * @param slice a slice to point at the cell's text, for converters that read it in place
+     */
+    Object convertField(int i, RawRow row, CharSlice slice)
     {
+        Object converter = fieldConverters[i];
+        Field field = fields[i];
+        FieldKind kind = fieldKinds[i];
+        if (kind == FieldKind.OBJECT)
+            return convert(row.getString(fieldSlots[i]), field, (Converter<?>) converter);
+
+        CharSequence value = row.getChars(fieldSlots[i], slice);
         try
         {
-            field.set(rowInstance, converted);
+            switch (kind)
+            {
+                case CHARS:
+                    Object converted = ((CharSequenceConverter<?>) converter).convert(value, field);
+                    checkConverted(converted, field, (Converter<?>) converter);
+                    return converted;
+                case INT:
+                    return ((IntConverter) converter).convert(value, field);
+                case LONG:
+                    return ((LongConverter) converter).convert(value, field);
+                case DOUBLE:
+                    return ((DoubleConverter) converter).convert(value, field);
+                case BOOLEAN:
+                    return ((BooleanConverter) converter).convert(value, field);
+                default:
+                    throw new AssertionError(kind);
+            }
+        }
+        catch (RowmapConfigurationException e)
+        {
+            throw e;
         }
-        catch (IllegalAccessException e)
+        catch (RuntimeException e)
+        {
+            throw new DataRetrievalException("unable to parse: " + value, e);
+        }
+    }
+
+    private void setValue(T rowInstance, int i, Object converted) throws Throwable
+    {
+        if (rowDescriptor != null)
+            rowDescriptor.setValue(rowInstance, descriptorColumns[i], converted);
+        else
+            fieldSetters[i].invokeExact((Object) rowInstance, converted);
+    }
+
+    /**
+     * Reads the text of a row node's cells into the given raw row, by slot.  Cells that are
+     * missing or empty are read as {@code null}.
+     *
+     * @return {@code row}
+     */
+    RawRow readRow(Node rowNode, RawRow row)
+    {
+        row.clear();
+        for (Node node : Doms.each(rowNode.getChildNodes()))
         {
-            throw new AssertionError("field.setAccessible(true) should have been called by now");
+            int slot = columnSlots.slotOf(node.getNodeName());
+            if (slot >= 0)
+            {
+                Node textChild = node.getChildNodes().item(0);
+                row.set(slot, textChild == null ? null : textChild.getNodeValue());
+            }
         }
+        return row;
     }
 
-    private T instantiateRow()
+    T instantiateRow()
     {
         T rowInstance;
         try
         {
-            rowInstance = rowConstructor.newInstance();
+            if (rowDescriptor != null)
+                return rowDescriptor.newRow();
+            @SuppressWarnings("unchecked") //the handle was built from rowConstructor
+            T newInstance = (T) (Object) rowConstructorHandle.invokeExact();
+            rowInstance = newInstance;
         }
         catch (Exception e)
         {
-            throw new DataRetrievalException("can't create a new row instance of type " + rowConstructor.getDeclaringClass(), e);
+            throw new DataRetrievalException("can't create a new row instance of type " + rowType, e);
+        }
+        catch (Throwable e)
+        {
+            throw Throwables.propagate(e);
         }
         return rowInstance;
     }
 
-    private Object convert(String value, Field field)
+    private Object convert(String value, Field field, Converter<?> converter)
     {
-        Converter<?> converter = converterStore.getConverter(field.getType());
         Object converted;
         try
         {
@@ -180,8 +538,13 @@ class RowBuilder<T>
         {
             throw new DataRetrievalException("unable to parse: " + value, e);
         }
+        checkConverted(converted, field, converter);
+        return converted;
+    }
 
-        if (converted != null && !field.getType().isInstance(converted)
+    private void checkConverted(Object converted, Field field, Converter<?> converter)
+    {
+        if (converted != null && !Primitives.wrap(field.getType()).isInstance(converted)
                 || converted == null && field.getType().isPrimitive())
         {
             throw new RowmapConfigurationException(String.format(
@@ -193,7 +556,6 @@ class RowBuilder<T>
                 field.getType()
                 ));
         }
-        return converted;
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.function.Supplier;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Holds compiled {@link RowBuilder}s, so that repeated queries of the same report skip building one.
+ * <p>
+ * A row builder depends on the row type and on the rowset's schema, so builders are keyed by row type and
+ * {@link RowsetSchema#getFingerprint() schema fingerprint}.  If a report is changed in Answers, its schema's
+ * fingerprint changes with it, and a new builder is compiled; the stale one eventually falls out of the cache.
+ * <p>
+ * A row builder also depends on the converters it was compiled with, so a cache must only be shared by
+ * managers that use the same {@link ConverterStore}.
+ *
+ * Instances are thread-safe.
+ */
+class RowBuilderCache
+{
+
+    static final int MAXIMUM_SIZE = 256;
+
+    private final Cache<Key, RowBuilder<?>> rowBuilders = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .build();
+
+    /**
+     * Returns the cached builder for the given row type and schema, compiling and caching one if there is none.
+     * A builder that fails to compile is not cached.
+     */
+    <T> RowBuilder<T> getRowBuilder(Class<T> rowType, RowsetSchema schema, Supplier<RowBuilder<T>> compiler)
+    {
+        Key key = new Key(rowType, schema.getFingerprint());
+        @SuppressWarnings("unchecked") //builders are stored under a key of their row type
+        RowBuilder<T> rowBuilder = (RowBuilder<T>) rowBuilders.getIfPresent(key);
+        if (rowBuilder == null)
+        {
+            // two threads may both compile a builder here; they are equivalent, so either may be kept
+            rowBuilder = compiler.get();
+            rowBuilders.put(key, rowBuilder);
+        }
+        return rowBuilder;
+    }
+
+    long size()
+    {
+        return rowBuilders.size();
+    }
+
+    private static class Key
+    {
+        private final Class<?> rowType;
+        private final String schemaFingerprint;
+
+        Key(Class<?> rowType, String schemaFingerprint)
+        {
+            this.rowType = rowType;
+            this.schemaFingerprint = schemaFingerprint;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(rowType, schemaFingerprint);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return rowType.equals(other.rowType) && schemaFingerprint.equals(other.schemaFingerprint);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A closeable iterator over row objects that are read and mapped only as they are requested.
+ * The cursor closes itself once the last row has been read, so closing it explicitly is
+ * only strictly necessary when iteration stops early.
+ *
+ * Instances are not thread-safe.
+ *
+ * @param <T> the row type
+ */
+class RowCursor<T> implements Iterator<T>, Closeable
+{
+
+    /**
+     * Produces rows for a {@link RowCursor}.
+     */
+    interface RowReader<T>
+    {
+        /**
+         * @return the next row, or {@code null} if there are no more rows
+         */
+        T readNextRow();
+    }
+
+    private final RowReader<T> reader;
+    private final Runnable onClose;
+
+    private T next;
+    private boolean closed = false;
+
+    RowCursor(RowReader<T> reader, Runnable onClose)
+    {
+        this.reader = reader;
+        this.onClose = onClose;
+    }
+
+    static <T> RowCursor<T> empty(Runnable onClose)
+    {
+        return new RowCursor<>(() -> null, onClose);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (next != null)
+            return true;
+        if (closed)
+            return false;
+        next = reader.readNextRow();
+        if (next == null)
+        {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        T row = next;
+        next = null;
+        return row;
+    }
+
+    /**
+     * Returns a sequential {@link Stream} over the remaining rows; closing the stream closes this cursor.
+     */
+    Stream<T> stream()
+    {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+            this,
+            Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    @Override
+    public void close()
+    {
+        if (!closed)
+        {
+            closed = true;
+            next = null;
+            onClose.run();
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.Optional;
+
+import org.ccci.obiee.client.rowmap.RowDescriptor;
+import org.ccci.obiee.client.rowmap.RowmapConfigurationException;
+
+/**
+ * Finds the generated {@link RowDescriptor} of a row type, if there is one.  Each row type is looked up once,
+ * and the result is shared.
+ */
+public class RowDescriptors
+{
+
+    private static final ClassValue<Optional<RowDescriptor<?>>> descriptorsByRowType =
+        new ClassValue<Optional<RowDescriptor<?>>>()
+        {
+            @Override
+            protected Optional<RowDescriptor<?>> computeValue(Class<?> rowType)
+            {
+                return Optional.ofNullable(loadDescriptor(rowType));
+            }
+        };
+
+    /**
+     * @return the generated descriptor of the given row type, or {@code null} if none was generated
+     */
+    public static <T> RowDescriptor<T> forRowType(Class<T> rowType)
+    {
+        @SuppressWarnings("unchecked") //loadDescriptor() checks the descriptor's row type
+        RowDescriptor<T> descriptor = (RowDescriptor<T>) descriptorsByRowType.get(rowType).orElse(null);
+        return descriptor;
+    }
+
+    private static RowDescriptor<?> loadDescriptor(Class<?> rowType)
+    {
+        String descriptorName = RowDescriptor.descriptorClassName(rowType.getName());
+        Class<?> descriptorClass;
+        try
+        {
+            descriptorClass = Class.forName(descriptorName, true, rowType.getClassLoader());
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+
+        RowDescriptor<?> descriptor;
+        try
+        {
+            descriptor = descriptorClass.asSubclass(RowDescriptor.class).getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | ClassCastException e)
+        {
+            throw new RowmapConfigurationException("unable to instantiate row descriptor " + descriptorName, e);
+        }
+        if (!descriptor.getRowType().equals(rowType))
+        {
+            throw new RowmapConfigurationException(String.format(
+                "row descriptor %s describes %s, not %s",
+                descriptorName,
+                descriptor.getRowType(),
+                rowType));
+        }
+        return descriptor;
+    }
+}
@@ -0,0 +1,84 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.ccci.obiee.client.rowmap.ReportColumn;
+import org.ccci.obiee.client.rowmap.SortDirection;
+
+/**
+ * Sorts row objects in the JVM, for queries that are sorted on the client (see {@link SortStrategy#CLIENT}).
+ * Each row's sort value is read once, before sorting, rather than on every comparison.  Results of at least
+ * {@link #PARALLEL_SORT_THRESHOLD} rows are sorted with {@link Arrays#parallelSort}.  Both sorts are stable, so
+ * rows with equal sort values keep their rowset order.
+ */
+class RowSorter
+{
+
+    static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    private static final Comparator<Object> NATURAL_ORDER = Comparator.nullsLast(RowSorter::compareValues);
+
+    private RowSorter()
+    {
+    }
+
+    /**
+     * Whether rows can be sorted by the given column's values
+     */
+    static boolean canSort(ReportColumn<?> column)
+    {
+        Class<?> type = column.getField().getType();
+        return type.isPrimitive() || Comparable.class.isAssignableFrom(type);
+    }
+
+    /**
+     * @param maxResults the number of rows to keep, once sorted, or -1 to keep them all
+     * @return a new, modifiable list of the sorted rows
+     */
+    static <T> List<T> sort(List<T> rows, ReportColumn<T> column, SortDirection direction, int maxResults)
+    {
+        @SuppressWarnings("unchecked")
+        SortEntry<T>[] entries = (SortEntry<T>[]) new SortEntry<?>[rows.size()];
+        int i = 0;
+        for (T row : rows)
+        {
+            entries[i++] = new SortEntry<>(column.getValue(row), row);
+        }
+
+        Comparator<Object> valueOrder = direction == SortDirection.DESCENDING ? NATURAL_ORDER.reversed() : NATURAL_ORDER;
+        Comparator<SortEntry<T>> entryOrder = (a, b) -> valueOrder.compare(a.value, b.value);
+        if (entries.length >= PARALLEL_SORT_THRESHOLD)
+            Arrays.parallelSort(entries, entryOrder);
+        else
+            Arrays.sort(entries, entryOrder);
+
+        int size = maxResults < 0 ? entries.length : Math.min(maxResults, entries.length);
+        List<T> sorted = new ArrayList<>(size);
+        for (i = 0; i < size; i++)
+        {
+            sorted.add(entries[i].row);
+        }
+        return sorted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValues(Object a, Object b)
+    {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    private static class SortEntry<T>
+    {
+        final Object value;
+        final T row;
+
+        SortEntry(Object value, T row)
+        {
+            this.value = value;
+            this.row = row;
+        }
+    }
+}
@@ -8,6 +8,21 @@ public class RowmapConfiguration
     private String password;
     private Integer readTimeout;
     private Integer connectTimeout;
+    private RowsetParser rowsetParser;
+    private Integer pageSize;
+    private Boolean streamResponses;
+    private Integer pipelineThreads;
+    private Integer parallelMappingThreshold;
+    private Integer stringDictionaryLimit;
+    private Boolean offHeapResultTables;
+    private Integer resultSpillThreshold;
+    private Integer compactResultRowThreshold;
+    private Integer compactResultSizeThreshold;
+    private Integer metadataCacheTtl;
+    private Boolean cacheReportTemplates;
+    private Boolean concurrentSortedQueries;
+    private SortStrategy sortStrategy;
+    private Integer clientSortRowThreshold;
 
     public String getEndpointBaseUrl()
     {
@@ -59,4 +74,213 @@ public class RowmapConfiguration
         this.connectTimeout = connectTimeout;
     }
 
+    public RowsetParser getRowsetParser()
+    {
+        return rowsetParser;
+    }
+
+    public void setRowsetParser(RowsetParser rowsetParser)
+    {
+        this.rowsetParser = rowsetParser;
+    }
+
+    public Integer getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * If set to a positive value, results are retrieved from Answers in pages of this many rows.
+     */
+    public void setPageSize(Integer pageSize)
+    {
+        this.pageSize = pageSize;
+    }
+
+    public Boolean getStreamResponses()
+    {
+        return streamResponses;
+    }
+
+    /**
+     * If true, rowsets are parsed as the responses from Answers arrive, rather than after each response has
+     * been read in full.
+     */
+    public void setStreamResponses(Boolean streamResponses)
+    {
+        this.streamResponses = streamResponses;
+    }
+
+    public Integer getPipelineThreads()
+    {
+        return pipelineThreads;
+    }
+
+    /**
+     * If set to a positive value, rows are converted by this many worker threads while the rowset
+     * is being parsed.
+     */
+    public void setPipelineThreads(Integer pipelineThreads)
+    {
+        this.pipelineThreads = pipelineThreads;
+    }
+
+    public Integer getParallelMappingThreshold()
+    {
+        return parallelMappingThreshold;
+    }
+
+    /**
+     * If set to a positive value, result lists with at least this many rows (per page) are mapped
+     * to row objects in parallel.
+     */
+    public void setParallelMappingThreshold(Integer parallelMappingThreshold)
+    {
+        this.parallelMappingThreshold = parallelMappingThreshold;
+    }
+
+    public Integer getStringDictionaryLimit()
+    {
+        return stringDictionaryLimit;
+    }
+
+    /**
+     * Within a query, repeated values of a String column share an instance until the column has shown this
+     * many distinct values.  Default is 1024.  Zero disables sharing, except for columns annotated with
+     * {@link org.ccci.obiee.client.rowmap.annotation.LowCardinality}.
+     */
+    public void setStringDictionaryLimit(Integer stringDictionaryLimit)
+    {
+        this.stringDictionaryLimit = stringDictionaryLimit;
+    }
+
+    public Boolean getOffHeapResultTables()
+    {
+        return offHeapResultTables;
+    }
+
+    /**
+     * If true, result tables are held outside the java heap.
+     */
+    public void setOffHeapResultTables(Boolean offHeapResultTables)
+    {
+        this.offHeapResultTables = offHeapResultTables;
+    }
+
+    public Integer getResultSpillThreshold()
+    {
+        return resultSpillThreshold;
+    }
+
+    /**
+     * The number of megabytes of each off-heap result table to hold in memory, before spilling the remainder to a
+     * memory-mapped temporary file.
+     */
+    public void setResultSpillThreshold(Integer resultSpillThreshold)
+    {
+        this.resultSpillThreshold = resultSpillThreshold;
+    }
+
+    public Integer getCompactResultRowThreshold()
+    {
+        return compactResultRowThreshold;
+    }
+
+    /**
+     * Result lists with more than this many rows hold their remaining rows compactly, as text.  Such lists are
+     * unmodifiable, and build a new row object each time a compact row is requested.  A negative value, which is
+     * the default, disables this threshold.
+     */
+    public void setCompactResultRowThreshold(Integer compactResultRowThreshold)
+    {
+        this.compactResultRowThreshold = compactResultRowThreshold;
+    }
+
+    public Integer getCompactResultSizeThreshold()
+    {
+        return compactResultSizeThreshold;
+    }
+
+    /**
+     * Result lists whose cell text exceeds this many megabytes hold their remaining rows compactly, as text; see
+     * {@link #setCompactResultRowThreshold(Integer)}.  A negative value, which is the default, disables this
+     * threshold.
+     */
+    public void setCompactResultSizeThreshold(Integer compactResultSizeThreshold)
+    {
+        this.compactResultSizeThreshold = compactResultSizeThreshold;
+    }
+
+    public Integer getMetadataCacheTtl()
+    {
+        return metadataCacheTtl;
+    }
+
+    /**
+     * The number of seconds for which a report's metadata schema, and, if report templates are cached, its xml,
+     * are reused by sorted queries, after they are fetched.  Zero, which is the default, disables caching them.
+     * A schema cached before its report is edited in Answers maps the report's columns to the wrong fields until it
+     * expires or is invalidated, so enable this only for reports that are not edited in place.
+     */
+    public void setMetadataCacheTtl(Integer metadataCacheTtl)
+    {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    public Boolean getCacheReportTemplates()
+    {
+        return cacheReportTemplates;
+    }
+
+    /**
+     * If true, sorted queries whose params are all Strings that need no xml escaping apply them to a cached
+     * template of the report's xml, rather than asking Answers to apply them.  This suits reports that use such
+     * params as they are given, and is disabled by default.  Templates are kept for
+     * {@link #setMetadataCacheTtl(Integer) metadataCacheTtl} seconds, so that must be set too.
+     */
+    public void setCacheReportTemplates(Boolean cacheReportTemplates)
+    {
+        this.cacheReportTemplates = cacheReportTemplates;
+    }
+
+    public Boolean getConcurrentSortedQueries()
+    {
+        return concurrentSortedQueries;
+    }
+
+    /**
+     * If true, sorted queries fetch a report's xml concurrently with its metadata.
+     */
+    public void setConcurrentSortedQueries(Boolean concurrentSortedQueries)
+    {
+        this.concurrentSortedQueries = concurrentSortedQueries;
+    }
+
+    public SortStrategy getSortStrategy()
+    {
+        return sortStrategy;
+    }
+
+    /**
+     * Where the rows of sorted result lists are sorted; see {@link SortStrategy}.
+     */
+    public void setSortStrategy(SortStrategy sortStrategy)
+    {
+        this.sortStrategy = sortStrategy;
+    }
+
+    public Integer getClientSortRowThreshold()
+    {
+        return clientSortRowThreshold;
+    }
+
+    /**
+     * With the {@link SortStrategy#ADAPTIVE} sort strategy, the largest number of rows, as last returned by a
+     * report, that are sorted on the client.
+     */
+    public void setClientSortRowThreshold(Integer clientSortRowThreshold)
+    {
+        this.clientSortRowThreshold = clientSortRowThreshold;
+    }
+
 }
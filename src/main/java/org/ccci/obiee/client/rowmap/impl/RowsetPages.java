@@ -0,0 +1,237 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.Closeable;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import oracle.bi.web.soap.QueryResults;
+import org.ccci.obiee.client.rowmap.DataRetrievalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pages of rowset xml returned for a single query.
+ * <p>
+ * If paging is disabled, there is exactly one page: the rowset returned by {@code executeXMLQuery}.
+ * Otherwise, subsequent pages are pulled with {@code fetchNext} until Answers reports the query as finished.
+ * When an executor is available, the next page is prefetched while the current one is being consumed, so
+ * at most two pages are held at any time.
+ * <p>
+ * Closing the pages cancels the query in Answers if it has not finished.
+ *
+ * Instances are not thread-safe.
+ */
+class RowsetPages implements Closeable
+{
+
+    /**
+     * The xml view service operations needed to page through a query's results.
+     */
+    interface PagingService
+    {
+        Page fetchNext(String queryId);
+
+        void cancelQuery(String queryId);
+    }
+
+    /**
+     * One page of a query's results.
+     * <p>
+     * A page's rowset may be backed by a response that is still being read, in which case its query id and
+     * 'finished' flag are not known until the rowset has been read; asking for them earlier skips the
+     * remainder of the rowset.
+     */
+    interface Page extends Closeable
+    {
+        /**
+         * Returns the page's rowset xml.  May only be called once.
+         */
+        Reader openRowset();
+
+        String getQueryId();
+
+        boolean isFinished();
+
+        @Override
+        void close();
+    }
+
+    private final PagingService pagingService;
+    private final boolean paged;
+    private final ExecutorService executor;
+
+    private Page latest;
+    private boolean firstPageTaken = false;
+    private Future<Page> prefetch;
+    private boolean closed = false;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * @param firstPage the results returned from executing the query
+     * @param paged whether further pages should be fetched
+     * @param pagingService used to fetch further pages, and to cancel the query
+     * @param executor used to prefetch pages; if {@code null}, pages are fetched when they are needed
+     */
+    RowsetPages(Page firstPage, boolean paged, PagingService pagingService, ExecutorService executor)
+    {
+        this.latest = firstPage;
+        this.paged = paged;
+        this.pagingService = pagingService;
+        this.executor = executor;
+    }
+
+    /**
+     * Wraps results that were fully read by the jax-ws client.
+     */
+    static Page page(QueryResults results)
+    {
+        return new QueryResultsPage(results);
+    }
+
+    /**
+     * @return the rowset xml of the next page, or {@code null} if there are no more pages
+     */
+    Reader nextPage()
+    {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        if (!firstPageTaken)
+        {
+            firstPageTaken = true;
+        }
+        else if (hasMorePages())
+        {
+            Page next = prefetch == null ? pagingService.fetchNext(latest.getQueryId()) : awaitPrefetch();
+            latest.close();
+            latest = next;
+        }
+        else
+        {
+            return null;
+        }
+
+        Reader rowset = latest.openRowset();
+        startPrefetch();
+        return rowset;
+    }
+
+    boolean isPaged()
+    {
+        return paged;
+    }
+
+    private boolean hasMorePages()
+    {
+        return paged && !latest.isFinished();
+    }
+
+    private void startPrefetch()
+    {
+        if (executor != null && hasMorePages())
+        {
+            String queryId = latest.getQueryId();
+            prefetch = executor.submit(() -> pagingService.fetchNext(queryId));
+        }
+    }
+
+    private Page awaitPrefetch()
+    {
+        Future<Page> pending = prefetch;
+        prefetch = null;
+        try
+        {
+            return pending.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new DataRetrievalException("unable to fetch next page", e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DataRetrievalException("interrupted while fetching next page", e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed)
+            return;
+        closed = true;
+
+        try
+        {
+            if (prefetch != null)
+            {
+                try
+                {
+                    Page next = awaitPrefetch();
+                    latest.close();
+                    latest = next;
+                }
+                catch (RuntimeException e)
+                {
+                    log.debug("prefetch of next page failed while closing; query will be cancelled", e);
+                }
+            }
+            if (!latest.isFinished())
+            {
+                pagingService.cancelQuery(latest.getQueryId());
+            }
+        }
+        finally
+        {
+            latest.close();
+        }
+    }
+
+    private static class QueryResultsPage implements Page
+    {
+        private final QueryResults results;
+
+        QueryResultsPage(QueryResults results)
+        {
+            this.results = results;
+        }
+
+        @Override
+        public Reader openRowset()
+        {
+            String rowset = results.getRowset();
+            String description = "rowset from OBIEE";
+            if (rowset == null)
+                throw new DataRetrievalException(description + " is null");
+            if (rowset.isEmpty())
+                throw new DataRetrievalException(description + " is empty");
+
+            // the reader holds the only reference we need; let the page be collected once the caller is done with it
+            results.setRowset(null);
+            return new StringReader(rowset);
+        }
+
+        @Override
+        public String getQueryId()
+        {
+            return results.getQueryID();
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return results.isFinished();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
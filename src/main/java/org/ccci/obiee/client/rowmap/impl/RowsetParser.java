@@ -0,0 +1,18 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+/**
+ * Selects how rowsets returned by OBIEE are parsed.
+ */
+public enum RowsetParser
+{
+    /**
+     * Parses the whole rowset into a W3C DOM, and locates the preamble and rows with XPath.
+     * This uses considerably more memory than {@link #STAX}, and is kept mainly for comparison.
+     */
+    DOM,
+
+    /**
+     * Reads the rowset in a single pass with a StAX pull parser, decoding each row as it is encountered.
+     */
+    STAX
+}
@@ -0,0 +1,105 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The column layout of a rowset, as described by the {@code xsd:schema} preamble that OBIEE sends
+ * ahead of the rows themselves.
+ */
+class RowsetSchema
+{
+
+    private final List<Column> columns;
+
+    RowsetSchema(List<Column> columns)
+    {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+    }
+
+    List<Column> getColumns()
+    {
+        return columns;
+    }
+
+    boolean isEmpty()
+    {
+        return columns.isEmpty();
+    }
+
+    Map<ReportColumnId, String> getElementNamesPerColumnId()
+    {
+        Map<ReportColumnId, String> elementNamesPerColumnId = new HashMap<>();
+        for (Column column : columns)
+        {
+            elementNamesPerColumnId.put(column.reportColumnId, column.elementName);
+        }
+        return elementNamesPerColumnId;
+    }
+
+    /**
+     * Identifies this schema's layout: its element names, and the table and column headings they hold.  Two
+     * schemas with the same fingerprint are decoded and mapped identically.
+     */
+    String getFingerprint()
+    {
+        StringBuilder fingerprint = new StringBuilder();
+        for (Column column : columns)
+        {
+            fingerprint
+                .append(column.elementName).append('\u001f')
+                .append(column.reportColumnId.tableHeading).append('\u001f')
+                .append(column.reportColumnId.columnHeading).append('\u001e');
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Returns the column with the given id, or {@code null} if the rowset has no such column.
+     */
+    Column findColumn(ReportColumnId reportColumnId)
+    {
+        for (Column column : columns)
+        {
+            if (column.reportColumnId.equals(reportColumnId))
+            {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One {@code xsd:element} of the preamble's 'Row' type.
+     */
+    static class Column
+    {
+        /** the name of the element holding this column's values in each row, e.g. 'Column0' */
+        final String elementName;
+
+        final ReportColumnId reportColumnId;
+
+        /** the 'saw-sql:columnID' attribute; only present when presentation info is requested */
+        final String columnId;
+
+        /** the 'saw-sql:type' attribute, e.g. 'varchar' or 'double' */
+        final String sqlType;
+
+        Column(String elementName, ReportColumnId reportColumnId, String columnId, String sqlType)
+        {
+            this.elementName = elementName;
+            this.reportColumnId = reportColumnId;
+            this.columnId = columnId;
+            this.sqlType = sqlType;
+        }
+
+        @Override
+        public String toString()
+        {
+            return elementName + " (" + reportColumnId + ")";
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+/**
+ * Selects where the rows of a query with an {@link org.ccci.obiee.client.rowmap.Query#orderBy ordering} are
+ * sorted.  This only affects {@link org.ccci.obiee.client.rowmap.Query#getResultList()}; other ways of reading a
+ * query's rows are always sorted by Answers.
+ */
+public enum SortStrategy
+{
+    /**
+     * Answers sorts the rows.  This costs a metadata query and a rewrite of the report's xml, in addition to the
+     * query itself.
+     */
+    SERVER,
+
+    /**
+     * The rows are fetched unsorted, in a single query, and are sorted in the JVM by the natural order of the
+     * sort column's values.  Nulls are sorted last when ascending, and first when descending, as they are by
+     * Answers; Strings, however, are compared by their UTF-16 code units, which may not match the database's
+     * collation.  Sort columns whose values aren't {@link Comparable} are sorted by Answers.
+     * <p>
+     * A query with a maximum number of results is always sorted by Answers, since only Answers can sort the
+     * report's rows without returning every one of them.  A result sorted on the client is never held compactly (see
+     * {@code AnalyticsManagerImpl.setCompactResultThresholds()}), since sorting it would build a row object for
+     * every row; so a selection whose last complete result was large enough to be held compactly is sorted by
+     * Answers instead.
+     */
+    CLIENT,
+
+    /**
+     * The rows are sorted as for {@link #CLIENT} if the most recent complete result of the same report, for the
+     * same selection, had no more rows than the configured threshold, and by Answers otherwise, or if the report
+     * hasn't been queried with that selection.
+     */
+    ADAPTIVE
+}
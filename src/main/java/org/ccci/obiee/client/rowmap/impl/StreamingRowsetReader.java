@@ -0,0 +1,261 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads a rowset in a single forward pass, without building a DOM.  The {@code xsd:schema} preamble (if any)
+ * is read by {@link #readSchema()}, and then each {@code Row} element is decoded by {@link #nextRow()}.
+ *
+ * Instances are not thread-safe.
+ */
+class StreamingRowsetReader implements Closeable
+{
+
+    static final String ROWSET_NS = "urn:schemas-microsoft-com:xml-analysis:rowset";
+    static final String SAW_SQL_NS = "urn:saw-sql";
+
+    private final XMLStreamReader xml;
+
+    private boolean preambleRead = false;
+    private boolean empty = true;
+    private boolean positionedAtRow = false;
+    private boolean finished = false;
+
+    StreamingRowsetReader(XMLStreamReader xml)
+    {
+        this.xml = xml;
+    }
+
+    /**
+     * Reads up to the first row of the rowset.
+     *
+     * @return the schema described by the preamble; this is empty if the rowset has no preamble, which is
+     * the case for {@code SAWRowsetData} results.
+     */
+    RowsetSchema readSchema() throws XMLStreamException
+    {
+        if (preambleRead)
+            throw new IllegalStateException("schema has already been read");
+        preambleRead = true;
+
+        xml.nextTag();
+        checkStartElement(ROWSET_NS, "rowset");
+
+        List<RowsetSchema.Column> columns = new ArrayList<>();
+        while (!finished && !positionedAtRow)
+        {
+            if (xml.nextTag() == XMLStreamConstants.END_ELEMENT)
+            {
+                finished = true;
+            }
+            else if (isStartElement(XMLConstants.W3C_XML_SCHEMA_NS_URI, "schema"))
+            {
+                empty = false;
+                readSchemaElements(columns);
+            }
+            else if (isStartElement(ROWSET_NS, "Row"))
+            {
+                empty = false;
+                positionedAtRow = true;
+            }
+            else
+            {
+                skipElement();
+            }
+        }
+        return new RowsetSchema(columns);
+    }
+
+    /**
+     * Indicates whether the rowset element has no content at all; that is, neither a preamble nor any rows.
+     * Only valid after {@link #readSchema()} has been called.
+     */
+    boolean isEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * Decodes the next row into the given raw row, placing each element's value (e.g. that of 'Column0') in
+     * the element's slot.  Elements that are empty or missing are read as {@code null}, and elements that have
+     * no slot are skipped.  Text is copied straight from the parser's buffer into the row's buffer.
+     *
+     * @return {@code row}, or {@code null} if there are no more rows
+     */
+    RawRow nextRow(ColumnSlots columnSlots, RawRow row) throws XMLStreamException
+    {
+        if (!preambleRead)
+            throw new IllegalStateException("schema has not been read");
+        if (!advanceToRow())
+        {
+            return null;
+        }
+        positionedAtRow = false;
+
+        row.clear();
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT)
+        {
+            int slot = columnSlots.slotOf(xml.getLocalName());
+            if (slot >= 0)
+            {
+                row.startCell(slot);
+                readElementText(row);
+                row.endCell();
+            }
+            else
+            {
+                readElementText(null);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Reads the text of the current element, up to its end tag, as {@link XMLStreamReader#getElementText()}
+     * does, but without building a {@code String}.
+     *
+     * @param row the row to append the text to, or {@code null} to skip the text
+     */
+    private void readElementText(RawRow row) throws XMLStreamException
+    {
+        while (true)
+        {
+            switch (xml.next())
+            {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    if (row != null)
+                    {
+                        row.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                case XMLStreamConstants.COMMENT:
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return;
+                default:
+                    throw new XMLStreamException(
+                        "expected only text in element " + xml.getName() + ", but found event " + xml.getEventType(),
+                        xml.getLocation());
+            }
+        }
+    }
+
+    private boolean advanceToRow() throws XMLStreamException
+    {
+        while (!finished && !positionedAtRow)
+        {
+            if (xml.nextTag() == XMLStreamConstants.END_ELEMENT)
+            {
+                finished = true;
+            }
+            else if (isStartElement(ROWSET_NS, "Row"))
+            {
+                positionedAtRow = true;
+            }
+            else
+            {
+                skipElement();
+            }
+        }
+        return positionedAtRow;
+    }
+
+    private void readSchemaElements(List<RowsetSchema.Column> columns) throws XMLStreamException
+    {
+        boolean inRowType = false;
+        int depth = 1;
+        while (depth > 0)
+        {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                depth++;
+                if (isStartElement(XMLConstants.W3C_XML_SCHEMA_NS_URI, "complexType"))
+                {
+                    inRowType = "Row".equals(xml.getAttributeValue(null, "name"));
+                }
+                else if (inRowType && isStartElement(XMLConstants.W3C_XML_SCHEMA_NS_URI, "element"))
+                {
+                    columns.add(readColumn());
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT)
+            {
+                depth--;
+                if (XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(xml.getNamespaceURI())
+                        && "complexType".equals(xml.getLocalName()))
+                {
+                    inRowType = false;
+                }
+            }
+        }
+    }
+
+    private RowsetSchema.Column readColumn()
+    {
+        String elementName = xml.getAttributeValue(null, "name");
+        String tableHeading = xml.getAttributeValue(SAW_SQL_NS, "tableHeading");
+        String columnHeading = xml.getAttributeValue(SAW_SQL_NS, "columnHeading");
+        String columnId = xml.getAttributeValue(SAW_SQL_NS, "columnID");
+        String sqlType = xml.getAttributeValue(SAW_SQL_NS, "type");
+        return new RowsetSchema.Column(
+            elementName,
+            new ReportColumnId(tableHeading, columnHeading),
+            columnId,
+            sqlType);
+    }
+
+    private void skipElement() throws XMLStreamException
+    {
+        int depth = 1;
+        while (depth > 0)
+        {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    private boolean isStartElement(String namespaceUri, String localName)
+    {
+        return xml.isStartElement()
+            && localName.equals(xml.getLocalName())
+            && namespaceUri.equals(xml.getNamespaceURI());
+    }
+
+    private void checkStartElement(String namespaceUri, String localName) throws XMLStreamException
+    {
+        if (!isStartElement(namespaceUri, localName))
+        {
+            throw new XMLStreamException(
+                "expected element {" + namespaceUri + "}" + localName + " but found " + xml.getName(),
+                xml.getLocation());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            xml.close();
+        }
+        catch (XMLStreamException ignored)
+        {
+            // nothing useful can be done; the underlying reader is not held open by the StAX reader
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.WebServiceException;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import com.sun.xml.ws.client.BindingProviderProperties;
+import oracle.bi.web.soap.ExecuteXMLQuery;
+import oracle.bi.web.soap.FetchNext;
+import oracle.bi.web.soap.ReportParams;
+import oracle.bi.web.soap.ReportRef;
+import oracle.bi.web.soap.XMLQueryExecutionOptions;
+import oracle.bi.web.soap.XMLQueryOutputFormat;
+
+/**
+ * Calls the rowset-returning operations of the xml view service over plain http, so that each response
+ * can be parsed while it is still arriving.
+ * <p>
+ * The jax-ws client reads a response completely and hands back the rowset as a single String, which then
+ * has to be parsed all over again.  Here, the envelope is read with StAX instead, and the (escaped) text of
+ * its 'rowset' element is passed on to the rowset parser a chunk at a time, as it is unescaped.
+ * <p>
+ * The endpoint address and timeouts are read from the request context of the jax-ws port on every call,
+ * so they follow any changes to the port's configuration.
+ */
+class StreamingXmlViewClient
+{
+
+    static final String SOAP_ENVELOPE_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+
+    private static final JAXBContext jaxbContext = buildJaxbContext();
+
+    private final Map<String, Object> requestContext;
+    private final XMLInputFactory xmlInputFactory;
+    private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+
+    /**
+     * @param requestContext the request context of the xml view service port
+     * @param xmlInputFactory used to read response envelopes
+     */
+    StreamingXmlViewClient(Map<String, Object> requestContext, XMLInputFactory xmlInputFactory)
+    {
+        this.requestContext = requestContext;
+        this.xmlInputFactory = xmlInputFactory;
+    }
+
+    private static JAXBContext buildJaxbContext()
+    {
+        try
+        {
+            return JAXBContext.newInstance(ExecuteXMLQuery.class, FetchNext.class);
+        }
+        catch (JAXBException e)
+        {
+            throw new RuntimeException("unable to build jaxb context for xml view service requests", e);
+        }
+    }
+
+    RowsetPages.Page executeXMLQuery(
+        ReportRef report,
+        XMLQueryOutputFormat outputFormat,
+        XMLQueryExecutionOptions executionOptions,
+        ReportParams reportParams,
+        String sessionId)
+    {
+        ExecuteXMLQuery request = new ExecuteXMLQuery();
+        request.setReport(report);
+        request.setOutputFormat(outputFormat);
+        request.setExecutionOptions(executionOptions);
+        request.setReportParams(reportParams);
+        request.setSessionID(sessionId);
+        return call("#executeXMLQuery", request, "executeXMLQueryResult");
+    }
+
+    RowsetPages.Page fetchNext(String queryId, String sessionId)
+    {
+        FetchNext request = new FetchNext();
+        request.setQueryID(queryId);
+        request.setSessionID(sessionId);
+        return call("#fetchNext", request, "fetchNextResult");
+    }
+
+    private StreamedPage call(String soapAction, Object request, String resultElementName)
+    {
+        byte[] envelope = buildEnvelope(request);
+        HttpURLConnection connection = openConnection(soapAction, envelope.length);
+        try
+        {
+            try (OutputStream out = connection.getOutputStream())
+            {
+                out.write(envelope);
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST
+                ? connection.getErrorStream()
+                : connection.getInputStream();
+            if (in == null)
+                throw new WebServiceException("http status " + status + " with no response body");
+            return new StreamedPage(connection, in, resultElementName, status);
+        }
+        catch (IOException e)
+        {
+            connection.disconnect();
+            throw new WebServiceException(e);
+        }
+        catch (RuntimeException e)
+        {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    private byte[] buildEnvelope(Object request)
+    {
+        ByteArrayOutputStream envelope = new ByteArrayOutputStream();
+        try
+        {
+            XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(envelope, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("soapenv", "Envelope", SOAP_ENVELOPE_NS);
+            writer.writeNamespace("soapenv", SOAP_ENVELOPE_NS);
+            writer.writeStartElement("soapenv", "Body", SOAP_ENVELOPE_NS);
+
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+            marshaller.marshal(request, writer);
+
+            writer.writeEndElement();
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        }
+        catch (XMLStreamException | JAXBException e)
+        {
+            throw new WebServiceException("unable to write request envelope", e);
+        }
+        return envelope.toByteArray();
+    }
+
+    private HttpURLConnection openConnection(String soapAction, int contentLength)
+    {
+        String address = (String) requestContext.get(BindingProvider.ENDPOINT_ADDRESS_PROPERTY);
+        if (address == null)
+            throw new WebServiceException("no endpoint address is configured for the xml view service");
+
+        try
+        {
+            HttpURLConnection connection = (HttpURLConnection) new URL(address).openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            // Answers does not handle chunked transfer encoding
+            connection.setFixedLengthStreamingMode(contentLength);
+            connection.setRequestProperty("Content-Type", "text/xml; charset=utf-8");
+            connection.setRequestProperty("SOAPAction", "\"" + soapAction + "\"");
+            connection.setConnectTimeout(getTimeout(
+                BindingProviderProperties.CONNECT_TIMEOUT,
+                "com.sun.xml.internal.ws.connect.timeout"));
+            connection.setReadTimeout(getTimeout(
+                BindingProviderProperties.REQUEST_TIMEOUT,
+                "com.sun.xml.internal.ws.request.timeout"));
+            return connection;
+        }
+        catch (IOException e)
+        {
+            throw new WebServiceException("unable to connect to " + address, e);
+        }
+    }
+
+    private int getTimeout(String property, String sunJdkProperty)
+    {
+        Object timeout = requestContext.get(property);
+        if (timeout == null)
+            timeout = requestContext.get(sunJdkProperty);
+        return timeout == null ? 0 : ((Number) timeout).intValue();
+    }
+
+    /**
+     * A response envelope, positioned at the start of its rowset.
+     */
+    private class StreamedPage implements RowsetPages.Page
+    {
+        private final HttpURLConnection connection;
+        private final InputStream in;
+        private final XMLStreamReader xml;
+
+        private boolean rowsetOpened = false;
+        private boolean rowsetRead = false;
+        private boolean trailerRead = false;
+        private String queryId;
+        private boolean finished;
+
+        StreamedPage(HttpURLConnection connection, InputStream in, String resultElementName, int status)
+        {
+            this.connection = connection;
+            this.in = in;
+            try
+            {
+                xml = xmlInputFactory.createXMLStreamReader(in);
+                advanceToRowset(resultElementName);
+            }
+            catch (XMLStreamException e)
+            {
+                closeQuietly();
+                throw new WebServiceException("unable to read response envelope (http status " + status + ")", e);
+            }
+            catch (RuntimeException e)
+            {
+                closeQuietly();
+                throw e;
+            }
+        }
+
+        private void advanceToRowset(String resultElementName) throws XMLStreamException
+        {
+            xml.nextTag();
+            requireStartElement(SOAP_ENVELOPE_NS, "Envelope");
+            xml.nextTag();
+            if (isStartElement(SOAP_ENVELOPE_NS, "Header"))
+            {
+                skipElement();
+                xml.nextTag();
+            }
+            requireStartElement(SOAP_ENVELOPE_NS, "Body");
+            xml.nextTag();
+            if (isStartElement(SOAP_ENVELOPE_NS, "Fault"))
+            {
+                throw readFault();
+            }
+            requireStartElement(null, resultElementName);
+            xml.nextTag();
+            requireStartElement(null, "return");
+            xml.nextTag();
+            requireStartElement(null, "rowset");
+        }
+
+        private SOAPFaultException readFault() throws XMLStreamException
+        {
+            QName faultCode = new QName(SOAP_ENVELOPE_NS, "Server");
+            String faultString = "";
+            while (xml.nextTag() == XMLStreamConstants.START_ELEMENT)
+            {
+                if (xml.getLocalName().equals("faultcode"))
+                {
+                    faultCode = resolveFaultCode(xml.getElementText().trim(), faultCode);
+                }
+                else if (xml.getLocalName().equals("faultstring"))
+                {
+                    faultString = xml.getElementText();
+                }
+                else
+                {
+                    skipElement();
+                }
+            }
+            try
+            {
+                return new SOAPFaultException(SOAPFactory.newInstance().createFault(faultString, faultCode));
+            }
+            catch (SOAPException e)
+            {
+                throw new WebServiceException("soap fault from xml view service: " + faultString, e);
+            }
+        }
+
+        private QName resolveFaultCode(String qualifiedName, QName defaultCode)
+        {
+            int colon = qualifiedName.indexOf(':');
+            String prefix = colon < 0 ? "" : qualifiedName.substring(0, colon);
+            String namespaceUri = xml.getNamespaceContext().getNamespaceURI(prefix);
+            if (namespaceUri == null || namespaceUri.isEmpty())
+                return defaultCode;
+            return new QName(namespaceUri, qualifiedName.substring(colon + 1), prefix);
+        }
+
+        @Override
+        public Reader openRowset()
+        {
+            if (rowsetOpened)
+                throw new IllegalStateException("rowset has already been opened");
+            rowsetOpened = true;
+            return new RowsetTextReader();
+        }
+
+        @Override
+        public String getQueryId()
+        {
+            readTrailer();
+            return queryId;
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            readTrailer();
+            return finished;
+        }
+
+        /**
+         * Reads the elements that follow the rowset, skipping whatever part of the rowset has not been read.
+         */
+        private void readTrailer()
+        {
+            if (trailerRead)
+                return;
+            try
+            {
+                while (!rowsetRead)
+                {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.END_ELEMENT)
+                        rowsetRead = true;
+                    else if (event == XMLStreamConstants.START_ELEMENT)
+                        throw new XMLStreamException("unexpected element in rowset", xml.getLocation());
+                }
+                xml.nextTag();
+                requireStartElement(null, "queryID");
+                queryId = xml.getElementText();
+                xml.nextTag();
+                requireStartElement(null, "finished");
+                finished = Boolean.parseBoolean(xml.getElementText().trim());
+                trailerRead = true;
+            }
+            catch (XMLStreamException e)
+            {
+                throw new WebServiceException("unable to read response envelope", e);
+            }
+        }
+
+        private boolean isStartElement(String namespaceUri, String localName)
+        {
+            return xml.isStartElement()
+                && localName.equals(xml.getLocalName())
+                && (namespaceUri == null || namespaceUri.equals(xml.getNamespaceURI()));
+        }
+
+        private void requireStartElement(String namespaceUri, String localName) throws XMLStreamException
+        {
+            if (!isStartElement(namespaceUri, localName))
+            {
+                throw new XMLStreamException(
+                    "expected element " + localName + " but found " + (xml.isStartElement() ? xml.getName() : "end of element"),
+                    xml.getLocation());
+            }
+        }
+
+        private void skipElement() throws XMLStreamException
+        {
+            int depth = 1;
+            while (depth > 0)
+            {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT)
+                    depth++;
+                else if (event == XMLStreamConstants.END_ELEMENT)
+                    depth--;
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (!trailerRead)
+            {
+                // don't leave a partially-read response on a connection that might be reused
+                connection.disconnect();
+            }
+            closeQuietly();
+        }
+
+        private void closeQuietly()
+        {
+            try
+            {
+                if (xml != null)
+                    xml.close();
+            }
+            catch (XMLStreamException ignored)
+            {
+                // the input stream is closed below regardless
+            }
+            try
+            {
+                in.close();
+            }
+            catch (IOException ignored)
+            {
+                // nothing useful can be done
+            }
+        }
+
+        /**
+         * Returns the unescaped text of the 'rowset' element, reading the envelope only as far as is needed
+         * to fill each request.
+         */
+        private class RowsetTextReader extends Reader
+        {
+            private int textPosition = 0;
+            private int textLength = 0;
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException
+            {
+                if (len == 0)
+                    return 0;
+                try
+                {
+                    while (textPosition == textLength)
+                    {
+                        if (rowsetRead || !nextText())
+                            return -1;
+                    }
+                    int read = xml.getTextCharacters(textPosition, cbuf, off, Math.min(len, textLength - textPosition));
+                    textPosition += read;
+                    return read;
+                }
+                catch (XMLStreamException e)
+                {
+                    throw new IOException("unable to read rowset from response envelope", e);
+                }
+            }
+
+            /**
+             * @return false if the end of the rowset was reached
+             */
+            private boolean nextText() throws XMLStreamException
+            {
+                int event = xml.next();
+                switch (event)
+                {
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        textPosition = 0;
+                        textLength = xml.getTextLength();
+                        return true;
+                    case XMLStreamConstants.END_ELEMENT:
+                        rowsetRead = true;
+                        return false;
+                    case XMLStreamConstants.START_ELEMENT:
+                        throw new XMLStreamException("unexpected element in rowset", xml.getLocation());
+                    default:
+                        // comments and processing instructions are not part of the rowset
+                        textPosition = 0;
+                        textLength = 0;
+                        return true;
+                }
+            }
+
+            @Override
+            public void close()
+            {
+                // the page owns the underlying stream
+            }
+        }
+    }
+}
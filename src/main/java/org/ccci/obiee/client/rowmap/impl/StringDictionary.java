@@ -0,0 +1,146 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.lang.reflect.Field;
+
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
+
+/**
+ * Converts values to Strings, returning the same instance each time a value repeats.  This is the default
+ * String converter; {@link RowBuilder} gives each String column of a query a dictionary of its own, through
+ * {@link #forQuery(int)}, so that the dictionary is dropped along with the query.
+ * <p>
+ * A dictionary may be limited to some number of distinct values.  Once a column has shown itself to have more
+ * than that, the dictionary is abandoned and each value becomes a new String.
+ *
+ * Instances are thread-safe.  Lookups of values already in the dictionary don't lock.
+ */
+class StringDictionary implements CharSequenceConverter<String>
+{
+
+    /** a limit under which a dictionary is never abandoned */
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int limit;
+
+    /*
+     * An open-addressed hash table, at most half full.  Strings are safely published, so readers may probe
+     * the table without locking; a reader that misses a value being added concurrently just takes the lock
+     * and looks again.  The table is replaced (not resized in place) when it grows, and dropped once the
+     * dictionary is abandoned.
+     */
+    private volatile String[] table;
+    private int size;
+
+    /**
+     * @param limit the number of distinct values beyond which the dictionary is abandoned; if zero, values are
+     * never shared
+     */
+    StringDictionary(int limit)
+    {
+        this.limit = limit;
+        this.table = limit > 0 ? new String[INITIAL_CAPACITY] : null;
+    }
+
+    /**
+     * Returns a dictionary with an empty table of its own.
+     *
+     * @param limit see {@link #StringDictionary(int)}
+     */
+    StringDictionary forQuery(int limit)
+    {
+        return new StringDictionary(limit);
+    }
+
+    @Override
+    public String convert(CharSequence xmlValue, Field field)
+    {
+        if (xmlValue == null)
+            return null;
+        String[] entries = table;
+        if (entries == null)
+            return xmlValue.toString();
+
+        int hash = CharSequences.hash(xmlValue);
+        String entry = find(entries, hash, xmlValue);
+        return entry != null ? entry : add(hash, xmlValue);
+    }
+
+    /**
+     * The number of distinct values held, or -1 if the dictionary has been abandoned
+     */
+    synchronized int size()
+    {
+        return table == null ? -1 : size;
+    }
+
+    private static String find(String[] entries, int hash, CharSequence xmlValue)
+    {
+        int mask = entries.length - 1;
+        for (int i = spread(hash) & mask; entries[i] != null; i = (i + 1) & mask)
+        {
+            if (entries[i].hashCode() == hash && entries[i].contentEquals(xmlValue))
+                return entries[i];
+        }
+        return null;
+    }
+
+    private synchronized String add(int hash, CharSequence xmlValue)
+    {
+        String value = xmlValue.toString();
+        String[] entries = table;
+        if (entries == null)
+            return value;
+        String entry = find(entries, hash, xmlValue);
+        if (entry != null)
+            return entry;
+
+        if (size == limit)
+        {
+            table = null;
+            return value;
+        }
+        if ((size + 1) * 2 > entries.length)
+        {
+            entries = rehash(entries);
+        }
+        insert(entries, value);
+        size++;
+        table = entries;
+        return value;
+    }
+
+    private static String[] rehash(String[] entries)
+    {
+        String[] rehashed = new String[entries.length * 2];
+        for (String entry : entries)
+        {
+            if (entry != null)
+                insert(rehashed, entry);
+        }
+        return rehashed;
+    }
+
+    private static void insert(String[] entries, String value)
+    {
+        int mask = entries.length - 1;
+        int i = spread(value.hashCode()) & mask;
+        while (entries[i] != null)
+        {
+            i = (i + 1) & mask;
+        }
+        entries[i] = value;
+    }
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StringDictionary[limit=" + limit + "]";
+    }
+}
@@ -0,0 +1,527 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
+import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.DoubleConverter;
+import org.ccci.obiee.client.rowmap.IntConverter;
+import org.ccci.obiee.client.rowmap.LongConverter;
+import org.ccci.obiee.client.rowmap.ResultTable.ColumnType;
+
+/**
+ * One column of a {@link ColumnarResultTable}.  Values are appended one row at a time, straight from raw rows,
+ * into storage that grows as needed; {@link #trim(int)} then releases any unused capacity.  The columns in this
+ * file hold their values in arrays on the heap; see {@link OffHeapColumns} for columns held off the heap.
+ * <p>
+ * Numeric columns hold null values as 0, and mark them in a bit set that is only created once a null value is
+ * seen.
+ * <p>
+ * The typed accessors ({@link #getInt(int)} and so on) are only supported by columns of the matching type.
+ *
+ * Instances are not thread-safe.
+ */
+abstract class TableColumn
+{
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** the slot of the raw rows that this column reads */
+    final int slot;
+    final Field field;
+
+    TableColumn(int slot, Field field)
+    {
+        this.slot = slot;
+        this.field = field;
+    }
+
+    abstract ColumnType getType();
+
+    /**
+     * Reads this column's cell of the given raw row, as the value of the given row of the table.  Rows must
+     * be appended in order.
+     *
+     * @param slice a slice to point at the cell's text
+     */
+    abstract void append(int row, RawRow rawRow, CharSlice slice);
+
+    /**
+     * Shrinks this column to hold exactly {@code rowCount} rows, once all rows have been appended.
+     */
+    abstract void trim(int rowCount);
+
+    abstract boolean isNull(int row);
+
+    abstract Object getValue(int row);
+
+    int getInt(int row)
+    {
+        throw unsupported("int");
+    }
+
+    long getLong(int row)
+    {
+        throw unsupported("long");
+    }
+
+    double getDouble(int row)
+    {
+        throw unsupported("double");
+    }
+
+    String getString(int row)
+    {
+        throw unsupported("String");
+    }
+
+    /**
+     * @return the values of this column, as an array on the heap, which may be this column's own
+     */
+    int[] getInts()
+    {
+        throw unsupported("int");
+    }
+
+    /**
+     * @return the values of this column, as an array on the heap, which may be this column's own
+     */
+    long[] getLongs()
+    {
+        throw unsupported("long");
+    }
+
+    /**
+     * @return the values of this column, as an array on the heap, which may be this column's own
+     */
+    double[] getDoubles()
+    {
+        throw unsupported("double");
+    }
+
+    private UnsupportedOperationException unsupported(String type)
+    {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " does not hold " + type + " values");
+    }
+
+    static int grow(int capacity)
+    {
+        return Math.max(INITIAL_CAPACITY, capacity * 2);
+    }
+
+    /**
+     * Converts a cell with an object converter, passing it the cell's text in place if it can take it.
+     */
+    static Object convert(Converter<?> converter, Field field, RawRow rawRow, int slot, CharSlice slice)
+    {
+        if (converter instanceof CharSequenceConverter)
+            return ((CharSequenceConverter<?>) converter).convert(rawRow.getChars(slot, slice), field);
+        return converter.convert(rawRow.getString(slot), field);
+    }
+
+    /**
+     * A column of int, long or double values.  Values are parsed in place by the field's primitive converter,
+     * or, for a boxed field (or a primitive field whose primitive converter was replaced), converted by its
+     * object converter and then unboxed.  Subclasses store the values.
+     */
+    abstract static class NumericColumn extends TableColumn
+    {
+        /** {@code null} if values are parsed by a primitive converter */
+        private final Converter<?> converter;
+        private BitSet nulls;
+
+        /**
+         * @param converter an {@link IntConverter}, {@link LongConverter} or {@link DoubleConverter} matching
+         *   the column's type, or a {@link Converter} of {@link Number}s
+         */
+        NumericColumn(int slot, Field field, Object converter)
+        {
+            super(slot, field);
+            this.converter = converter instanceof Converter ? (Converter<?>) converter : null;
+        }
+
+        @Override
+        final void append(int row, RawRow rawRow, CharSlice slice)
+        {
+            ensureCapacity(row);
+            if (converter != null)
+            {
+                Number value = (Number) convert(converter, field, rawRow, slot, slice);
+                if (value == null)
+                    markNull(row);
+                else
+                    setNumber(row, value);
+            }
+            else if (rawRow.isNull(slot))
+                markNull(row);
+            else
+                setParsed(row, rawRow.getChars(slot, slice));
+        }
+
+        /**
+         * Makes room for the given row, which is the next to be appended.
+         */
+        abstract void ensureCapacity(int row);
+
+        abstract void setNumber(int row, Number value);
+
+        /**
+         * Parses the given cell text with the primitive converter, and stores the result
+         */
+        abstract void setParsed(int row, CharSequence value);
+
+        private void markNull(int row)
+        {
+            if (nulls == null)
+                nulls = new BitSet();
+            nulls.set(row);
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return nulls != null && nulls.get(row);
+        }
+    }
+
+    static class IntColumn extends NumericColumn
+    {
+        private final IntConverter intConverter;
+        private int[] values = new int[0];
+
+        IntColumn(int slot, Field field, Object converter)
+        {
+            super(slot, field, converter);
+            this.intConverter = converter instanceof IntConverter ? (IntConverter) converter : null;
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return ColumnType.INT;
+        }
+
+        @Override
+        void ensureCapacity(int row)
+        {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length));
+        }
+
+        @Override
+        void setNumber(int row, Number value)
+        {
+            values[row] = value.intValue();
+        }
+
+        @Override
+        void setParsed(int row, CharSequence value)
+        {
+            values[row] = intConverter.convert(value, field);
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        int getInt(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        int[] getInts()
+        {
+            return values;
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    static class LongColumn extends NumericColumn
+    {
+        private final LongConverter longConverter;
+        private long[] values = new long[0];
+
+        LongColumn(int slot, Field field, Object converter)
+        {
+            super(slot, field, converter);
+            this.longConverter = converter instanceof LongConverter ? (LongConverter) converter : null;
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return ColumnType.LONG;
+        }
+
+        @Override
+        void ensureCapacity(int row)
+        {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length));
+        }
+
+        @Override
+        void setNumber(int row, Number value)
+        {
+            values[row] = value.longValue();
+        }
+
+        @Override
+        void setParsed(int row, CharSequence value)
+        {
+            values[row] = longConverter.convert(value, field);
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        long getLong(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        long[] getLongs()
+        {
+            return values;
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    static class DoubleColumn extends NumericColumn
+    {
+        private final DoubleConverter doubleConverter;
+        private double[] values = new double[0];
+
+        DoubleColumn(int slot, Field field, Object converter)
+        {
+            super(slot, field, converter);
+            this.doubleConverter = converter instanceof DoubleConverter ? (DoubleConverter) converter : null;
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return ColumnType.DOUBLE;
+        }
+
+        @Override
+        void ensureCapacity(int row)
+        {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length));
+        }
+
+        @Override
+        void setNumber(int row, Number value)
+        {
+            values[row] = value.doubleValue();
+        }
+
+        @Override
+        void setParsed(int row, CharSequence value)
+        {
+            values[row] = doubleConverter.convert(value, field);
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        double getDouble(int row)
+        {
+            return values[row];
+        }
+
+        @Override
+        double[] getDoubles()
+        {
+            return values;
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            return isNull(row) ? null : values[row];
+        }
+    }
+
+    /**
+     * Holds each row's value as a code into a dictionary of the column's distinct values.  Values are encoded
+     * straight from the cell's text, unless the field's String converter has been replaced.
+     */
+    static class StringColumn extends TableColumn
+    {
+        /** {@code null} if values are encoded as they are read */
+        private final Converter<?> converter;
+        private final List<String> dictionary = new ArrayList<>();
+        private int[] codes = new int[0];
+
+        /** an open-addressed hash table of codes plus one; zero marks an empty slot */
+        private int[] codesByValue = new int[16];
+
+        StringColumn(int slot, Field field, Converter<?> converter)
+        {
+            super(slot, field);
+            this.converter = converter instanceof StringDictionary ? null : converter;
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return ColumnType.STRING;
+        }
+
+        @Override
+        void append(int row, RawRow rawRow, CharSlice slice)
+        {
+            if (row == codes.length)
+                codes = Arrays.copyOf(codes, grow(codes.length));
+            CharSequence value = converter == null
+                ? rawRow.getChars(slot, slice)
+                : (String) convert(converter, field, rawRow, slot, slice);
+            codes[row] = value == null ? -1 : encode(value);
+        }
+
+        private int encode(CharSequence value)
+        {
+            int hash = CharSequences.hash(value);
+            int mask = codesByValue.length - 1;
+            int i = (hash ^ (hash >>> 16)) & mask;
+            for (; codesByValue[i] != 0; i = (i + 1) & mask)
+            {
+                String entry = dictionary.get(codesByValue[i] - 1);
+                if (entry.hashCode() == hash && entry.contentEquals(value))
+                    return codesByValue[i] - 1;
+            }
+            int code = dictionary.size();
+            dictionary.add(value.toString());
+            codesByValue[i] = code + 1;
+            if (dictionary.size() * 2 > codesByValue.length)
+                rehash();
+            return code;
+        }
+
+        private void rehash()
+        {
+            codesByValue = new int[codesByValue.length * 2];
+            int mask = codesByValue.length - 1;
+            for (int code = 0; code < dictionary.size(); code++)
+            {
+                int hash = dictionary.get(code).hashCode();
+                int i = (hash ^ (hash >>> 16)) & mask;
+                while (codesByValue[i] != 0)
+                {
+                    i = (i + 1) & mask;
+                }
+                codesByValue[i] = code + 1;
+            }
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+            codes = Arrays.copyOf(codes, rowCount);
+            // only needed while values are being encoded
+            codesByValue = null;
+        }
+
+        int[] getCodes()
+        {
+            return codes;
+        }
+
+        List<String> getDictionary()
+        {
+            return Collections.unmodifiableList(dictionary);
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return codes[row] < 0;
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            return getString(row);
+        }
+
+        @Override
+        String getString(int row)
+        {
+            return isNull(row) ? null : dictionary.get(codes[row]);
+        }
+    }
+
+    static class ObjectColumn extends TableColumn
+    {
+        private final Converter<?> converter;
+        private Object[] values = new Object[0];
+
+        ObjectColumn(int slot, Field field, Converter<?> converter)
+        {
+            super(slot, field);
+            this.converter = converter;
+        }
+
+        @Override
+        ColumnType getType()
+        {
+            return ColumnType.OBJECT;
+        }
+
+        @Override
+        void append(int row, RawRow rawRow, CharSlice slice)
+        {
+            if (row == values.length)
+                values = Arrays.copyOf(values, grow(values.length));
+            values[row] = convert(converter, field, rawRow, slot, slice);
+        }
+
+        @Override
+        void trim(int rowCount)
+        {
+            values = Arrays.copyOf(values, rowCount);
+        }
+
+        @Override
+        boolean isNull(int row)
+        {
+            return values[row] == null;
+        }
+
+        @Override
+        Object getValue(int row)
+        {
+            return values[row];
+        }
+    }
+}
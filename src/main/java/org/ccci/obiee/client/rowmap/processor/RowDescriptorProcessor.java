@@ -0,0 +1,456 @@
+package org.ccci.obiee.client.rowmap.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import org.ccci.obiee.client.rowmap.RowDescriptor;
+import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.ReportPath;
+
+/**
+ * Generates a {@link RowDescriptor} for each {@link ReportPath}-annotated class, so that rows can be mapped
+ * without discovering the row type's columns by reflection, and without reflective field access.
+ * <p>
+ * The descriptor is generated in the row type's package, and calls the row type's constructor directly.  It
+ * accesses the row type's {@link Column} fields directly too, unless they are private or otherwise inaccessible
+ * from that package; such fields are accessed through method handles that the descriptor looks up once, when
+ * it is initialized.  So a descriptor is only generated if the row type is a top-level or static nested class
+ * that can be instantiated, if no {@link Column} field is final, and if each class declaring one is accessible
+ * from the row type's package.  Other row types are left to be mapped by reflection, as before.
+ * <p>
+ * This processor is registered as a service, so it runs whenever a class is compiled with this library on
+ * the classpath.  Pass {@code -proc:none} to javac to disable it.
+ */
+@SupportedAnnotationTypes("org.ccci.obiee.client.rowmap.annotation.ReportPath")
+public class RowDescriptorProcessor extends AbstractProcessor
+{
+
+    /** the primitive types that {@link RowDescriptor} has setters for */
+    private static final TypeKind[] PRIMITIVE_SETTERS = {TypeKind.INT, TypeKind.LONG, TypeKind.DOUBLE, TypeKind.BOOLEAN};
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        for (TypeElement rowType : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(ReportPath.class)))
+        {
+            List<VariableElement> columns = findColumns(rowType);
+            String problem = findProblem(rowType, columns);
+            if (problem != null)
+            {
+                processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.NOTE,
+                    "no row descriptor generated; " + problem + ".  This row type will be mapped by reflection",
+                    rowType);
+            }
+            else
+            {
+                writeDescriptor(rowType, columns);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the row type's columns, in the same order that the runtime walks them: its own fields first,
+     * followed by those of its superclasses.
+     */
+    private List<VariableElement> findColumns(TypeElement rowType)
+    {
+        List<VariableElement> columns = new ArrayList<>();
+        TypeElement clazz = rowType;
+        while (clazz != null && !clazz.getQualifiedName().contentEquals("java.lang.Object"))
+        {
+            for (VariableElement field : ElementFilter.fieldsIn(clazz.getEnclosedElements()))
+            {
+                if (field.getAnnotation(Column.class) != null)
+                {
+                    columns.add(field);
+                }
+            }
+            TypeMirror superclass = clazz.getSuperclass();
+            clazz = superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement) ((DeclaredType) superclass).asElement()
+                : null;
+        }
+        return columns;
+    }
+
+    /**
+     * @return why no descriptor can be generated for the given row type, or null if one can be
+     */
+    private String findProblem(TypeElement rowType, List<VariableElement> columns)
+    {
+        if (rowType.getKind() != ElementKind.CLASS)
+            return "it is not a class";
+        if (rowType.getModifiers().contains(Modifier.ABSTRACT))
+            return "it is abstract";
+        for (Element element = rowType; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement())
+        {
+            if (element.getModifiers().contains(Modifier.PRIVATE))
+                return element + " is private";
+            if (element.getKind() == ElementKind.CLASS && element.getEnclosingElement().getKind() != ElementKind.PACKAGE
+                    && !element.getModifiers().contains(Modifier.STATIC))
+                return element + " is not a static class";
+        }
+        if (!hasAccessibleNoArgConstructor(rowType))
+            return "it does not have a non-private no-arg constructor";
+
+        PackageElement rowPackage = processingEnv.getElementUtils().getPackageOf(rowType);
+        for (VariableElement field : columns)
+        {
+            if (field.getModifiers().contains(Modifier.FINAL))
+                return field.getEnclosingElement() + "." + field.getSimpleName() + " is final";
+            if (!isAccessibleFrom(field.getEnclosingElement(), rowPackage))
+                return field.getEnclosingElement() + " is not accessible from " + rowPackage;
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the given class, and each class enclosing it, can be named from the given package
+     */
+    private boolean isAccessibleFrom(Element clazz, PackageElement rowPackage)
+    {
+        boolean samePackage = processingEnv.getElementUtils().getPackageOf(clazz).equals(rowPackage);
+        for (Element element = clazz; element.getKind() != ElementKind.PACKAGE; element = element.getEnclosingElement())
+        {
+            Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || !samePackage && !modifiers.contains(Modifier.PUBLIC))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the given field can be read and written directly by a descriptor in the given package;
+     * if not, the descriptor uses method handles
+     */
+    private boolean isDirectlyAccessible(VariableElement field, PackageElement rowPackage)
+    {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE))
+            return false;
+        return modifiers.contains(Modifier.PUBLIC)
+            || processingEnv.getElementUtils().getPackageOf(field).equals(rowPackage);
+    }
+
+    private boolean hasAccessibleNoArgConstructor(TypeElement rowType)
+    {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(rowType.getEnclosedElements()))
+        {
+            if (constructor.getParameters().isEmpty())
+                return !constructor.getModifiers().contains(Modifier.PRIVATE);
+        }
+        return false;
+    }
+
+    private void writeDescriptor(TypeElement rowType, List<VariableElement> columns)
+    {
+        String rowTypeName = rowType.getQualifiedName().toString();
+        String descriptorName = RowDescriptor.descriptorClassName(
+            processingEnv.getElementUtils().getBinaryName(rowType).toString());
+        int packageEnd = descriptorName.lastIndexOf('.');
+        String simpleName = descriptorName.substring(packageEnd + 1);
+        PackageElement rowPackage = processingEnv.getElementUtils().getPackageOf(rowType);
+        boolean[] direct = new boolean[columns.size()];
+        boolean anyHandles = false;
+        for (int i = 0; i < columns.size(); i++)
+        {
+            direct[i] = isDirectlyAccessible(columns.get(i), rowPackage);
+            anyHandles |= !direct[i];
+        }
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(descriptorName, rowType).openWriter();
+             PrintWriter out = new PrintWriter(writer))
+        {
+            if (packageEnd > 0)
+            {
+                out.println("package " + descriptorName.substring(0, packageEnd) + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Generated by " + getClass().getName() + " from {@link " + rowTypeName + "}; do not edit.");
+            out.println(" */");
+            out.println("public final class " + simpleName);
+            out.println("    implements org.ccci.obiee.client.rowmap.RowDescriptor<" + rowTypeName + ">");
+            out.println("{");
+            out.println();
+            out.println("    private static final java.util.List<org.ccci.obiee.client.rowmap.ColumnDescriptor> COLUMNS =");
+            out.println("        java.util.Collections.unmodifiableList(java.util.Arrays.asList(");
+            for (int i = 0; i < columns.size(); i++)
+            {
+                VariableElement field = columns.get(i);
+                Column column = field.getAnnotation(Column.class);
+                out.println("            new org.ccci.obiee.client.rowmap.ColumnDescriptor(");
+                out.println("                " + literal(field.getSimpleName().toString()) + ",");
+                out.println("                " + erasure(field.getEnclosingElement().asType()) + ".class,");
+                out.println("                " + erasure(field.asType()) + ".class,");
+                out.println("                " + literal(column.tableHeading()) + ",");
+                out.println("                " + literal(column.columnHeading()) + ")" +
+                    (i < columns.size() - 1 ? "," : ""));
+            }
+            out.println("        ));");
+            if (anyHandles)
+            {
+                writeFieldHandles(out, columns, direct);
+            }
+            out.println();
+            out.println("    @Override");
+            out.println("    public Class<" + rowTypeName + "> getRowType()");
+            out.println("    {");
+            out.println("        return " + rowTypeName + ".class;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public java.util.List<org.ccci.obiee.client.rowmap.ColumnDescriptor> getColumns()");
+            out.println("    {");
+            out.println("        return COLUMNS;");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public " + rowTypeName + " newRow()");
+            out.println("    {");
+            out.println("        return new " + rowTypeName + "();");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    public Object getValue(" + rowTypeName + " row, int column)");
+            out.println("    {");
+            out.println("        switch (column)");
+            out.println("        {");
+            for (int i = 0; i < columns.size(); i++)
+            {
+                out.println("            case " + i + ":");
+                if (direct[i])
+                    out.println("                return " + fieldReference(columns.get(i)) + ";");
+                else
+                    writeHandleCall(out, "return (Object) GET_" + i + ".invokeExact((Object) row);");
+            }
+            out.println("            default:");
+            out.println("                throw new IndexOutOfBoundsException(\"no column \" + column);");
+            out.println("        }");
+            out.println("    }");
+            out.println();
+            out.println("    @Override");
+            out.println("    @SuppressWarnings(\"rawtypes\")");
+            out.println("    public void setValue(" + rowTypeName + " row, int column, Object value)");
+            out.println("    {");
+            out.println("        switch (column)");
+            out.println("        {");
+            for (int i = 0; i < columns.size(); i++)
+            {
+                VariableElement field = columns.get(i);
+                out.println("            case " + i + ":");
+                if (direct[i])
+                    out.println("                " + fieldReference(field) +
+                        " = (" + boxedErasure(field.asType()) + ") value;");
+                else
+                    writeHandleCall(out, "SET_" + i + ".invokeExact((Object) row, value);");
+                out.println("                return;");
+            }
+            out.println("            default:");
+            out.println("                throw new IndexOutOfBoundsException(\"no column \" + column);");
+            out.println("        }");
+            out.println("    }");
+            for (TypeKind primitive : PRIMITIVE_SETTERS)
+            {
+                writePrimitiveSetter(out, rowTypeName, columns, direct, primitive);
+            }
+            if (anyHandles)
+            {
+                out.println();
+                out.println("    private static RuntimeException propagate(Throwable e)");
+                out.println("    {");
+                out.println("        if (e instanceof RuntimeException)");
+                out.println("            return (RuntimeException) e;");
+                out.println("        if (e instanceof Error)");
+                out.println("            throw (Error) e;");
+                out.println("        return new java.lang.reflect.UndeclaredThrowableException(e);");
+                out.println("    }");
+            }
+            out.println("}");
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.ERROR,
+                "unable to write row descriptor " + descriptorName + ": " + e,
+                rowType);
+        }
+    }
+
+    /**
+     * Writes the method handles through which the descriptor reads and writes the fields it can't access
+     * directly: for column {@code i}, {@code GET_i} of type {@code (Object)Object}, {@code SET_i} of type
+     * {@code (Object, Object)void}, and, for a primitive column, {@code SET_i_UNBOXED} of type
+     * {@code (Object, P)void}.  They are held in static final fields, so calls through them can be inlined.
+     */
+    private void writeFieldHandles(PrintWriter out, List<VariableElement> columns, boolean[] direct)
+    {
+        out.println();
+        for (int i = 0; i < columns.size(); i++)
+        {
+            if (direct[i])
+                continue;
+            out.println("    private static final java.lang.invoke.MethodHandle GET_" + i + ";");
+            out.println("    private static final java.lang.invoke.MethodHandle SET_" + i + ";");
+            if (columns.get(i).asType().getKind().isPrimitive())
+                out.println("    private static final java.lang.invoke.MethodHandle SET_" + i + "_UNBOXED;");
+        }
+        out.println("    static");
+        out.println("    {");
+        out.println("        java.lang.invoke.MethodHandles.Lookup lookup = java.lang.invoke.MethodHandles.lookup();");
+        out.println("        java.lang.invoke.MethodType getterType =");
+        out.println("            java.lang.invoke.MethodType.methodType(Object.class, Object.class);");
+        out.println("        java.lang.invoke.MethodType setterType =");
+        out.println("            java.lang.invoke.MethodType.methodType(void.class, Object.class, Object.class);");
+        out.println("        try");
+        out.println("        {");
+        out.println("            java.lang.reflect.Field field;");
+        out.println("            java.lang.invoke.MethodHandle getter;");
+        out.println("            java.lang.invoke.MethodHandle setter;");
+        for (int i = 0; i < columns.size(); i++)
+        {
+            if (direct[i])
+                continue;
+            VariableElement field = columns.get(i);
+            out.println("            field = " + erasure(field.getEnclosingElement().asType()) + ".class.getDeclaredField(" +
+                literal(field.getSimpleName().toString()) + ");");
+            out.println("            field.setAccessible(true);");
+            out.println("            getter = lookup.unreflectGetter(field);");
+            out.println("            setter = lookup.unreflectSetter(field);");
+            if (field.getModifiers().contains(Modifier.STATIC))
+            {
+                out.println("            getter = java.lang.invoke.MethodHandles.dropArguments(getter, 0, Object.class);");
+                out.println("            setter = java.lang.invoke.MethodHandles.dropArguments(setter, 0, Object.class);");
+            }
+            out.println("            GET_" + i + " = getter.asType(getterType);");
+            out.println("            SET_" + i + " = setter.asType(setterType);");
+            if (field.asType().getKind().isPrimitive())
+                out.println("            SET_" + i + "_UNBOXED = setter.asType(java.lang.invoke.MethodType.methodType(" +
+                    "void.class, Object.class, " + field.asType() + ".class));");
+        }
+        out.println("        }");
+        out.println("        catch (ReflectiveOperationException | SecurityException e)");
+        out.println("        {");
+        out.println("            throw new ExceptionInInitializerError(e);");
+        out.println("        }");
+        out.println("    }");
+    }
+
+    /**
+     * Writes a statement that invokes a field handle, within a case of a switch
+     */
+    private void writeHandleCall(PrintWriter out, String statement)
+    {
+        out.println("                try");
+        out.println("                {");
+        out.println("                    " + statement);
+        out.println("                }");
+        out.println("                catch (Throwable e)");
+        out.println("                {");
+        out.println("                    throw propagate(e);");
+        out.println("                }");
+    }
+
+    /**
+     * Writes an override of e.g. {@code setInt()}, if the row type has columns of the given primitive type
+     */
+    private void writePrimitiveSetter(
+        PrintWriter out,
+        String rowTypeName,
+        List<VariableElement> columns,
+        boolean[] direct,
+        TypeKind primitive)
+    {
+        String typeName = primitive.name().toLowerCase(Locale.ROOT);
+        String methodName = "set" + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+        boolean first = true;
+        for (int i = 0; i < columns.size(); i++)
+        {
+            VariableElement field = columns.get(i);
+            if (field.asType().getKind() != primitive)
+                continue;
+            if (first)
+            {
+                out.println();
+                out.println("    @Override");
+                out.println("    public void " + methodName + "(" + rowTypeName + " row, int column, " + typeName + " value)");
+                out.println("    {");
+                out.println("        switch (column)");
+                out.println("        {");
+                first = false;
+            }
+            out.println("            case " + i + ":");
+            if (direct[i])
+                out.println("                " + fieldReference(field) + " = value;");
+            else
+                writeHandleCall(out, "SET_" + i + "_UNBOXED.invokeExact((Object) row, value);");
+            out.println("                return;");
+        }
+        if (!first)
+        {
+            out.println("            default:");
+            out.println("                org.ccci.obiee.client.rowmap.RowDescriptor.super." + methodName + "(row, column, value);");
+            out.println("        }");
+            out.println("    }");
+        }
+    }
+
+    private String fieldReference(VariableElement field)
+    {
+        String owner = field.getModifiers().contains(Modifier.STATIC)
+            ? erasure(field.getEnclosingElement().asType())
+            : "row";
+        return owner + "." + field.getSimpleName();
+    }
+    private String erasure(TypeMirror type)
+    {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String boxedErasure(TypeMirror type)
+    {
+        if (type.getKind().isPrimitive())
+        {
+            return processingEnv.getTypeUtils()
+                .boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+                .getQualifiedName()
+                .toString();
+        }
+        return erasure(type);
+    }
+
+    private String literal(String value)
+    {
+        return processingEnv.getElementUtils().getConstantExpression(value);
+    }
+}
@@ -21,4 +21,32 @@ public class AnalyticsManagerFactoryTest
         
         assertThat(newEndpointAddress, is("https://therealendpoint.example.com:80/services/TestEndpoint?TestIt"));
     }
+
+    @Test
+    public void testShutdownStopsSharedPools()
+    {
+        AnswersServiceFactory serviceFactory = new AnswersServiceFactory();
+        RowmapConfiguration config = new RowmapConfiguration();
+        config.setEndpointBaseUrl("https://therealendpoint.example.com:80");
+        config.setPipelineThreads(2);
+        config.setParallelMappingThreshold(100);
+        AnalyticsManagerFactoryImpl factory = new AnalyticsManagerFactoryImpl(serviceFactory, config, NoopTracerFactory.create());
+        assertThat(factory.isShutdown(), is(false));
+
+        factory.shutdown();
+
+        assertThat(factory.isShutdown(), is(true));
+    }
+
+    @Test
+    public void testMetadataCacheIsOptIn()
+    {
+        AnswersServiceFactory serviceFactory = new AnswersServiceFactory();
+        RowmapConfiguration config = new RowmapConfiguration();
+        config.setEndpointBaseUrl("https://therealendpoint.example.com:80");
+        assertThat(new AnalyticsManagerFactoryImpl(serviceFactory, config, NoopTracerFactory.create()).cachesMetadata(), is(false));
+
+        config.setMetadataCacheTtl(600);
+        assertThat(new AnalyticsManagerFactoryImpl(serviceFactory, config, NoopTracerFactory.create()).cachesMetadata(), is(true));
+    }
 }
@@ -1,9 +1,15 @@
 package org.ccci.obiee.client.rowmap.impl;
 
+import com.google.common.base.Ticker;
 import io.opentracing.noop.NoopTracerFactory;
+import oracle.bi.web.soap.XMLQueryExecutionOptions;
+import org.ccci.obiee.client.rowmap.ReportColumn;
 import org.ccci.obiee.client.rowmap.ReportDefinition;
+import org.ccci.obiee.client.rowmap.ResultTable;
+import org.ccci.obiee.client.rowmap.RowView;
 import org.ccci.obiee.client.rowmap.SortDirection;
 import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.ReportParamVariable;
 import org.ccci.obiee.client.rowmap.annotation.ReportPath;
 import org.ccci.obiee.client.rowmap.annotation.Scale;
 import org.testng.annotations.BeforeMethod;
@@ -20,13 +26,32 @@ import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class AnalyticsManagerTest
 {
@@ -93,6 +118,658 @@ public class AnalyticsManagerTest
         assertThat(output, containsString("<saw:columnOrder><saw:columnOrderRef columnID=\"c5\" direction=\"ascending\"/></saw:columnOrder>"));
     }
 
+    @Test
+    public void testSortPlanIsPreparedOncePerOrdering()
+    {
+        ReportTemplateCache templateCache = new ReportTemplateCache(10, TimeUnit.MINUTES);
+        AtomicInteger sorts = new AtomicInteger();
+        Function<List<String>, String> fetcher = markers -> StubXmlViewService.readResource("sample-xml-query.xml")
+            .replace("Transaction.&quot;Sub Type&quot;", "Transaction.&quot;Sub Type&quot; = " + markers.get(0));
+        List<String> names = Collections.singletonList("subType");
+
+        String xml = null;
+        for (String subType : Arrays.asList("Gift", "Pledge"))
+        {
+            xml = templateCache.getSortPlan(
+                "/shared/report",
+                names,
+                "c5 ASCENDING",
+                unsorted -> {
+                    sorts.incrementAndGet();
+                    return manager.prepareXml(unsorted, "c5", SortDirection.ASCENDING);
+                },
+                fetcher).apply(Collections.singletonList(subType));
+        }
+
+        assertThat(sorts.get(), is(1));
+        assertThat(xml, containsString("Transaction.\"Sub Type\" = Pledge"));
+        assertThat(xml, containsString(
+            "<saw:columnOrder><saw:columnOrderRef columnID=\"c5\" direction=\"ascending\"/></saw:columnOrder>"));
+    }
+
+    @Test
+    public void testGetResultList()
+    {
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).getResultList();
+
+        assertThat(rows.size(), is(5));
+        assertThat(rows.get(0).getDesignationNumber(), is("0378570"));
+        assertThat(rows.get(0).getAmount(), is(new BigDecimal("30.00")));
+        assertThat(rows.get(0).getTransactionDate(), is(LocalDate.of(2009, 1, 15)));
+    }
+
+    @Test
+    public void testGetResultListUsingDom()
+    {
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+        stubbedManager.setRowsetParser(RowsetParser.DOM);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).getResultList();
+
+        assertThat(rows.size(), is(5));
+        assertThat(rows.get(4).getTransactionDate(), is(LocalDate.of(2009, 6, 24)));
+    }
+
+    @Test
+    public void testStream()
+    {
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+
+        List<String> amounts;
+        try (Stream<TestRow> rows = stubbedManager.createQuery(TestRow.definition).stream())
+        {
+            amounts = rows.map(row -> row.getAmount().toString()).collect(Collectors.toList());
+        }
+
+        assertThat(amounts, contains("30.00", "30.00", "30.00", "37.00", "300.00"));
+    }
+
+    @Test
+    public void testClosingStreamEarlyCancelsQuery()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(false, readSimpleRowsetString());
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+
+        try (Stream<TestRow> rows = stubbedManager.createQuery(TestRow.definition).stream())
+        {
+            assertThat(rows.findFirst().isPresent(), is(true));
+            assertThat(xmlViewService.cancelledQueryIds, is(empty()));
+        }
+
+        assertThat(xmlViewService.cancelledQueryIds, contains("query-1"));
+    }
+
+    @Test
+    public void testForEach()
+    {
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+        List<TestRow> rows = new ArrayList<>();
+
+        stubbedManager.createQuery(TestRow.definition).forEach(rows::add);
+
+        assertThat(rows.size(), is(5));
+        assertThat(rows.get(3).getAmount(), is(new BigDecimal("37.00")));
+    }
+
+    @Test
+    public void testForEachReusingRow()
+    {
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+        List<TestRow> rows = new ArrayList<>();
+        List<LocalDate> dates = new ArrayList<>();
+
+        stubbedManager.createQuery(TestRow.definition).forEachReusingRow(row -> {
+            rows.add(row);
+            dates.add(row.getTransactionDate());
+        });
+
+        assertThat(rows.size(), is(5));
+        assertThat(rows.get(0), is(sameInstance(rows.get(4))));
+        assertThat(dates.get(0), is(LocalDate.of(2009, 1, 15)));
+        assertThat(dates.get(4), is(LocalDate.of(2009, 6, 24)));
+    }
+
+    @Test
+    public void testPagedResultList()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+        stubbedManager.setBackgroundExecutor(Executors.newSingleThreadExecutor());
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).getResultList();
+
+        assertThat(rows.size(), is(7));
+        assertThat(rows.get(6).getDesignationNumber(), is("0123456"));
+        assertThat(xmlViewService.executionOptions.get(0).getMaxRowsPerPage(), is(5));
+        assertThat(xmlViewService.executionOptions.get(0).isAsync(), is(true));
+        assertThat(xmlViewService.fetchNextCount, is(1));
+        assertThat(xmlViewService.cancelledQueryIds, is(empty()));
+    }
+
+    @Test
+    public void testPagedResultTable()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+
+        ResultTable<TestRow> table = stubbedManager.createQuery(TestRow.definition).getResultTable();
+
+        ReportColumn<TestRow> designation = TestRow.definition.getColumn("designationNumber");
+        ReportColumn<TestRow> amount = TestRow.definition.getColumn("amount");
+        assertThat(table.getRowCount(), is(7));
+        assertThat(table.getColumnType(designation), is(ResultTable.ColumnType.STRING));
+        assertThat(table.getStringDictionary(designation), contains("0378570", "0123456"));
+        assertThat(table.getStringCodes(designation)[6], is(1));
+        assertThat(table.getValue(amount, 3), is(new BigDecimal("37.00")));
+        assertThat(table.getValue(TestRow.definition.getColumn("transactionDate"), 6), is(LocalDate.of(2010, 2, 15)));
+    }
+
+    @Test
+    public void testLargeResultListIsHeldCompactly()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+        stubbedManager.setCompactResultThresholds(3, -1);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).getResultList();
+
+        assertThat(rows, is(instanceOf(CompactResultList.class)));
+        assertThat(rows.size(), is(7));
+        assertThat(rows.get(0).getDesignationNumber(), is("0378570"));
+        assertThat(rows.get(3).getAmount(), is(new BigDecimal("37.00")));
+        assertThat(rows.get(6).getDesignationNumber(), is("0123456"));
+        assertThat(rows.get(6).getTransactionDate(), is(LocalDate.of(2010, 2, 15)));
+    }
+
+    @Test
+    public void testSmallResultListIsNotHeldCompactly()
+    {
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+        stubbedManager.setCompactResultThresholds(100, 1024 * 1024);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).getResultList();
+
+        assertThat(rows, is(instanceOf(ArrayList.class)));
+        assertThat(rows.size(), is(5));
+    }
+
+    @Test
+    public void testPagedLazyResultList()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+
+        List<RowView<TestRow>> views = stubbedManager.createQuery(TestRow.definition).getLazyResultList();
+
+        assertThat(views.size(), is(7));
+        assertThat(TestRow.definition.getColumn("amount").getValue(views.get(3)), is(new BigDecimal("37.00")));
+        assertThat(views.get(6).toRow().getDesignationNumber(), is("0123456"));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testOffHeapResultTable()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+        stubbedManager.setOffHeapResultTables(true, 0);
+
+        ResultTable<TestRow> table = stubbedManager.createQuery(TestRow.definition).getResultTable();
+
+        ReportColumn<TestRow> designation = TestRow.definition.getColumn("designationNumber");
+        ReportColumn<TestRow> amount = TestRow.definition.getColumn("amount");
+        assertThat(table.getRowCount(), is(7));
+        assertThat(table.getString(designation, 0), is("0378570"));
+        assertThat(table.getString(designation, 6), is("0123456"));
+        assertThat(table.getValue(amount, 3), is(new BigDecimal("37.00")));
+        assertThat(table.getValue(TestRow.definition.getColumn("transactionDate"), 6), is(LocalDate.of(2010, 2, 15)));
+
+        table.close();
+        table.getString(designation, 0);
+    }
+
+    @Test
+    public void testOffHeapStorageSpillsPastThreshold()
+    {
+        try (OffHeapStorage storage = new OffHeapStorage(OffHeapStorage.SEGMENT_SIZE))
+        {
+            OffHeapStorage.Buffer buffer = storage.newBuffer();
+            long last = 3L * OffHeapStorage.SEGMENT_SIZE - Long.BYTES;
+            buffer.ensureCapacity(OffHeapStorage.SEGMENT_SIZE);
+            assertThat(storage.hasSpilled(), is(false));
+            buffer.ensureCapacity(last + Long.BYTES);
+            assertThat(storage.hasSpilled(), is(true));
+            buffer.putLong(0, 42L);
+            buffer.putLong(last, -7L);
+            buffer.putDouble(OffHeapStorage.SEGMENT_SIZE, 1.5);
+            assertThat(buffer.getLong(0), is(42L));
+            assertThat(buffer.getLong(last), is(-7L));
+            assertThat(buffer.getDouble(OffHeapStorage.SEGMENT_SIZE), is(1.5));
+        }
+    }
+
+    @Test
+    public void testResultTableColumnTypes()
+    {
+        assertThat(ResultTableBuilder.columnType(Integer.class, "varchar"), is(ResultTable.ColumnType.INT));
+        assertThat(ResultTableBuilder.columnType(long.class, null), is(ResultTable.ColumnType.LONG));
+        assertThat(ResultTableBuilder.columnType(BigDecimal.class, "double"), is(ResultTable.ColumnType.DOUBLE));
+        assertThat(ResultTableBuilder.columnType(BigDecimal.class, "INTEGER"), is(ResultTable.ColumnType.LONG));
+        assertThat(ResultTableBuilder.columnType(BigDecimal.class, "numeric"), is(ResultTable.ColumnType.OBJECT));
+        assertThat(ResultTableBuilder.columnType(LocalDate.class, "timestamp"), is(ResultTable.ColumnType.OBJECT));
+    }
+
+    @Test
+    public void testPipelinedResultListKeepsRowsetOrder()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+        stubbedManager.setPipelineExecutor(Executors.newFixedThreadPool(4));
+
+        List<String> amounts = stubbedManager.createQuery(TestRow.definition).getResultList().stream()
+            .map(row -> row.getAmount().toString())
+            .collect(Collectors.toList());
+
+        assertThat(amounts.size(), is(7));
+        assertThat(amounts.subList(0, 5), contains("30.00", "30.00", "30.00", "37.00", "300.00"));
+    }
+
+    @Test
+    public void testParallelMappedResultListKeepsRowsetOrder()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+        stubbedManager.setParallelMapping(new ForkJoinPool(4), 3);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).setMaxResults(6).getResultList();
+
+        assertThat(rows.size(), is(6));
+        assertThat(rows.get(3).getAmount(), is(new BigDecimal("37.00")));
+        assertThat(rows.get(5).getDesignationNumber(), is("0123456"));
+        assertThat(xmlViewService.cancelledQueryIds, is(empty()));
+    }
+
+    @Test
+    public void testPagedResultListStopsAtMaxResults()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString(), SECOND_PAGE, SECOND_PAGE);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setPageSize(5);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).setMaxResults(6).getResultList();
+
+        assertThat(rows.size(), is(6));
+        assertThat(xmlViewService.fetchNextCount, is(1));
+        assertThat(xmlViewService.cancelledQueryIds, contains("query-1"));
+    }
+
+    @Test
+    public void testClientSortLeavesQueriesWithMaxResultsToAnswers()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, StubXmlViewService.readResource("sorted-rowset.xml"));
+        StubReportEditingService reportEditingService =
+            new StubReportEditingService(StubXmlViewService.readResource("sample-xml-query.xml"));
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService, reportEditingService);
+        stubbedManager.setSortStrategy(SortStrategy.CLIENT, 0);
+        // even a result known to be small is sorted by Answers, so that only the first rows are fetched
+        ReportStatistics reportStatistics = new ReportStatistics();
+        reportStatistics.recordResult("/not/real", "", 5, -1);
+        stubbedManager.setReportStatistics(reportStatistics);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition)
+            .orderBy(TestRow.definition.getColumn("amount"), SortDirection.ASCENDING)
+            .setMaxResults(3)
+            .getResultList();
+
+        assertThat(reportEditingService.appliedParams.size(), is(1));
+        assertThat(xmlViewService.reportXmls.size(), is(1));
+        XMLQueryExecutionOptions dataQueryOptions =
+            xmlViewService.executionOptions.get(xmlViewService.executionOptions.size() - 1);
+        assertThat(dataQueryOptions.getMaxRowsPerPage(), is(3));
+        assertThat(rows.size(), is(3));
+    }
+
+    @Test
+    public void testAdaptiveSortUsesRowCountOfEarlierResults()
+    {
+        ReportStatistics reportStatistics = new ReportStatistics();
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, readSimpleRowsetString());
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService);
+        stubbedManager.setReportStatistics(reportStatistics);
+        stubbedManager.setSortStrategy(SortStrategy.ADAPTIVE, 5);
+
+        stubbedManager.createQuery(TestRow.definition).setMaxResults(5).getResultList();
+        assertThat(reportStatistics.getRowCount("/not/real", ""), is(-1));
+        stubbedManager.createQuery(TestRow.definition).getResultList();
+        assertThat(reportStatistics.getRowCount("/not/real", ""), is(5));
+
+        // a server-side sort would need the report editing service, which this manager lacks
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition)
+            .orderBy(TestRow.definition.getColumn("amount"), SortDirection.DESCENDING)
+            .getResultList();
+
+        assertThat(rows.size(), is(5));
+        assertThat(rows.get(0).getAmount(), is(new BigDecimal("300.00")));
+        assertThat(rows.get(1).getAmount(), is(new BigDecimal("37.00")));
+        assertThat(rows.get(4).getAmount(), is(new BigDecimal("30.00")));
+    }
+
+    @Test
+    public void testAdaptiveSortIgnoresRowCountOfOtherSelections()
+    {
+        ReportStatistics reportStatistics = new ReportStatistics();
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, StubXmlViewService.readResource("sorted-rowset.xml"));
+        StubReportEditingService reportEditingService =
+            new StubReportEditingService(StubXmlViewService.readResource("sample-xml-query.xml"));
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService, reportEditingService);
+        stubbedManager.setReportStatistics(reportStatistics);
+        stubbedManager.setSortStrategy(SortStrategy.ADAPTIVE, 5);
+
+        stubbedManager.createQuery(TestRow.definition)
+            .withSelection(new TestSelection("0378570", null))
+            .getResultList();
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition)
+            .orderBy(TestRow.definition.getColumn("amount"), SortDirection.DESCENDING)
+            .getResultList();
+
+        // the unfiltered query's size is unknown, so Answers sorts it
+        assertThat(reportEditingService.appliedParams.size(), is(1));
+        assertThat(xmlViewService.reportXmls.size(), is(1));
+        assertThat(rows.size(), is(5));
+        assertThat(reportStatistics.getRowCount("/not/real", ""), is(5));
+    }
+
+    @Test
+    public void testClientSortedResultIsNotHeldCompactly()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, StubXmlViewService.readResource("sorted-rowset.xml"));
+        StubReportEditingService reportEditingService =
+            new StubReportEditingService(StubXmlViewService.readResource("sample-xml-query.xml"));
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService, reportEditingService);
+        stubbedManager.setSortStrategy(SortStrategy.CLIENT, 0);
+        stubbedManager.setCompactResultThresholds(2, -1);
+
+        List<TestRow> rows = stubbedManager.createQuery(TestRow.definition)
+            .orderBy(TestRow.definition.getColumn("amount"), SortDirection.ASCENDING)
+            .getResultList();
+
+        // the rows were fetched once, unsorted, and held as objects so that they could be sorted
+        assertThat(rows, is(not(instanceOf(CompactResultList.class))));
+        assertThat(reportEditingService.appliedParams.size(), is(0));
+        assertThat(xmlViewService.executionOptions.size(), is(1));
+        assertThat(rows.size(), is(5));
+        assertThat(rows.get(0).getAmount(), is(new BigDecimal("30.00")));
+        assertThat(rows.get(4).getAmount(), is(new BigDecimal("300.00")));
+    }
+
+    @Test
+    public void testRowBuilderIsCompiledOncePerSchema()
+    {
+        RowBuilderCache rowBuilderCache = new RowBuilderCache();
+        for (int i = 0; i < 2; i++)
+        {
+            AnalyticsManagerImpl stubbedManager = createStubbedManager(true);
+            stubbedManager.setRowBuilderCache(rowBuilderCache);
+
+            List<TestRow> rows = stubbedManager.createQuery(TestRow.definition).getResultList();
+
+            assertThat(rows.size(), is(5));
+        }
+        assertThat(rowBuilderCache.size(), is(1L));
+    }
+
+    @Test
+    public void testMetadataSchemaIsCachedUntilItExpires()
+    {
+        AtomicLong now = new AtomicLong();
+        Ticker ticker = new Ticker()
+        {
+            @Override
+            public long read()
+            {
+                return now.get();
+            }
+        };
+        MetadataCache metadataCache = new MetadataCache(10, TimeUnit.MINUTES, ticker);
+        RowsetSchema schema = new RowsetSchema(Collections.emptyList());
+        AtomicInteger fetches = new AtomicInteger();
+        Supplier<RowsetSchema> fetcher = () -> {
+            fetches.incrementAndGet();
+            return schema;
+        };
+
+        assertThat(metadataCache.getSchema("/shared/report", fetcher), is(sameInstance(schema)));
+        assertThat(metadataCache.getSchema("/shared/report", fetcher), is(sameInstance(schema)));
+        assertThat(fetches.get(), is(1));
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        metadataCache.getSchema("/shared/report", fetcher);
+        assertThat(fetches.get(), is(2));
+
+        metadataCache.invalidate("/shared/report");
+        metadataCache.getSchema("/shared/report", fetcher);
+        assertThat(fetches.get(), is(3));
+
+        assertThat(metadataCache.getSchema("/shared/empty-report", () -> null), is(nullValue()));
+        assertThat(metadataCache.size(), is(1L));
+    }
+
+    @Test
+    public void testSortedQueryFollowsChangedReportColumns()
+    {
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, StubXmlViewService.readResource("sorted-rowset.xml"));
+        StubReportEditingService reportEditingService =
+            new StubReportEditingService(StubXmlViewService.readResource("sample-xml-query.xml"));
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService, reportEditingService);
+        MetadataCache metadataCache = new MetadataCache(10, TimeUnit.MINUTES);
+        ReportColumn<TestRow> amount = TestRow.definition.getColumn("amount");
+
+        for (MetadataCache cache : Arrays.asList(null, metadataCache))
+        {
+            stubbedManager.setMetadataCache(cache);
+            xmlViewService.setPages(StubXmlViewService.readResource("sorted-rowset.xml"));
+            stubbedManager.createQuery(TestRow.definition).orderBy(amount, SortDirection.ASCENDING).getResultList();
+            if (cache != null)
+                cache.invalidate("/not/real");
+
+            xmlViewService.setPages(REORDERED_ROWSET);
+            List<TestRow> rows = stubbedManager.createQuery(TestRow.definition)
+                .orderBy(amount, SortDirection.ASCENDING)
+                .getResultList();
+
+            assertThat(rows.size(), is(1));
+            assertThat(rows.get(0).getDesignationNumber(), is("0378570"));
+            assertThat(rows.get(0).getAmount(), is(new BigDecimal("30.00")));
+        }
+    }
+
+    @Test
+    public void testReportTemplateAppliesParamsLocally()
+    {
+        ReportTemplateCache templateCache = new ReportTemplateCache(10, TimeUnit.MINUTES);
+        AtomicInteger fetches = new AtomicInteger();
+        Function<List<String>, String> fetcher = markers -> {
+            fetches.incrementAndGet();
+            return "<saw:report><saw:expr>\"T\".\"Date\" &gt;= " + markers.get(1) +
+                " and \"T\".\"Name\" = " + markers.get(0) + "</saw:expr>" +
+                "<saw:note><![CDATA[" + markers.get(0) + "]]></saw:note></saw:report>";
+        };
+        List<String> names = Arrays.asList("name", "since");
+        assertThat(templateCache.containsTemplate("/shared/report", names), is(false));
+
+        String xml = templateCache.getTemplate("/shared/report", names, fetcher)
+            .apply(Arrays.asList("A-B", "2010-01-01"));
+        String secondXml = templateCache.getTemplate("/shared/report", names, fetcher)
+            .apply(Arrays.asList("C", "2011-01-01"));
+
+        assertThat(xml, is("<saw:report><saw:expr>\"T\".\"Date\" &gt;= 2010-01-01 and " +
+            "\"T\".\"Name\" = A-B</saw:expr><saw:note><![CDATA[A-B]]></saw:note></saw:report>"));
+        assertThat(secondXml, containsString("&gt;= 2011-01-01"));
+        assertThat(fetches.get(), is(1));
+        assertThat(templateCache.containsTemplate("/shared/report", names), is(true));
+
+        String nameOnlyXml = templateCache.getTemplate(
+            "/shared/report",
+            Collections.singletonList("name"),
+            markers -> "<saw:expr>" + markers.get(0) + "</saw:expr>").apply(Collections.singletonList("C"));
+        assertThat(nameOnlyXml, is("<saw:expr>C</saw:expr>"));
+
+        // a report that reformats a value can't be reproduced locally
+        Function<List<String>, String> reformattingFetcher =
+            markers -> "<saw:expr>" + markers.get(0).toUpperCase() + "</saw:expr>";
+        assertThat(templateCache.getTemplate("/shared/other-report", names, reformattingFetcher).substitutesAll(), is(false));
+        assertThat(templateCache.containsTemplate("/shared/other-report", names), is(false));
+        assertThat(
+            templateCache.getSortPlan("/shared/other-report", names, "c0 ASCENDING", unsorted -> unsorted, reformattingFetcher),
+            is(nullValue()));
+        templateCache.invalidate("/shared/other-report");
+        templateCache.invalidate("/shared/report");
+        assertThat(templateCache.size(), is(0L));
+    }
+
+    @Test
+    public void testReportTemplateOnlyAppliesStringParamsLocally()
+    {
+        String rowset = StubXmlViewService.readResource("sorted-rowset.xml");
+        String report = StubXmlViewService.readResource("sample-xml-query.xml");
+        ReportColumn<TestRow> amount = TestRow.definition.getColumn("amount");
+
+        StubXmlViewService uncachedXmlViewService = new StubXmlViewService(true, rowset);
+        AnalyticsManagerImpl uncachedManager = createStubbedManager(
+            uncachedXmlViewService,
+            new StubReportEditingService(report));
+        uncachedManager.createQuery(TestRow.definition)
+            .withSelection(new TestSelection("0999999", null))
+            .orderBy(amount, SortDirection.ASCENDING)
+            .getResultList();
+
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, rowset);
+        StubReportEditingService reportEditingService = new StubReportEditingService(report);
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService, reportEditingService);
+        stubbedManager.setReportTemplateCache(new ReportTemplateCache(10, TimeUnit.MINUTES));
+        for (String designationNumber : Arrays.asList("0378570", "0999999"))
+        {
+            List<TestRow> rows = stubbedManager.createQuery(TestRow.definition)
+                .withSelection(new TestSelection(designationNumber, null))
+                .orderBy(amount, SortDirection.ASCENDING)
+                .getResultList();
+            assertThat(rows.size(), is(5));
+        }
+
+        // only the template was fetched, and the null param was left unset, as Answers would leave it
+        assertThat(reportEditingService.appliedParams.size(), is(1));
+        assertThat(xmlViewService.reportXmls.get(1), is(uncachedXmlViewService.reportXmls.get(0)));
+        assertThat(xmlViewService.reportXmls.get(1), containsString(">0999999</sawx:expr>"));
+
+        stubbedManager.createQuery(TestRow.definition)
+            .withSelection(new TestSelection("0999999", LocalDateTime.of(2010, 1, 1, 12, 0)))
+            .orderBy(amount, SortDirection.ASCENDING)
+            .getResultList();
+
+        // a date is formatted by Answers, so its params are applied by Answers
+        assertThat(reportEditingService.appliedParams.size(), is(2));
+        assertThat(reportEditingService.appliedParams.get(1).getVariables().get(1).getValue(), instanceOf(Date.class));
+        assertThat(xmlViewService.reportXmls.get(2), containsString("timestamp '2010-01-01 12:00:00'"));
+    }
+
+    @Test
+    public void testReportTemplateOnlyAppliesParamsThatNeedNoEscaping()
+    {
+        List<String> unsafeValues = Arrays.asList("0378\"570", "0378'570", "0378]]>570", "0378&570", "0378\u00e9570");
+        for (String value : unsafeValues)
+        {
+            assertThat(value, ReportTemplateCache.canApply(value), is(false));
+        }
+        assertThat(ReportTemplateCache.canApply("0378 570-A"), is(true));
+
+        StubXmlViewService xmlViewService = new StubXmlViewService(true, StubXmlViewService.readResource("sorted-rowset.xml"));
+        StubReportEditingService reportEditingService =
+            new StubReportEditingService(StubXmlViewService.readResource("sample-xml-query.xml"));
+        AnalyticsManagerImpl stubbedManager = createStubbedManager(xmlViewService, reportEditingService);
+        stubbedManager.setReportTemplateCache(new ReportTemplateCache(10, TimeUnit.MINUTES));
+        ReportColumn<TestRow> amount = TestRow.definition.getColumn("amount");
+        stubbedManager.createQuery(TestRow.definition)
+            .withSelection(new TestSelection("0378570", null))
+            .orderBy(amount, SortDirection.ASCENDING)
+            .getResultList();
+
+        for (String value : unsafeValues)
+        {
+            stubbedManager.createQuery(TestRow.definition)
+                .withSelection(new TestSelection(value, null))
+                .orderBy(amount, SortDirection.ASCENDING)
+                .getResultList();
+        }
+
+        // the template was fetched once; every value that needs escaping was applied by Answers
+        assertThat(reportEditingService.appliedParams.size(), is(1 + unsafeValues.size()));
+        for (int i = 0; i < unsafeValues.size(); i++)
+        {
+            assertThat(reportEditingService.appliedParams.get(i + 1).getVariables().get(0).getValue(),
+                is((Object) unsafeValues.get(i)));
+        }
+    }
+
+    /** the report of sorted-rowset.xml, after its amount and designation columns were swapped in Answers */
+    private static final String REORDERED_ROWSET =
+        "<rowset xmlns=\"urn:schemas-microsoft-com:xml-analysis:rowset\">" +
+        "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" xmlns:saw-sql=\"urn:saw-sql\" " +
+        "targetNamespace=\"urn:schemas-microsoft-com:xml-analysis:rowset\">" +
+        "<xsd:complexType name=\"Row\"><xsd:sequence>" +
+        "<xsd:element name=\"Column0\" saw-sql:columnID=\"c7\" saw-sql:tableHeading=\"Transaction Item\" " +
+        "saw-sql:columnHeading=\"Amount\" />" +
+        "<xsd:element name=\"Column1\" saw-sql:columnID=\"c5\" saw-sql:tableHeading=\"Transaction Date\" " +
+        "saw-sql:columnHeading=\"Transaction Date\" />" +
+        "<xsd:element name=\"Column2\" saw-sql:columnID=\"c0\" saw-sql:tableHeading=\"Designation\" " +
+        "saw-sql:columnHeading=\"Designation Number\" />" +
+        "<xsd:element name=\"Column3\" saw-sql:columnID=\"c9\" saw-sql:tableHeading=\"Fact - Transaction Items\" " +
+        "saw-sql:columnHeading=\"# Transaction Items\" />" +
+        "</xsd:sequence></xsd:complexType></xsd:schema>" +
+        "<Row><Column0>30.0</Column0><Column1>2009-01-15T00:00:00</Column1><Column2>0378570</Column2><Column3>1</Column3></Row>" +
+        "</rowset>";
+
+    private static final String SECOND_PAGE =
+        "<rowset xmlns=\"urn:schemas-microsoft-com:xml-analysis:rowset\">" +
+        "<Row><Column0>0123456</Column0><Column1>2010-01-15T00:00:00</Column1><Column2>5.0</Column2><Column3>1</Column3></Row>" +
+        "<Row><Column0>0123456</Column0><Column1>2010-02-15T00:00:00</Column1><Column2>5.0</Column2><Column3>1</Column3></Row>" +
+        "</rowset>";
+
+    private AnalyticsManagerImpl createStubbedManager(boolean finished)
+    {
+        return createStubbedManager(new StubXmlViewService(finished, readSimpleRowsetString()));
+    }
+
+    private AnalyticsManagerImpl createStubbedManager(StubXmlViewService xmlViewService)
+    {
+        return createStubbedManager(xmlViewService, null);
+    }
+
+    private AnalyticsManagerImpl createStubbedManager(
+        StubXmlViewService xmlViewService,
+        StubReportEditingService reportEditingService)
+    {
+        return new AnalyticsManagerImpl(
+            "session-1",
+            null,
+            xmlViewService,
+            reportEditingService,
+            ConverterStore.buildDefault(),
+            NoopTracerFactory.create());
+    }
+
+    private String readSimpleRowsetString()
+    {
+        return StubXmlViewService.readResource("simple-rowset.xml");
+    }
+
     private Document readSimpleRowset() throws ParserConfigurationException, SAXException, IOException
     {
         return parse("simple-rowset.xml");
@@ -123,6 +800,21 @@ public class AnalyticsManagerTest
         assertThat(xmlDate, is(equalTo("date '2018-02-12'")));
     }
 
+    public static class TestSelection
+    {
+        @ReportParamVariable
+        private final String designationNumber;
+
+        @ReportParamVariable
+        private final LocalDateTime donationRangeBegin;
+
+        TestSelection(String designationNumber, LocalDateTime donationRangeBegin)
+        {
+            this.designationNumber = designationNumber;
+            this.donationRangeBegin = donationRangeBegin;
+        }
+    }
+
     @ReportPath("/not/real")
     public static class TestRow
     {
@@ -1,14 +1,23 @@
 package org.ccci.obiee.client.rowmap.impl;
 
+import org.ccci.obiee.client.rowmap.CharSequenceConverter;
 import org.ccci.obiee.client.rowmap.Converter;
+import org.ccci.obiee.client.rowmap.ReportDefinition;
+import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.ObiFieldValue;
+import org.ccci.obiee.client.rowmap.annotation.ReportPath;
 import org.testng.annotations.Test;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class ConverterStoreTest
 {
@@ -35,4 +44,93 @@ public class ConverterStoreTest
         final LocalDateTime localDateTime = converter.convert("2019-02-12T01:02:03", null);
         assertThat(localDateTime, is(equalTo(LocalDateTime.of(2019, 2, 12, 1, 2, 3))));
     }
+
+    @Test
+    void testCopyAndAddWithoutAdditionalConvertersReturnsSameStore() {
+        assertThat(store.copyAndAdd(ConverterStore.builder().build()), is(sameInstance(store)));
+    }
+
+    @Test
+    void testCopyAndAddOverridesConverters() {
+        Converter<String> upperCase = (xmlValue, field) -> xmlValue.toUpperCase();
+        ConverterStore copy = store.copyAndAdd(ConverterStore.builder().addConverter(String.class, upperCase).build());
+
+        assertThat(copy.getConverter(String.class).convert("banana", null), is(equalTo("BANANA")));
+        assertThat(store.getConverter(String.class).convert("banana", null), is(equalTo("banana")));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void testDeprecatedMutableStoreStillWorks() {
+        ConverterStore mutableStore = new ConverterStore();
+        mutableStore.addConverter(String.class, (xmlValue, field) -> xmlValue.toUpperCase());
+
+        assertThat(mutableStore.getConverter(String.class).convert("banana", null), is(equalTo("BANANA")));
+        assertThat(store.copyAndAdd(mutableStore).getConverter(String.class).convert("banana", null), is(equalTo("BANANA")));
+    }
+
+    @Test
+    void testReportDefinitionKeepsMergedStore() {
+        ReportDefinition<GradedFruit> definition = new ReportDefinition<>(GradedFruit.class);
+        ConverterStore merged = definition.getConverterStore(store);
+
+        assertThat(merged.getConverter(Grade.class), is(notNullValue()));
+        assertThat(definition.getConverterStore(store), is(sameInstance(merged)));
+
+        ConverterStore otherStore = ConverterStore.builder().build();
+        assertThat(definition.getConverterStore(otherStore), is(not(sameInstance(merged))));
+        assertThat(definition.getConverterStore(otherStore).getConverter(Grade.class), is(notNullValue()));
+    }
+
+    @Test
+    void testLocalDateConverterWithFractionalSeconds() {
+        final Converter<LocalDate> converter = store.getConverter(LocalDate.class);
+        final LocalDate localDate = converter.convert("2019-02-12T01:02:03.5", null);
+        assertThat(localDate, is(equalTo(LocalDate.of(2019, 2, 12))));
+    }
+
+    @Test
+    void testColumnCachingConverterReturnsSharedInstances() {
+        Converter<LocalDate> converter = ((ColumnCachingConverter<LocalDate>) store.getConverter(LocalDate.class)).forColumn();
+        final LocalDate first = converter.convert("2019-02-12T00:00:00", null);
+        converter.convert("2019-02-13T00:00:00", null);
+        final LocalDate second = converter.convert("2019-02-12T00:00:00", null);
+        assertThat(second, is(sameInstance(first)));
+    }
+
+    @Test
+    void testNumericConvertersReadCharSequences() {
+        char[] text = "x-1234567890123 0.1 12.50x".toCharArray();
+        CharSlice slice = new CharSlice();
+        CharSequenceConverter<Long> longConverter = (CharSequenceConverter<Long>) store.getConverter(Long.class);
+        CharSequenceConverter<Double> doubleConverter = (CharSequenceConverter<Double>) store.getConverter(Double.class);
+        assertThat(longConverter.convert(slice.set(text, 1, 15), null), is(-1234567890123L));
+        assertThat(doubleConverter.convert(slice.set(text, 16, 19), null), is(0.1));
+        assertThat(CharSequences.parseBigDecimal(slice.set(text, 20, 25)), is(new BigDecimal("12.50")));
+        assertThat(CharSequences.parseLong(String.valueOf(Long.MIN_VALUE)), is(Long.MIN_VALUE));
+        assertThat(CharSequences.parseDouble("1e-3"), is(0.001));
+    }
+
+    @Test(expectedExceptions = NumberFormatException.class)
+    void testIntConverterRejectsOverflow() {
+        CharSequences.parseInt("2147483648");
+    }
+
+    enum Grade {
+        GOOD("G"), BAD("B");
+
+        @ObiFieldValue
+        private final String code;
+
+        Grade(String code) {
+            this.code = code;
+        }
+    }
+
+    @ReportPath("/does/not/exist")
+    public static class GradedFruit {
+
+        @Column(tableHeading = "Fruit")
+        Grade grade;
+    }
 }
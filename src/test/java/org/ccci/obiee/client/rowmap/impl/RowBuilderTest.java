@@ -2,7 +2,10 @@ package org.ccci.obiee.client.rowmap.impl;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -12,7 +15,12 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathExpressionException;
 
+import org.ccci.obiee.client.rowmap.DataRetrievalException;
+import org.ccci.obiee.client.rowmap.ReportColumn;
+import org.ccci.obiee.client.rowmap.ReportDefinition;
+import org.ccci.obiee.client.rowmap.RowView;
 import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.LowCardinality;
 import org.ccci.obiee.client.rowmap.annotation.ReportPath;
 import org.testng.annotations.Test;
 import org.w3c.dom.Document;
@@ -35,7 +43,8 @@ public class RowBuilderTest
             new ReportColumnId("Fruit", "Name"), 
             "Column0");
         
-        fruitBuilder = new RowBuilder<>(columnToNodeNameMapping, Fruit.class, ConverterStore.buildDefault());
+        // Fruit has a generated descriptor, but is mapped by reflection here, so that path stays covered
+        fruitBuilder = new RowBuilder<>(columnToNodeNameMapping, Fruit.class, ConverterStore.buildDefault(), null);
         
         Node row = buildBananaRow();
 
@@ -45,6 +54,130 @@ public class RowBuilderTest
         assertThat(builtFruit.name, is("Banana"));
     }
 
+    @Test
+    public void testRowBuilderWithPrimitiveField()
+    {
+        Map<ReportColumnId, String> columnToNodeNameMapping = new HashMap<>();
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Name"), "Column0");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Count"), "Column1");
+
+        RowBuilder<FruitCount> builder =
+            new RowBuilder<>(columnToNodeNameMapping, FruitCount.class, ConverterStore.buildDefault());
+
+        FruitCount fruitCount = builder.buildRowInstance(RawRow.of("Banana", "12"));
+
+        assertThat(fruitCount.name, is("Banana"));
+        assertThat(fruitCount.count, is(12));
+    }
+
+    @Test
+    public void testRowBuilderWithPrimitiveFieldsWrittenByReflection()
+    {
+        Map<ReportColumnId, String> columnToNodeNameMapping = new HashMap<>();
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Weight"), "Column0");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Price"), "Column1");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Ripe"), "Column2");
+
+        RowBuilder<FruitMeasurement> builder =
+            new RowBuilder<>(columnToNodeNameMapping, FruitMeasurement.class, ConverterStore.buildDefault(), null);
+
+        FruitMeasurement measurement = builder.buildRowInstance(RawRow.of("120", "0.25", "1"));
+
+        assertThat(measurement.weight, is(120L));
+        assertThat(measurement.price, is(0.25));
+        assertThat(measurement.ripe, is(true));
+    }
+
+    @Test
+    public void testRowBuilderWithPrivatePrimitiveFieldsWrittenByDescriptor()
+    {
+        Map<ReportColumnId, String> columnToNodeNameMapping = new HashMap<>();
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Weight"), "Column0");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Price"), "Column1");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Ripe"), "Column2");
+
+        RowBuilder<FruitMeasurement> builder =
+            new RowBuilder<>(columnToNodeNameMapping, FruitMeasurement.class, ConverterStore.buildDefault());
+
+        FruitMeasurement measurement = builder.buildRowInstance(RawRow.of("120", "0.25", "1"));
+
+        assertThat(RowDescriptors.forRowType(FruitMeasurement.class), is(notNullValue()));
+        assertThat(measurement.weight, is(120L));
+        assertThat(measurement.price, is(0.25));
+        assertThat(measurement.ripe, is(true));
+    }
+
+    @Test
+    public void testObjectConverterForPrimitiveTypeStillApplies()
+    {
+        Map<ReportColumnId, String> columnToNodeNameMapping = new HashMap<>();
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Name"), "Column0");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Count"), "Column1");
+        ConverterStore converterStore = ConverterStore.buildDefault().copyAndAdd(ConverterStore.builder()
+            .addConverter(int.class, (xmlValue, field) -> xmlValue.length())
+            .build());
+
+        RowBuilder<FruitCount> builder = new RowBuilder<>(columnToNodeNameMapping, FruitCount.class, converterStore);
+
+        assertThat(builder.buildRowInstance(RawRow.of("Banana", "twelve")).count, is(6));
+    }
+
+    @Test
+    public void testRepeatedStringsShareAnInstanceWithinAQuery()
+    {
+        Map<ReportColumnId, String> columnToNodeNameMapping = new HashMap<>();
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Name"), "Column0");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Color"), "Column1");
+        RowBuilder<FruitColor> builder =
+            new RowBuilder<>(columnToNodeNameMapping, FruitColor.class, ConverterStore.buildDefault());
+
+        RowBuilder<FruitColor> query = builder.forQuery(1);
+        FruitColor banana = query.buildRowInstance(RawRow.of("Banana", "Yellow"));
+        FruitColor lemon = query.buildRowInstance(RawRow.of("Lemon", "Yellow"));
+        FruitColor plantain = query.buildRowInstance(RawRow.of("Banana", "Yellow"));
+
+        assertThat(lemon.color, is(sameInstance(banana.color)));
+        // the name column has shown more than one distinct value, so has stopped sharing
+        assertThat(plantain.name, is(not(sameInstance(banana.name))));
+        assertThat(builder.forQuery(1).buildRowInstance(RawRow.of("Banana", "Yellow")).color,
+            is(not(sameInstance(banana.color))));
+        assertThat(builder.buildRowInstance(RawRow.of("Banana", "Yellow")).color, is("Yellow"));
+    }
+
+    @Test(expectedExceptions = DataRetrievalException.class)
+    public void testLazyRowViewConvertsOnlyTheColumnsRead()
+    {
+        Map<ReportColumnId, String> columnToNodeNameMapping = new HashMap<>();
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Name"), "Column0");
+        columnToNodeNameMapping.put(new ReportColumnId("Fruit", "Count"), "Column1");
+        RowBuilder<FruitCount> builder =
+            new RowBuilder<>(columnToNodeNameMapping, FruitCount.class, ConverterStore.buildDefault());
+        ReportDefinition<FruitCount> definition = new ReportDefinition<>(FruitCount.class);
+        ReportColumn<FruitCount> name = definition.getColumn("name");
+
+        RowView<FruitCount> view = new LazyRowView<>(builder, RawRow.of("Banana", "twelve"));
+
+        assertThat(name.getValue(view), is("Banana"));
+        assertThat(view.getValue(name), is(sameInstance(view.getValue(name))));
+        view.getValue(definition.getColumn("count"));
+    }
+
+    @Test
+    public void testStringDictionaryIsAbandonedAboveLimit()
+    {
+        StringDictionary dictionary = new StringDictionary(0).forQuery(100);
+        for (int i = 0; i < 100; i++)
+        {
+            dictionary.convert(new StringBuilder("value").append(i), null);
+        }
+        assertThat(dictionary.size(), is(100));
+        assertThat(dictionary.convert("value7", null), is(sameInstance(dictionary.convert("value7", null))));
+
+        assertThat(dictionary.convert("value100", null), is("value100"));
+        assertThat(dictionary.size(), is(-1));
+        assertThat(dictionary.convert(null, null), is(nullValue()));
+    }
+
     private Node buildBananaRow() throws ParserConfigurationException
     {
         DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
@@ -63,4 +196,41 @@ public class RowBuilderTest
         @Column(tableHeading = "Fruit")
         String name;
     }
+
+    @ReportPath("/does/not/exist")
+    public static class FruitCount
+    {
+
+        @Column(tableHeading = "Fruit")
+        String name;
+
+        @Column(tableHeading = "Fruit")
+        int count;
+    }
+
+    @ReportPath("/does/not/exist")
+    public static class FruitColor
+    {
+
+        @Column(tableHeading = "Fruit")
+        String name;
+
+        @Column(tableHeading = "Fruit")
+        @LowCardinality
+        String color;
+    }
+
+    @ReportPath("/does/not/exist")
+    public static class FruitMeasurement
+    {
+
+        @Column(tableHeading = "Fruit")
+        private long weight;
+
+        @Column(tableHeading = "Fruit")
+        private double price;
+
+        @Column(tableHeading = "Fruit")
+        private boolean ripe;
+    }
 }
@@ -0,0 +1,82 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.math.BigDecimal;
+
+import org.ccci.obiee.client.rowmap.ReportDefinition;
+import org.ccci.obiee.client.rowmap.RowDescriptor;
+import org.ccci.obiee.client.rowmap.annotation.Column;
+import org.ccci.obiee.client.rowmap.annotation.ReportPath;
+import org.testng.annotations.Test;
+
+public class RowDescriptorsTest
+{
+
+    @Test
+    public void testDescriptorIsGeneratedForAccessibleRowType()
+    {
+        RowDescriptor<RowBuilderTest.FruitCount> descriptor = RowDescriptors.forRowType(RowBuilderTest.FruitCount.class);
+
+        assertThat(descriptor, is(notNullValue()));
+        assertThat(descriptor.getColumns().size(), is(2));
+        assertThat(descriptor.getColumns().get(1).getName(), is("count"));
+        assertThat(descriptor.getColumns().get(1).getType(), is((Object) int.class));
+
+        RowBuilderTest.FruitCount fruitCount = descriptor.newRow();
+        descriptor.setValue(fruitCount, 1, 12);
+        assertThat(fruitCount.count, is(12));
+        assertThat(descriptor.getValue(fruitCount, 1), is((Object) 12));
+    }
+
+    @Test
+    public void testDescriptorAccessesPrivateFields()
+    {
+        RowDescriptor<AnalyticsManagerTest.TestRow> descriptor = RowDescriptors.forRowType(AnalyticsManagerTest.TestRow.class);
+
+        assertThat(descriptor, is(notNullValue()));
+        AnalyticsManagerTest.TestRow row = descriptor.newRow();
+        descriptor.setValue(row, 2, new BigDecimal("30.00"));
+        assertThat(row.getAmount(), is(new BigDecimal("30.00")));
+        assertThat(descriptor.getValue(row, 2), is((Object) new BigDecimal("30.00")));
+    }
+
+    @Test
+    public void testNoDescriptorIsGeneratedForFinalFields()
+    {
+        assertThat(RowDescriptors.forRowType(ImmutableFruit.class), is(nullValue()));
+    }
+
+    @Test
+    public void testDescriptorNamesOfNestedAndTopLevelRowTypesDiffer()
+    {
+        assertThat(
+            RowDescriptor.descriptorClassName("com.example.Reports$DonationRow"),
+            is("com.example.Reports$DonationRow_RowDescriptor"));
+        assertThat(
+            RowDescriptor.descriptorClassName("com.example.Reports_DonationRow"),
+            is("com.example.Reports_DonationRow_RowDescriptor"));
+    }
+
+    @Test
+    public void testReportDefinitionReadsValuesThroughDescriptor()
+    {
+        ReportDefinition<RowBuilderTest.FruitCount> definition = new ReportDefinition<>(RowBuilderTest.FruitCount.class);
+        RowBuilderTest.FruitCount fruitCount = new RowBuilderTest.FruitCount();
+        fruitCount.name = "Banana";
+
+        assertThat(definition.getColumn("name").getValue(fruitCount), is((Object) "Banana"));
+        assertThat(definition.getColumn("name").getField().getName(), is("name"));
+    }
+
+    @ReportPath("/does/not/exist")
+    public static class ImmutableFruit
+    {
+
+        @Column(tableHeading = "Fruit")
+        final String name = "Banana";
+    }
+}
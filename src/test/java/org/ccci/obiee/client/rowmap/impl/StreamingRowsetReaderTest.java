@@ -0,0 +1,125 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.testng.annotations.Test;
+
+public class StreamingRowsetReaderTest
+{
+
+    private static final ColumnSlots SLOTS = new ColumnSlots(Arrays.asList("Column0", "Column1", "Column2", "Column3"));
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+
+    @Test
+    public void testReadSchema() throws Exception
+    {
+        StreamingRowsetReader reader = readSimpleRowset();
+        RowsetSchema schema = reader.readSchema();
+
+        assertThat(reader.isEmpty(), is(false));
+        assertThat(schema.getColumns().size(), is(4));
+        RowsetSchema.Column first = schema.getColumns().get(0);
+        assertThat(first.elementName, is("Column0"));
+        assertThat(first.reportColumnId, is(new ReportColumnId("Designation", "Designation Number")));
+    }
+
+    @Test
+    public void testReadRows() throws Exception
+    {
+        StreamingRowsetReader reader = readSimpleRowset();
+        reader.readSchema();
+
+        RawRow firstRow = reader.nextRow(SLOTS, SLOTS.newRow());
+        assertThat(firstRow.getString(0), is("0378570"));
+        assertThat(firstRow.getString(1), is("2009-01-15T00:00:00"));
+
+        RawRow buffer = SLOTS.newRow();
+        int rows = 1;
+        while (reader.nextRow(SLOTS, buffer) != null)
+        {
+            rows++;
+        }
+        assertThat(rows, is(5));
+        assertThat(reader.nextRow(SLOTS, buffer), is(nullValue()));
+    }
+
+    @Test
+    public void testEmptyRowset() throws Exception
+    {
+        StreamingRowsetReader reader = read("<rowset xmlns=\"urn:schemas-microsoft-com:xml-analysis:rowset\"/>");
+        RowsetSchema schema = reader.readSchema();
+
+        assertThat(reader.isEmpty(), is(true));
+        assertThat(schema.isEmpty(), is(true));
+        assertThat(reader.nextRow(SLOTS, SLOTS.newRow()), is(nullValue()));
+    }
+
+    @Test
+    public void testRowsetWithoutSchema() throws Exception
+    {
+        StreamingRowsetReader reader = read(
+            "<rowset xmlns=\"urn:schemas-microsoft-com:xml-analysis:rowset\">" +
+            "<Row><Column0>Banana</Column0><Column1/></Row>" +
+            "</rowset>");
+        RowsetSchema schema = reader.readSchema();
+
+        assertThat(reader.isEmpty(), is(false));
+        assertThat(schema.isEmpty(), is(true));
+        RawRow row = reader.nextRow(SLOTS, RawRow.of("stale", "stale", "stale", "stale"));
+        assertThat(row.getString(0), is("Banana"));
+        assertThat(row.isNull(1), is(true));
+        assertThat(row.isNull(2), is(true));
+        assertThat(reader.nextRow(SLOTS, row), is(nullValue()));
+    }
+
+    @Test
+    public void testCellTextSplitAcrossEvents() throws Exception
+    {
+        StreamingRowsetReader reader = read(
+            "<rowset xmlns=\"urn:schemas-microsoft-com:xml-analysis:rowset\">" +
+            "<Row><Column0>Fish &amp; <![CDATA[Chips]]><!-- note --></Column0><Other>skipped</Other>" +
+            "<Column1>12</Column1></Row>" +
+            "</rowset>");
+        reader.readSchema();
+
+        RawRow row = reader.nextRow(SLOTS, SLOTS.newRow());
+        assertThat(row.getString(0), is("Fish & Chips"));
+        assertThat(row.getChars(1, new CharSlice()).toString(), is("12"));
+        assertThat(row.toString(), is("[Fish & Chips, 12, null, null]"));
+    }
+
+    @Test
+    public void testColumnSlots()
+    {
+        assertThat(SLOTS.size(), is(4));
+        assertThat(SLOTS.slotOf("Column3"), is(3));
+        assertThat(SLOTS.slotOf("Column4"), is(-1));
+        assertThat(SLOTS.slotOf("Row"), is(-1));
+
+        ColumnSlots namedSlots = new ColumnSlots(Arrays.asList("name", "color"));
+        assertThat(namedSlots.size(), is(2));
+        assertThat(namedSlots.slotOf("color"), is(1));
+        assertThat(namedSlots.slotOf("Column0"), is(-1));
+    }
+
+    private StreamingRowsetReader readSimpleRowset() throws XMLStreamException
+    {
+        InputStream xmlFileStream = this.getClass().getResourceAsStream("simple-rowset.xml");
+        return new StreamingRowsetReader(factory.createXMLStreamReader(xmlFileStream));
+    }
+
+    private StreamingRowsetReader read(String rowset) throws XMLStreamException
+    {
+        return new StreamingRowsetReader(factory.createXMLStreamReader(new StringReader(rowset)));
+    }
+}
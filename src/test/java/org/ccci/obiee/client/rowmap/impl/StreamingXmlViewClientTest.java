@@ -0,0 +1,155 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.ws.BindingProvider;
+import javax.xml.ws.soap.SOAPFaultException;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpServer;
+import oracle.bi.web.soap.ReportRef;
+import oracle.bi.web.soap.XMLQueryExecutionOptions;
+import oracle.bi.web.soap.XMLQueryOutputFormat;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class StreamingXmlViewClientTest
+{
+
+    private static final String ROWSET = StubXmlViewService.readResource("simple-rowset.xml");
+
+    private HttpServer server;
+    private StreamingXmlViewClient client;
+
+    private int responseStatus;
+    private String responseBody;
+    private String requestBody;
+    private String soapAction;
+
+    @BeforeMethod
+    public void startServer() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/analytics-ws/saw.dll", exchange -> {
+            requestBody = new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            soapAction = exchange.getRequestHeaders().getFirst("SOAPAction");
+            byte[] response = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=utf-8");
+            exchange.sendResponseHeaders(responseStatus, response.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(response);
+            }
+        });
+        server.start();
+
+        Map<String, Object> requestContext = new HashMap<>();
+        requestContext.put(
+            BindingProvider.ENDPOINT_ADDRESS_PROPERTY,
+            "http://localhost:" + server.getAddress().getPort() + "/analytics-ws/saw.dll?SoapImpl=xmlViewService");
+        client = new StreamingXmlViewClient(requestContext, XMLInputFactory.newInstance());
+    }
+
+    @AfterMethod
+    public void stopServer()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testExecuteXMLQuery() throws IOException
+    {
+        respondWith(200, resultEnvelope("executeXMLQueryResult", ROWSET, "query-1", false));
+
+        RowsetPages.Page page = executeQuery();
+        String rowset;
+        try (Reader reader = page.openRowset())
+        {
+            rowset = CharStreams.toString(reader);
+        }
+
+        assertThat(rowset, is(ROWSET));
+        assertThat(page.getQueryId(), is("query-1"));
+        assertThat(page.isFinished(), is(false));
+        page.close();
+
+        assertThat(soapAction, is("\"#executeXMLQuery\""));
+        assertThat(requestBody, containsString("<sessionID>session-1</sessionID>"));
+        assertThat(requestBody, containsString("<reportPath>/shared/report</reportPath>"));
+    }
+
+    @Test
+    public void testQueryIdIsAvailableWithoutReadingRowset()
+    {
+        respondWith(200, resultEnvelope("fetchNextResult", ROWSET, "query-2", true));
+
+        RowsetPages.Page page = client.fetchNext("query-2", "session-1");
+
+        assertThat(page.getQueryId(), is("query-2"));
+        assertThat(page.isFinished(), is(true));
+        page.close();
+
+        assertThat(soapAction, is("\"#fetchNext\""));
+        assertThat(requestBody, containsString("<queryID>query-2</queryID>"));
+    }
+
+    @Test(expectedExceptions = SOAPFaultException.class, expectedExceptionsMessageRegExp = "Invalid session ID")
+    public void testSoapFault()
+    {
+        respondWith(500,
+            "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>" +
+            "<soap:Fault><faultcode>soap:Server</faultcode><faultstring>Invalid session ID</faultstring>" +
+            "</soap:Fault></soap:Body></soap:Envelope>");
+
+        executeQuery();
+    }
+
+    private RowsetPages.Page executeQuery()
+    {
+        ReportRef report = new ReportRef();
+        report.setReportPath("/shared/report");
+        return client.executeXMLQuery(
+            report,
+            XMLQueryOutputFormat.SAW_ROWSET_SCHEMA_AND_DATA,
+            new XMLQueryExecutionOptions(),
+            null,
+            "session-1");
+    }
+
+    private void respondWith(int status, String body)
+    {
+        responseStatus = status;
+        responseBody = body;
+    }
+
+    private String resultEnvelope(String resultElement, String rowset, String queryId, boolean finished)
+    {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+            "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" " +
+            "xmlns:sawsoap=\"urn://oracle.bi.webservices/v7\"><soap:Body>" +
+            "<sawsoap:" + resultElement + "><sawsoap:return>" +
+            "<sawsoap:rowset>" + escape(rowset) + "</sawsoap:rowset>" +
+            "<sawsoap:queryID>" + queryId + "</sawsoap:queryID>" +
+            "<sawsoap:finished>" + finished + "</sawsoap:finished>" +
+            "</sawsoap:return></sawsoap:" + resultElement + ">" +
+            "</soap:Body></soap:Envelope>";
+    }
+
+    private String escape(String xml)
+    {
+        return xml.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
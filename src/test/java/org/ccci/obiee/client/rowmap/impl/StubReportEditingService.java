@@ -0,0 +1,71 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.xml.XmlEscapers;
+import oracle.bi.web.soap.ReportEditingServiceSoap;
+import oracle.bi.web.soap.ReportParams;
+import oracle.bi.web.soap.ReportRef;
+import oracle.bi.web.soap.Variable;
+
+/**
+ * An in-memory {@link ReportEditingServiceSoap} that applies params to a fixed report, roughly as Answers does:
+ * each variable's value replaces its {@code @{name}{default}} reference and its {@code eval} expression.  String
+ * values are copied as they are, and dates are written as SQL timestamps, in UTC.
+ */
+class StubReportEditingService implements ReportEditingServiceSoap
+{
+
+    private final String reportXml;
+
+    final List<ReportParams> appliedParams = new ArrayList<>();
+
+    StubReportEditingService(String reportXml)
+    {
+        this.reportXml = reportXml;
+    }
+
+    @Override
+    public Object applyReportParams(ReportRef reportRef, ReportParams reportParams, boolean encodeInString, String sessionID)
+    {
+        appliedParams.add(reportParams);
+        String xml = reportXml;
+        for (Variable variable : reportParams.getVariables())
+        {
+            String value = Matcher.quoteReplacement(XmlEscapers.xmlContentEscaper().escape(format(variable.getValue())));
+            xml = xml
+                .replaceAll("@\\{" + Pattern.quote(variable.getName()) + "\\}\\{[^}]*\\}", value)
+                .replace(">" + variable.getName() + "</sawx:expr>", ">" + value + "</sawx:expr>");
+        }
+        return xml;
+    }
+
+    private static String format(Object value)
+    {
+        if (value instanceof Date)
+        {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return "timestamp '" + format.format((Date) value) + "'";
+        }
+        return (String) value;
+    }
+
+    @Override
+    public String generateReportSQL(ReportRef reportRef, ReportParams reportParams, String sessionID)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String applyReportDefaults(ReportRef reportRefs, String sessionID)
+    {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,123 @@
+package org.ccci.obiee.client.rowmap.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.io.ByteStreams;
+import oracle.bi.web.soap.QueryResults;
+import oracle.bi.web.soap.ReportParams;
+import oracle.bi.web.soap.ReportRef;
+import oracle.bi.web.soap.XMLQueryExecutionOptions;
+import oracle.bi.web.soap.XMLQueryOutputFormat;
+import oracle.bi.web.soap.XmlViewServiceSoap;
+
+/**
+ * An in-memory {@link XmlViewServiceSoap} that answers every query with a fixed sequence of rowset pages.
+ */
+class StubXmlViewService implements XmlViewServiceSoap
+{
+
+    private List<String> pages;
+    private final boolean finishedAfterLastPage;
+    private int nextPage;
+
+    final List<XMLQueryExecutionOptions> executionOptions = new ArrayList<>();
+    final List<String> cancelledQueryIds = new ArrayList<>();
+    /** the xml of each query that was given as xml, rather than by path */
+    final List<String> reportXmls = new ArrayList<>();
+    int fetchNextCount = 0;
+
+    /**
+     * @param finishedAfterLastPage whether Answers should report the query as finished once the last page is returned
+     * @param pages the rowset of each page; the first is returned by {@code executeXMLQuery}, and the rest by {@code fetchNext}
+     */
+    StubXmlViewService(boolean finishedAfterLastPage, String... pages)
+    {
+        this.pages = Arrays.asList(pages);
+        this.finishedAfterLastPage = finishedAfterLastPage;
+    }
+
+    /**
+     * Replaces the pages returned by later queries, as if the report had been edited in Answers.
+     */
+    void setPages(String... pages)
+    {
+        this.pages = Arrays.asList(pages);
+    }
+
+    static String readResource(String filename)
+    {
+        try (InputStream stream = StubXmlViewService.class.getResourceAsStream(filename))
+        {
+            return new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public QueryResults executeXMLQuery(
+        ReportRef report,
+        XMLQueryOutputFormat outputFormat,
+        XMLQueryExecutionOptions executionOptions,
+        ReportParams reportParams,
+        String sessionID)
+    {
+        this.executionOptions.add(executionOptions);
+        if (report.getReportXml() != null)
+            reportXmls.add(report.getReportXml());
+        nextPage = 0;
+        return nextResults();
+    }
+
+    @Override
+    public QueryResults fetchNext(String queryID, String sessionID)
+    {
+        fetchNextCount++;
+        return nextResults();
+    }
+
+    private QueryResults nextResults()
+    {
+        QueryResults results = new QueryResults();
+        results.setRowset(pages.get(nextPage));
+        results.setQueryID("query-1");
+        nextPage++;
+        results.setFinished(nextPage == pages.size() && finishedAfterLastPage);
+        return results;
+    }
+
+    @Override
+    public void cancelQuery(String queryID, String sessionID)
+    {
+        cancelledQueryIds.add(queryID);
+    }
+
+    @Override
+    public String upgradeXML(String xml, String sessionID)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public QueryResults executeSQLQuery(
+        String sql,
+        XMLQueryOutputFormat outputFormat,
+        XMLQueryExecutionOptions executionOptions,
+        String sessionID)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<String> getPromptedFilters(ReportRef report, String sessionID)
+    {
+        throw new UnsupportedOperationException();
+    }
+}